@@ -0,0 +1,106 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.Random;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import sune.lib.sil2.BufferUtils;
+import sune.lib.sil2.FXImage;
+import sune.lib.sil2.IImage;
+import sune.lib.sil2.format.ImagePixelFormat;
+import sune.lib.sil2.format.ImagePixelFormats;
+
+/**
+ * Creation of the images and pixel buffers the benchmarks are run on. The contents
+ * are random, but the same for every run, so that the results are comparable.*/
+final class BenchmarkImages {
+	
+	private static final long SEED = 0x5113L;
+	
+	// Forbid anyone to create an instance of this class
+	private BenchmarkImages() {
+	}
+	
+	/**
+	 * Gets the pixel format of the given name, one of {@code ARGB}, {@code ARGB_PRE},
+	 * {@code BGRA}, {@code BGRA_PRE} and {@code RGB}.
+	 * @param name The name
+	 * @return The pixel format*/
+	@SuppressWarnings("unchecked")
+	public static final <T extends Buffer> ImagePixelFormat<T> format(String name) {
+		switch(name) {
+			case "ARGB":     return (ImagePixelFormat<T>) ImagePixelFormats.getARGBInstance();
+			case "ARGB_PRE": return (ImagePixelFormat<T>) ImagePixelFormats.getARGBPreInstance();
+			case "BGRA":     return (ImagePixelFormat<T>) ImagePixelFormats.getBGRAInstance();
+			case "BGRA_PRE": return (ImagePixelFormat<T>) ImagePixelFormats.getBGRAPreInstance();
+			case "RGB":      return (ImagePixelFormat<T>) ImagePixelFormats.getRGBInstance();
+			default:
+				throw new IllegalArgumentException("Unknown pixel format: " + name);
+		}
+	}
+	
+	// Prism can create only images in the premultiplied formats and RGB
+	private static final PixelFormat<?> fxFormat(String name) {
+		switch(name) {
+			case "ARGB_PRE": return PixelFormat.getIntArgbPreInstance();
+			case "BGRA_PRE": return PixelFormat.getByteBgraPreInstance();
+			case "RGB":      return PixelFormat.getByteRgbInstance();
+			default:
+				throw new IllegalArgumentException("Unsupported image pixel format: " + name);
+		}
+	}
+	
+	/**
+	 * Gets the width from the given size in the form of {@code WIDTHxHEIGHT}.
+	 * @param size The size
+	 * @return The width*/
+	public static final int width(String size) {
+		return Integer.parseInt(size.substring(0, size.indexOf('x')));
+	}
+	
+	/**
+	 * Gets the height from the given size in the form of {@code WIDTHxHEIGHT}.
+	 * @param size The size
+	 * @return The height*/
+	public static final int height(String size) {
+		return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+	}
+	
+	/**
+	 * Creates a new buffer of the given pixel format filled with random colors.
+	 * @param format The pixel format
+	 * @param width The width
+	 * @param height The height
+	 * @return The buffer*/
+	public static final <T extends Buffer> T pixels(ImagePixelFormat<T> format, int width, int height) {
+		T pixels = format.newBuffer(width * height);
+		Random random = new Random(SEED);
+		int epp = format.getElementsPerPixel();
+		for(int i = 0, l = width * height * epp; i < l; i += epp)
+			format.setARGB(pixels, i, random.nextInt());
+		return pixels;
+	}
+	
+	/**
+	 * Creates a new image of the given pixel format filled with random colors.
+	 * No JavaFX toolkit has to be running.
+	 * @param format The name of the pixel format, one of {@code ARGB_PRE},
+	 * {@code BGRA_PRE} and {@code RGB}
+	 * @param width The width
+	 * @param height The height
+	 * @return The image*/
+	public static final <T extends Buffer> IImage<T> image(String format, int width, int height) {
+		ImagePixelFormat<T> pixelFormat = format(format);
+		WritableImage image = FXImage.create(fxFormat(format), pixels(pixelFormat, width, height), width, height);
+		return new IImage<>(image);
+	}
+	
+	/**
+	 * Restores the pixels of the given image to the given ones.
+	 * @param image The image
+	 * @param pixels The pixels*/
+	public static final <T extends Buffer> void reset(IImage<T> image, T pixels) {
+		BufferUtils.buffercopy(pixels, image.getPixels());
+	}
+}
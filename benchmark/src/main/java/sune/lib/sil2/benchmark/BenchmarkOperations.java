@@ -0,0 +1,116 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import sune.lib.sil2.Colors;
+import sune.lib.sil2.IImageOperation;
+import sune.lib.sil2.StructuresConfiguration;
+import sune.lib.sil2.operation.Adjustments;
+import sune.lib.sil2.operation.Effects;
+import sune.lib.sil2.operation.Filters;
+import sune.lib.sil2.operation.ImageOperations;
+import sune.lib.sil2.operation.Morphology;
+import sune.lib.sil2.operation.Transforms;
+
+/**
+ * Registry of all image operations, each with typical arguments, by their names.
+ * The names are the ones used as the {@code operation} parameter of
+ * {@linkplain OperationBenchmark}.*/
+final class BenchmarkOperations {
+	
+	private static final int FG = StructuresConfiguration.FOREGROUND;
+	private static final int BG = StructuresConfiguration.BACKGROUND;
+	private static final int NO = StructuresConfiguration.BLANK;
+	
+	// Structure of a corner, used for hit-and-miss and thinning
+	private static final int[] STRUCTURE = {
+		NO, FG, NO,
+		BG, FG, FG,
+		BG, BG, NO,
+	};
+	
+	private static final Map<String, Supplier<IImageOperation<Buffer, ?>>> OPERATIONS = new LinkedHashMap<>();
+	
+	static {
+		// Adjustments
+		add("Invert",               () -> new Adjustments.Invert<>());
+		add("Grayscale",            () -> new Adjustments.Grayscale<>());
+		add("Brightness",           () -> new Adjustments.Brightness<>(0.2f));
+		add("Contrast",             () -> new Adjustments.Contrast<>(0.2f));
+		add("Gamma",                () -> new Adjustments.Gamma<>(1.8f));
+		add("Alpha",                () -> new Adjustments.Alpha<>(0x80));
+		add("Transparency",         () -> new Adjustments.Transparency<>(0.5f));
+		add("Hue",                  () -> new Adjustments.Hue<>(0.3f));
+		add("Saturation",           () -> new Adjustments.Saturation<>(1.5f));
+		add("Lightness",            () -> new Adjustments.Lightness<>(0.8f));
+		add("Chroma",               () -> new Adjustments.Chroma<>(1.5f));
+		add("LightnessApproximate", () -> new Adjustments.Lightness<>(0.8f, true));
+		add("ChromaApproximate",    () -> new Adjustments.Chroma<>(1.5f, true));
+		add("Threshold",            () -> new Adjustments.Threshold<>(0x80));
+		add("ThresholdLWR",         () -> new Adjustments.ThresholdLWR<>(0x80));
+		add("ThresholdGRT",         () -> new Adjustments.ThresholdGRT<>(0x80));
+		add("ThresholdBTW",         () -> new Adjustments.ThresholdBTW<>(0x40, 0xc0));
+		add("HistogramThreshold",   () -> new Adjustments.HistogramThreshold<>());
+		add("Shadows",              () -> new Adjustments.Shadows<>());
+		add("MiddleTones",          () -> new Adjustments.MiddleTones<>());
+		add("Lights",               () -> new Adjustments.Lights<>());
+		// Effects
+		add("Shadow2D",             () -> new Effects.Shadow2D<>(8.0f, 4.0f, 4.0f, 0x80000000));
+		// Filters
+		add("Smooth",               () -> new Filters.Smooth<>());
+		add("BoxBlur",              () -> new Filters.BoxBlur<>(8));
+		add("GaussianBlur",         () -> new Filters.GaussianBlur<>(8));
+		add("RecursiveGaussianBlur",() -> new Filters.RecursiveGaussianBlur<>(4.0f));
+		add("MotionBlur",           () -> new Filters.MotionBlur<>(30.0f, 8.0f));
+		add("Sharpen",              () -> new Filters.Sharpen<>(0.5f));
+		add("SharpenEdges",         () -> new Filters.SharpenEdges<>());
+		add("UnsharpMask",          () -> new Filters.UnsharpMask<>());
+		add("EdgeDetection",        () -> new Filters.EdgeDetection<>());
+		add("Emboss",               () -> new Filters.Emboss<>(45.0f, 1.0f));
+		add("Mean",                 () -> new Filters.Mean<>());
+		add("Sobel",                () -> new Filters.Sobel<>());
+		// Image operations
+		add("Histogram",            () -> new ImageOperations.Histogram<>(new int[256], Colors::grayscale));
+		add("OtsuOptimalThreshold", () -> new ImageOperations.OtsuOptimalThreshold<>());
+		// Morphology
+		add("Binarize",             () -> new Morphology.Binarize<>(0x80));
+		add("HitAndMiss",           () -> new Morphology.HitAndMiss<>(STRUCTURE));
+		add("Thin",                 () -> new Morphology.Thin<>(STRUCTURE));
+		add("Dilation",             () -> new Morphology.Dilation<>(3));
+		add("Erosion",              () -> new Morphology.Erosion<>(3));
+		add("GrayscaleDilation",    () -> new Morphology.GrayscaleDilation<>(31));
+		add("GrayscaleErosion",     () -> new Morphology.GrayscaleErosion<>(31));
+		add("Opening",              () -> new Morphology.Opening<>(31));
+		add("Closing",              () -> new Morphology.Closing<>(31));
+		add("TopHat",               () -> new Morphology.TopHat<>(31));
+		add("Gradient",             () -> new Morphology.Gradient<>(3));
+		add("Skeletonize",          () -> new Morphology.Skeletonize<>());
+		add("Skeletonize45deg",     () -> new Morphology.Skeletonize45deg<>());
+		add("Prune",                () -> new Morphology.Prune<>());
+		// Transforms
+		add("Hough",                () -> new Transforms.Hough<>(0x40));
+	}
+	
+	// Forbid anyone to create an instance of this class
+	private BenchmarkOperations() {
+	}
+	
+	private static final void add(String name, Supplier<IImageOperation<Buffer, ?>> supplier) {
+		OPERATIONS.put(name, supplier);
+	}
+	
+	/**
+	 * Creates a new instance of the operation of the given name.
+	 * @param name The name
+	 * @return The operation*/
+	@SuppressWarnings("unchecked")
+	public static final <T extends Buffer> IImageOperation<T, ?> create(String name) {
+		Supplier<IImageOperation<Buffer, ?>> supplier = OPERATIONS.get(name);
+		if((supplier == null))
+			throw new IllegalArgumentException("Unknown operation: " + name);
+		return (IImageOperation<T, ?>) (IImageOperation<?, ?>) supplier.get();
+	}
+}
@@ -0,0 +1,45 @@
+package sune.lib.sil2.benchmark;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the same arguments as the JMH runner,
+ * unless a result format is given, the results are written as JSON to the
+ * {@code results} directory, one file per run, so that they can be tracked over time.
+ * @author Sune*/
+public final class BenchmarkRunner {
+	
+	private static final String RESULTS_DIRECTORY = "results";
+	
+	// Forbid anyone to create an instance of this class
+	private BenchmarkRunner() {
+	}
+	
+	public static final void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		if((cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListWithParams()
+				|| cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats())) {
+			// Let the original runner handle the informational options
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+		if(!cmdOptions.getResultFormat().hasValue()) {
+			File directory = new File(RESULTS_DIRECTORY);
+			if(!directory.isDirectory() && !directory.mkdirs())
+				throw new IllegalStateException("Unable to create the results directory");
+			String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			options.resultFormat(ResultFormatType.JSON)
+			       .result(new File(directory, "sil2-" + timestamp + ".json").getPath());
+		}
+		new Runner(options.build()).run();
+	}
+}
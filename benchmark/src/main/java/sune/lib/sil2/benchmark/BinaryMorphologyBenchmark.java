@@ -0,0 +1,110 @@
+package sune.lib.sil2.benchmark;
+
+import static sune.lib.sil2.StructuresConfiguration.BACKGROUND;
+import static sune.lib.sil2.StructuresConfiguration.BLANK;
+import static sune.lib.sil2.StructuresConfiguration.FOREGROUND;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.BinaryImage;
+import sune.lib.sil2.BufferImage;
+import sune.lib.sil2.format.ImagePixelFormats;
+import sune.lib.sil2.operation.Morphology;
+
+/**
+ * Morphological operations applied to a binarized image through {@code Morphology}
+ * and to the same image packed into a {@linkplain BinaryImage}.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" })
+public class BinaryMorphologyBenchmark {
+	
+	private static final int[][] SKELETONIZE = {
+		{ BACKGROUND, BACKGROUND, BACKGROUND, BLANK, FOREGROUND, BLANK, FOREGROUND, FOREGROUND, FOREGROUND },
+		{ FOREGROUND, FOREGROUND, FOREGROUND, BLANK, FOREGROUND, BLANK, BACKGROUND, BACKGROUND, BACKGROUND },
+		{ FOREGROUND, BLANK, BACKGROUND, FOREGROUND, FOREGROUND, BACKGROUND, FOREGROUND, BLANK, BACKGROUND },
+		{ BACKGROUND, BLANK, FOREGROUND, BACKGROUND, FOREGROUND, FOREGROUND, BACKGROUND, BLANK, FOREGROUND },
+		{ BLANK, BACKGROUND, BACKGROUND, FOREGROUND, FOREGROUND, BACKGROUND, BLANK, FOREGROUND, BLANK },
+		{ BLANK, FOREGROUND, BLANK, BACKGROUND, FOREGROUND, FOREGROUND, BACKGROUND, BACKGROUND, BLANK },
+		{ BLANK, FOREGROUND, BLANK, FOREGROUND, FOREGROUND, BACKGROUND, BLANK, BACKGROUND, BACKGROUND },
+		{ BACKGROUND, BACKGROUND, BLANK, BACKGROUND, FOREGROUND, FOREGROUND, BLANK, FOREGROUND, BLANK },
+	};
+	
+	@Param({ "640x480", "1920x1080" })
+	public String size;
+	
+	private int[] original;
+	private BufferImage<IntBuffer> image;
+	private BinaryImage binary;
+	
+	@Setup
+	public void setup() {
+		int width  = BenchmarkImages.width(size);
+		int height = BenchmarkImages.height(size);
+		Random random = new Random(0x5113L);
+		original = new int[width * height];
+		for(int i = 0; i < original.length; ++i)
+			original[i] = random.nextInt(3) == 0 ? 0xffffffff : 0xff000000;
+		image = new BufferImage<>(width, height, ImagePixelFormats.getARGBInstance());
+	}
+	
+	@Setup(Level.Invocation)
+	public void restore() {
+		image.setPixels(0, 0, image.getWidth(), image.getHeight(), original, 0, image.getWidth());
+		binary = BinaryImage.of(image);
+	}
+	
+	@Benchmark
+	public BufferImage<IntBuffer> dilationImage() {
+		image.applyOperation(new Morphology.Dilation<>(3));
+		return image;
+	}
+	
+	@Benchmark
+	public BinaryImage dilationBinary() {
+		binary.dilate(3);
+		return binary;
+	}
+	
+	@Benchmark
+	public BufferImage<IntBuffer> erosionImage() {
+		image.applyOperation(new Morphology.Erosion<>(3));
+		return image;
+	}
+	
+	@Benchmark
+	public BinaryImage erosionBinary() {
+		binary.erode(3);
+		return binary;
+	}
+	
+	@Benchmark
+	public BufferImage<IntBuffer> skeletonizeImage() {
+		image.applyOperation(new Morphology.Skeletonize<>());
+		return image;
+	}
+	
+	@Benchmark
+	public BinaryImage skeletonizeBinary() {
+		binary.thin(SKELETONIZE);
+		return binary;
+	}
+}
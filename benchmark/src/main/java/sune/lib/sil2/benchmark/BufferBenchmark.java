@@ -0,0 +1,106 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.FastBlur;
+import sune.lib.sil2.ImageUtils;
+import sune.lib.sil2.ImageUtils.ImageData;
+import sune.lib.sil2.TileScheduler;
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Operations working directly on pixel buffers, in all pixel formats.
+ * These do not need any JavaFX image.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class BufferBenchmark {
+	
+	@Param({ "ARGB", "ARGB_PRE", "BGRA", "BGRA_PRE", "RGB" })
+	public String format;
+	
+	@Param({ "640x480", "1920x1080" })
+	public String size;
+	
+	@Param({ "8" })
+	public int radius;
+	
+	private ImagePixelFormat<Buffer> pixelFormat;
+	private TileScheduler scheduler;
+	private int width;
+	private int height;
+	private Buffer pixels;
+	private Buffer foreground;
+	private Buffer output;
+	private Buffer resized;
+	
+	@Setup
+	public void setup() {
+		pixelFormat = BenchmarkImages.format(format);
+		scheduler = TileScheduler.getDefault();
+		width = BenchmarkImages.width(size);
+		height = BenchmarkImages.height(size);
+		pixels = BenchmarkImages.pixels(pixelFormat, width, height);
+		foreground = BenchmarkImages.pixels(pixelFormat, height, width);
+		output = pixelFormat.newBuffer(width * height);
+		resized = pixelFormat.newBuffer((width / 2) * (height / 2));
+	}
+	
+	@Benchmark
+	public Buffer boxBlur() {
+		FastBlur.boxBlur(pixels, output, 0, 0, width, height, radius, width, pixelFormat, scheduler, false);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer gaussianBlur() {
+		FastBlur.gaussianBlur(pixels, output, 0, 0, width, height, radius, width, pixelFormat, scheduler, false);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer gaussianBlurPremultiplied() {
+		FastBlur.gaussianBlur(pixels, output, 0, 0, width, height, radius, width, pixelFormat, scheduler, true);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer recursiveGaussianBlur() {
+		FastBlur.recursiveGaussianBlur(pixels, output, 0, 0, width, height, radius / 2.0f, width, pixelFormat,
+		                               scheduler, false);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer fastresize() {
+		ImageUtils.fastresize(pixels, width, height, resized, width / 2, height / 2, pixelFormat);
+		return resized;
+	}
+	
+	@Benchmark
+	public ImageData fastrotate() {
+		return ImageUtils.fastrotate(pixels, width, height, 0.5f, width / 2, height / 2, pixelFormat);
+	}
+	
+	@Benchmark
+	public Buffer combine() {
+		ImageUtils.combine(pixels, foreground, output, pixelFormat);
+		return output;
+	}
+}
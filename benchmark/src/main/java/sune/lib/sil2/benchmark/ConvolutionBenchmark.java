@@ -0,0 +1,83 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.BufferUtils;
+import sune.lib.sil2.IImage;
+
+/**
+ * Convolution with square kernels of various sizes. The box kernel is separable,
+ * the disc kernel is not, so the latter measures either the spatial or the FFT
+ * convolution, depending on the size.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class ConvolutionBenchmark {
+	
+	@Param({ "box", "disc" })
+	public String kernel;
+	
+	@Param({ "3", "5", "9", "17", "33" })
+	public int kernelSize;
+	
+	@Param({ "ARGB_PRE", "BGRA_PRE", "RGB" })
+	public String format;
+	
+	@Param({ "640x480", "1920x1080" })
+	public String size;
+	
+	private IImage<Buffer> image;
+	private Buffer original;
+	private float[] values;
+	
+	@Setup
+	public void setup() {
+		image = BenchmarkImages.image(format, BenchmarkImages.width(size), BenchmarkImages.height(size));
+		original = BufferUtils.copy(image.getPixels());
+		values = kernel(kernel, kernelSize);
+	}
+	
+	@Setup(Level.Invocation)
+	public void reset() {
+		BenchmarkImages.reset(image, original);
+	}
+	
+	// Creates a normalized kernel of the given shape and size
+	private static final float[] kernel(String shape, int size) {
+		float[] values = new float[size * size];
+		float r = size / 2.0f, sum = 0.0f;
+		for(int y = 0, i = 0; y < size; ++y) {
+			for(int x = 0; x < size; ++x, ++i) {
+				float dx = x + 0.5f - r, dy = y + 0.5f - r;
+				boolean inside = shape.equals("box") || dx * dx + dy * dy <= r * r;
+				sum += values[i] = inside ? 1.0f : 0.0f;
+			}
+		}
+		for(int i = 0; i < values.length; ++i)
+			values[i] /= sum;
+		return values;
+	}
+	
+	@Benchmark
+	public Buffer convolute2d() {
+		image.convolute2d(values, 1, false);
+		return image.getPixels();
+	}
+}
@@ -0,0 +1,65 @@
+package sune.lib.sil2.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.image.Image;
+import sune.lib.sil2.FXImageIO;
+import sune.lib.sil2.format.ImageFormat;
+
+/**
+ * Decoding and encoding of images in memory, so that the disk does not affect the results.
+ * The image has no alpha channel, since not all the formats can store one.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class ImageIOBenchmark {
+	
+	@Param({ "PNG", "JPG", "BMP", "GIF" })
+	public ImageFormat imageFormat;
+	
+	@Param({ "640x480", "1920x1080" })
+	public String size;
+	
+	private Image image;
+	private byte[] encoded;
+	
+	@Setup
+	public void setup() throws IOException {
+		image = BenchmarkImages.image("RGB", BenchmarkImages.width(size), BenchmarkImages.height(size))
+		                       .getImage();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		if(!FXImageIO.save(image, imageFormat, output))
+			throw new IllegalStateException("Unable to save image as " + imageFormat);
+		encoded = output.toByteArray();
+	}
+	
+	@Benchmark
+	public Image open() throws IOException {
+		return FXImageIO.open(new ByteArrayInputStream(encoded));
+	}
+	
+	@Benchmark
+	public ByteArrayOutputStream save() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(encoded.length);
+		FXImageIO.save(image, imageFormat, output);
+		return output;
+	}
+}
@@ -0,0 +1,75 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.BufferUtils;
+import sune.lib.sil2.IImage;
+import sune.lib.sil2.IImageOperation;
+
+/**
+ * All image operations, applied to an image through {@linkplain IImage#applyOperation(IImageOperation)}.
+ * The image is restored before each invocation, so that every invocation processes the same pixels.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class OperationBenchmark {
+	
+	@Param({
+		"Invert", "Grayscale", "Brightness", "Contrast", "Gamma", "Alpha", "Transparency",
+		"Hue", "Saturation", "Lightness", "Chroma", "LightnessApproximate", "ChromaApproximate",
+		"Threshold", "ThresholdLWR", "ThresholdGRT",
+		"ThresholdBTW", "HistogramThreshold", "Shadows", "MiddleTones", "Lights",
+		"Shadow2D",
+		"Smooth", "BoxBlur", "GaussianBlur", "RecursiveGaussianBlur", "MotionBlur", "Sharpen",
+		"SharpenEdges", "UnsharpMask", "EdgeDetection", "Emboss", "Mean", "Sobel",
+		"Histogram", "OtsuOptimalThreshold",
+		"Binarize", "HitAndMiss", "Thin", "Dilation", "Erosion", "GrayscaleDilation", "GrayscaleErosion",
+		"Opening", "Closing", "TopHat", "Gradient", "Skeletonize", "Skeletonize45deg", "Prune",
+		"Hough",
+	})
+	public String operation;
+	
+	// Only the formats in which JavaFX can create an image
+	@Param({ "ARGB_PRE", "BGRA_PRE", "RGB" })
+	public String format;
+	
+	@Param({ "640x480", "1920x1080" })
+	public String size;
+	
+	private IImage<Buffer> image;
+	private Buffer original;
+	
+	@Setup
+	public void setup() {
+		image = BenchmarkImages.image(format, BenchmarkImages.width(size), BenchmarkImages.height(size));
+		original = BufferUtils.copy(image.getPixels());
+	}
+	
+	@Setup(Level.Invocation)
+	public void reset() {
+		BenchmarkImages.reset(image, original);
+	}
+	
+	@Benchmark
+	public Object apply() {
+		IImageOperation<Buffer, ?> op = BenchmarkOperations.create(operation);
+		return image.applyOperation(op);
+	}
+}
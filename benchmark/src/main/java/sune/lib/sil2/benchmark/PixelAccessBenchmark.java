@@ -0,0 +1,96 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.BufferImage;
+import sune.lib.sil2.PixelCursor;
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Access to the pixels of an image pixel by pixel, by the bulk region methods
+ * and by a cursor.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class PixelAccessBenchmark {
+	
+	private static final int WIDTH  = 256;
+	private static final int HEIGHT = 256;
+	
+	@Param({ "ARGB", "BGRA_PRE", "RGB" })
+	public String format;
+	
+	private BufferImage<Buffer> image;
+	private int[] argb;
+	
+	@Setup
+	public void setup() {
+		ImagePixelFormat<Buffer> pixelFormat = BenchmarkImages.format(format);
+		image = new BufferImage<>(WIDTH, HEIGHT, WIDTH, pixelFormat,
+			BenchmarkImages.pixels(pixelFormat, WIDTH, HEIGHT));
+		argb = new int[WIDTH * HEIGHT];
+	}
+	
+	@Benchmark
+	public int getPixel() {
+		int hash = 0;
+		for(int y = 0; y < HEIGHT; ++y)
+			for(int x = 0; x < WIDTH; ++x)
+				hash += image.getPixel(x, y);
+		return hash;
+	}
+	
+	@Benchmark
+	public BufferImage<Buffer> setPixel() {
+		for(int y = 0, i = 0; y < HEIGHT; ++y)
+			for(int x = 0; x < WIDTH; ++x, ++i)
+				image.setPixel(x, y, i * 0x01010101);
+		return image;
+	}
+	
+	@Benchmark
+	public int[] getPixels() {
+		image.getPixels(0, 0, WIDTH, HEIGHT, argb, 0, WIDTH);
+		return argb;
+	}
+	
+	@Benchmark
+	public BufferImage<Buffer> setPixels() {
+		image.setPixels(0, 0, WIDTH, HEIGHT, argb, 0, WIDTH);
+		return image;
+	}
+	
+	@Benchmark
+	public BufferImage<Buffer> fillSpans() {
+		for(int y = 0; y < HEIGHT; ++y)
+			image.fillSpan(y / 2, y, WIDTH - y / 2, y * 0x01010101);
+		return image;
+	}
+	
+	@Benchmark
+	public int cursor() {
+		int hash = 0;
+		PixelCursor<Buffer> cursor = image.cursor();
+		do {
+			hash += cursor.get();
+			cursor.set(hash);
+		} while(cursor.next());
+		return hash;
+	}
+}
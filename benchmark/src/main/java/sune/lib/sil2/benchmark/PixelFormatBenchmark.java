@@ -0,0 +1,90 @@
+package sune.lib.sil2.benchmark;
+
+import java.nio.Buffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Per-pixel and per-row accessors of all pixel formats. Run with {@code -prof gc}
+ * to check that the accessors do not allocate.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Dprism.order=sw" })
+public class PixelFormatBenchmark {
+	
+	private static final int WIDTH  = 256;
+	private static final int HEIGHT = 256;
+	
+	@Param({ "ARGB", "ARGB_PRE", "BGRA", "BGRA_PRE", "RGB" })
+	public String format;
+	
+	private ImagePixelFormat<Buffer> pixelFormat;
+	private Buffer pixels;
+	private Buffer output;
+	private int[] row;
+	private int epp;
+	
+	@Setup
+	public void setup() {
+		pixelFormat = BenchmarkImages.format(format);
+		pixels = BenchmarkImages.pixels(pixelFormat, WIDTH, HEIGHT);
+		output = pixelFormat.newBuffer(WIDTH * HEIGHT);
+		row = new int[WIDTH];
+		epp = pixelFormat.getElementsPerPixel();
+	}
+	
+	@Benchmark
+	public int getARGB() {
+		int hash = 0;
+		for(int i = 0, l = WIDTH * HEIGHT * epp; i < l; i += epp)
+			hash += pixelFormat.getARGB(pixels, i);
+		return hash;
+	}
+	
+	@Benchmark
+	public int getARGBPre() {
+		int hash = 0;
+		for(int i = 0, l = WIDTH * HEIGHT * epp; i < l; i += epp)
+			hash += pixelFormat.getARGBPre(pixels, i);
+		return hash;
+	}
+	
+	@Benchmark
+	public Buffer setARGB() {
+		for(int i = 0, l = WIDTH * HEIGHT * epp; i < l; i += epp)
+			pixelFormat.setARGB(output, i, i * 0x01010101);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer setARGBPre() {
+		for(int i = 0, l = WIDTH * HEIGHT * epp; i < l; i += epp)
+			pixelFormat.setARGBPre(output, i, i * 0x01010101);
+		return output;
+	}
+	
+	@Benchmark
+	public Buffer copyRows() {
+		for(int y = 0, i = 0; y < HEIGHT; ++y, i += WIDTH * epp) {
+			pixelFormat.getARGB(pixels, i, row, 0, WIDTH);
+			pixelFormat.setARGB(output, i, row, 0, WIDTH);
+		}
+		return output;
+	}
+}
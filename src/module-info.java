@@ -1,8 +1,8 @@
 module sune.lib.sil2 {
-	requires javafx.graphics;
+	requires static javafx.graphics;
 	requires jdk.unsupported;
 	requires java.desktop;
-	requires javafx.swing;
+	requires static javafx.swing;
 	exports sune.lib.sil2;
 	exports sune.lib.sil2.format;
 	exports sune.lib.sil2.operation;
@@ -0,0 +1,101 @@
+package sune.lib.sil2;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+
+import sune.lib.sil2.format.ARGBImagePixelFormat;
+import sune.lib.sil2.format.ARGBPreImagePixelFormat;
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Contains methods for using AWT images as {@linkplain BufferImage}s and vice-versa.
+ * Unlike {@linkplain IImage}, no JavaFX classes are needed, therefore this class
+ * can be used also in a headless environment.
+ * @since 2.1
+ * @author Sune*/
+public final class AWTImage {
+	
+	/*
+	 * Use the premultiplied version since some algorithms in the standard Java libraries
+	 * use divisions in them for the non-premultiplied version.
+	 */
+	private static final int DEFAULT_BUFFERED_IMAGE_FORMAT = BufferedImage.TYPE_INT_ARGB_PRE;
+	
+	// Forbid anyone to create an instance of this class
+	private AWTImage() {
+	}
+	
+	// Checks whether the pixels of the given image can be used directly
+	private static final boolean isDirectlyUsable(BufferedImage image) {
+		int type = image.getType();
+		if((type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE))
+			return false;
+		WritableRaster raster = image.getRaster();
+		// Sub-images have their pixels at an offset in the data array
+		return raster.getSampleModelTranslateX() == 0
+					&& raster.getSampleModelTranslateY() == 0
+					&& raster.getDataBuffer().getOffset() == 0;
+	}
+	
+	private static final BufferedImage convert(BufferedImage image, int type) {
+		BufferedImage bimg = new BufferedImage(image.getWidth(), image.getHeight(), type);
+		Graphics2D g = bimg.createGraphics();
+		try {
+			g.drawImage(image, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return bimg;
+	}
+	
+	/**
+	 * Creates a new image from the given AWT image. If the AWT image is of type
+	 * {@link BufferedImage#TYPE_INT_ARGB TYPE_INT_ARGB} or
+	 * {@link BufferedImage#TYPE_INT_ARGB_PRE TYPE_INT_ARGB_PRE}, the created image
+	 * shares the pixels with it, so that flushed changes are apparent in the AWT image.
+	 * Otherwise the AWT image is first converted to
+	 * {@link BufferedImage#TYPE_INT_ARGB_PRE TYPE_INT_ARGB_PRE}.
+	 * @param image The AWT image
+	 * @return The image using the pixels of the AWT image*/
+	public static final BufferImage<IntBuffer> bufferImage(BufferedImage image) {
+		if((image == null))
+			throw new IllegalArgumentException("Image cannot be null");
+		if(!isDirectlyUsable(image))
+			image = convert(image, DEFAULT_BUFFERED_IMAGE_FORMAT);
+		WritableRaster raster = image.getRaster();
+		int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+		int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+		ImagePixelFormat<IntBuffer> format = image.isAlphaPremultiplied()
+				? ARGBPreImagePixelFormat.INSTANCE
+				: ARGBImagePixelFormat.INSTANCE;
+		return new BufferImage<>(image.getWidth(), image.getHeight(), stride, format, IntBuffer.wrap(pixels));
+	}
+	
+	/**
+	 * Creates a new AWT image of type {@link BufferedImage#TYPE_INT_ARGB TYPE_INT_ARGB}
+	 * from the given image, copying all its current pixels into the newly created image.
+	 * If the given image is a sub-image, only its region is copied.
+	 * @param image Image to convert
+	 * @return Converted image as an AWT image*/
+	public static final <T extends Buffer> BufferedImage awtImage(BufferImage<T> image) {
+		if((image == null))
+			throw new IllegalArgumentException("Image cannot be null");
+		int width  = image.getWidth();
+		int height = image.getHeight();
+		int stride = image.getStride();
+		ImagePixelFormat<T> format = image.getPixelFormat();
+		int epp = format.getElementsPerPixel();
+		T src = image.getPixels();
+		BufferedImage bimg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) bimg.getRaster().getDataBuffer()).getData();
+		for(int y = 0, i = image.getY() * stride + image.getX(); y < height; ++y, i += stride) {
+			format.getARGB(src, i * epp, pixels, y * width, width);
+		}
+		return bimg;
+	}
+}
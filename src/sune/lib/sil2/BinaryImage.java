@@ -0,0 +1,434 @@
+package sune.lib.sil2;
+
+import static sune.lib.sil2.StructuresConfiguration.BACKGROUND;
+import static sune.lib.sil2.StructuresConfiguration.BLANK;
+import static sune.lib.sil2.StructuresConfiguration.FOREGROUND;
+
+import java.nio.Buffer;
+
+/**
+ * Binary image with the pixels packed into bits, 64 pixels in a {@code long}. A pixel
+ * is either foreground (set bit) or background (cleared bit). Each row starts at a new
+ * word and the pixel {@code x} of a row is the bit {@code x % 64} of the word {@code x / 64}.
+ * <br><br>
+ * The morphological operations work on whole words, i.e. on 64 pixels at once, using
+ * only shifts and bitwise operations. They give the same results as the corresponding
+ * operations in {@code Morphology} applied to a binarized image, including the treatment
+ * of the edges, but use 32 times less memory.
+ * <br><br>
+ * This class is not thread-safe.
+ * @since 2.1
+ * @author Sune*/
+public final class BinaryImage {
+	
+	/**
+	 * The default threshold of the blue channel for a pixel to be a foreground one.*/
+	public static final int DEFAULT_THRESHOLD = 0x80;
+	
+	private static final int ARGB_FOREGROUND = 0xffffffff;
+	private static final int ARGB_BACKGROUND = 0xff000000;
+	
+	private final int width;
+	private final int height;
+	// The number of words per row
+	private final int words;
+	// The valid bits of the last word of a row
+	private final long lastMask;
+	private long[] bits;
+	// Scratch space for the operations
+	private long[] temp;
+	private long[] row;
+	
+	/**
+	 * Creates a new binary image of the given size with all the pixels set to background.
+	 * @param width The width
+	 * @param height The height*/
+	public BinaryImage(int width, int height) {
+		if((width <= 0 || height <= 0))
+			throw new IllegalArgumentException("Invalid image size");
+		if((long) ((width + 63) >>> 6) * height > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Image too large");
+		this.width    = width;
+		this.height   = height;
+		this.words    = (width + 63) >>> 6;
+		this.lastMask = -1L >>> (-width & 63);
+		this.bits     = new long[words * height];
+	}
+	
+	private BinaryImage(BinaryImage image) {
+		this.width    = image.width;
+		this.height   = image.height;
+		this.words    = image.words;
+		this.lastMask = image.lastMask;
+		this.bits     = image.bits.clone();
+	}
+	
+	/**
+	 * Creates a new binary image from the given image. A pixel is a foreground one,
+	 * if its blue channel is at least {@link #DEFAULT_THRESHOLD}. The image should
+	 * already be binarized.
+	 * @param <T> The type of an underlying buffer
+	 * @param image The image
+	 * @return The binary image*/
+	public static final <T extends Buffer> BinaryImage of(IImageContext<T> image) {
+		return of(image, DEFAULT_THRESHOLD);
+	}
+	
+	/**
+	 * Creates a new binary image from the given image. A pixel is a foreground one,
+	 * if its blue channel is at least the given threshold.
+	 * @param <T> The type of an underlying buffer
+	 * @param image The image
+	 * @param threshold The threshold, in range 0-255
+	 * @return The binary image*/
+	public static final <T extends Buffer> BinaryImage of(IImageContext<T> image, int threshold) {
+		BinaryImage binary = new BinaryImage(image.getWidth(), image.getHeight());
+		int[] argb = new int[binary.width];
+		for(int y = 0, o = 0; y < binary.height; ++y, o += binary.words) {
+			image.getScanline(0, y, binary.width, argb, 0);
+			for(int x = 0; x < binary.width; ++x) {
+				if((argb[x] & 0xff) >= threshold)
+					binary.bits[o + (x >>> 6)] |= 1L << x;
+			}
+		}
+		return binary;
+	}
+	
+	/**
+	 * Writes the pixels of {@code this} binary image to the given image, foreground
+	 * pixels as white and background pixels as black. The image must have the same size
+	 * as {@code this} binary image.
+	 * @param <T> The type of an underlying buffer
+	 * @param image The image*/
+	public final <T extends Buffer> void to(IImageContext<T> image) {
+		if((image.getWidth() != width || image.getHeight() != height))
+			throw new IllegalArgumentException("Image size does not match");
+		int[] argb = new int[width];
+		for(int y = 0, o = 0; y < height; ++y, o += words) {
+			for(int x = 0; x < width; ++x)
+				argb[x] = (bits[o + (x >>> 6)] & (1L << x)) != 0L ? ARGB_FOREGROUND : ARGB_BACKGROUND;
+			image.setScanline(0, y, width, argb, 0);
+		}
+	}
+	
+	/**
+	 * Creates a copy of {@code this} binary image.
+	 * @return The copy*/
+	public final BinaryImage copy() {
+		return new BinaryImage(this);
+	}
+	
+	private final void checkPosition(int x, int y) {
+		if((x < 0 || y < 0 || x >= width || y >= height))
+			throw new IllegalArgumentException("Position out of bounds");
+	}
+	
+	private static final int checkSize(int size) {
+		if((size <= 0 || (size & 1) == 0))
+			throw new IllegalArgumentException("Size must be odd");
+		return size;
+	}
+	
+	private static final int checkStructure(int[] structure) {
+		int size = (int) Math.sqrt(structure.length);
+		if((size * size != structure.length))
+			throw new IllegalArgumentException("Non-square structure");
+		if((size & 1) == 0)
+			throw new IllegalArgumentException("Structure size must be odd");
+		for(int value : structure) {
+			if((value != FOREGROUND && value != BACKGROUND && value != BLANK))
+				throw new IllegalArgumentException("Invalid structure value: " + value);
+		}
+		return size;
+	}
+	
+	private final long[] temp() {
+		return temp == null ? temp = new long[bits.length] : temp;
+	}
+	
+	private final long[] row() {
+		return row == null ? row = new long[words] : row;
+	}
+	
+	/**
+	 * Gets whether the given pixel is a foreground one.
+	 * @param x The x-coordinate
+	 * @param y The y-coordinate
+	 * @return {@code true}, if the pixel is a foreground one, otherwise {@code false}*/
+	public final boolean get(int x, int y) {
+		checkPosition(x, y);
+		return (bits[y * words + (x >>> 6)] & (1L << x)) != 0L;
+	}
+	
+	/**
+	 * Sets the given pixel to foreground or background.
+	 * @param x The x-coordinate
+	 * @param y The y-coordinate
+	 * @param value {@code true} for foreground, {@code false} for background*/
+	public final void set(int x, int y, boolean value) {
+		checkPosition(x, y);
+		if((value)) bits[y * words + (x >>> 6)] |=  (1L << x);
+		else        bits[y * words + (x >>> 6)] &= ~(1L << x);
+	}
+	
+	/**
+	 * Gets the number of the foreground pixels.
+	 * @return The number of the foreground pixels*/
+	public final long count() {
+		long count = 0L;
+		for(long word : bits)
+			count += Long.bitCount(word);
+		return count;
+	}
+	
+	/**
+	 * Inverts {@code this} binary image, i.e. swaps foreground and background.*/
+	public final void invert() {
+		for(int i = 0, l = bits.length; i < l; ++i)
+			bits[i] = ~bits[i];
+		for(int i = words - 1, l = bits.length; i < l; i += words)
+			bits[i] &= lastMask;
+	}
+	
+	// Fills dst so that its pixel x is the pixel (x + dx) of the src row, the pixels outside are background
+	private final void shiftRowZero(long[] src, int srcOff, long[] dst, int dstOff, int dx) {
+		int ws = dx >> 6, bs = dx & 63;
+		for(int w = 0; w < words; ++w) {
+			int sw = w + ws;
+			long lo = sw     >= 0 && sw     < words ? src[srcOff + sw]     : 0L;
+			long hi = sw + 1 >= 0 && sw + 1 < words ? src[srcOff + sw + 1] : 0L;
+			dst[dstOff + w] = bs == 0 ? lo : (lo >>> bs) | (hi << (64 - bs));
+		}
+		dst[dstOff + words - 1] &= lastMask;
+	}
+	
+	// Dilates the row in place by the pixels at the distance [1, length) in the direction
+	// of dir (1 or -1), doubling the covered distance in each step
+	private final void spreadRow(long[] row, int off, long[] temp, int length, int dir) {
+		int covered = 1;
+		for(; covered * 2 <= length; covered *= 2) {
+			shiftRowZero(row, off, temp, 0, dir * covered);
+			for(int w = 0; w < words; ++w)
+				row[off + w] |= temp[w];
+		}
+		if((covered < length)) {
+			// The rest overlaps the already covered distance
+			shiftRowZero(row, off, temp, 0, dir * (length - covered));
+			for(int w = 0; w < words; ++w)
+				row[off + w] |= temp[w];
+		}
+	}
+	
+	/**
+	 * Dilates {@code this} binary image by a square structuring element of the given size.
+	 * A background pixel becomes a foreground one, if there is a foreground pixel in its
+	 * neighborhood.
+	 * @param size The size of the structuring element, must be odd*/
+	public final void dilate(int size) {
+		dilate(size, size);
+	}
+	
+	/**
+	 * Dilates {@code this} binary image by a rectangular structuring element of the given size.
+	 * The rows are dilated in a logarithmic number of word operations, the columns by
+	 * the van Herk/Gil-Werman algorithm, therefore the cost per pixel is almost independent
+	 * of the size.
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd*/
+	public final void dilate(int sizeX, int sizeY) {
+		int rx = checkSize(sizeX) / 2;
+		int ry = checkSize(sizeY) / 2;
+		if((rx > 0)) {
+			long[] row   = row();
+			long[] right = new long[words];
+			for(int y = 0, o = 0; y < height; ++y, o += words) {
+				System.arraycopy(bits, o, right, 0, words);
+				spreadRow(bits,  o, row, rx + 1,  1);
+				spreadRow(right, 0, row, rx + 1, -1);
+				for(int w = 0; w < words; ++w)
+					bits[o + w] |= right[w];
+			}
+		}
+		if((ry > 0)) {
+			dilateColumns(ry);
+		}
+	}
+	
+	// Dilates the columns by the van Herk/Gil-Werman algorithm. The row p of the padded image
+	// is the row (p - r), the blocks of size k of the padded rows hold the prefix (g) and suffix (f)
+	// results, a window is then the suffix of one block and the prefix of the next one.
+	private final void dilateColumns(int r) {
+		int k = 2 * r + 1, len = height + 2 * r;
+		long[] g = new long[len * words];
+		long[] f = new long[len * words];
+		for(int p = 0, b = 0; p < len; ++p) {
+			int y = p - r, o = p * words;
+			if((y >= 0 && y < height)) {
+				System.arraycopy(bits, y * words, f, o, words);
+			}
+			if((b == 0)) {
+				System.arraycopy(f, o, g, o, words);
+			} else {
+				for(int w = 0; w < words; ++w)
+					g[o + w] = g[o - words + w] | f[o + w];
+			}
+			if((++b == k)) b = 0;
+		}
+		for(int p = len - 2, b = (len - 1) % k; p >= 0; --p) {
+			if((b-- == 0)) { b = k - 1; continue; }
+			for(int w = 0, o = p * words; w < words; ++w)
+				f[o + w] |= f[o + words + w];
+		}
+		for(int y = 0, o = 0; y < height; ++y, o += words) {
+			for(int w = 0, t = (y + k - 1) * words; w < words; ++w)
+				bits[o + w] = f[o + w] | g[t + w];
+		}
+	}
+	
+	/**
+	 * Erodes {@code this} binary image by a square structuring element of the given size.
+	 * A foreground pixel becomes a background one, if there is a background pixel in its
+	 * neighborhood.
+	 * @param size The size of the structuring element, must be odd*/
+	public final void erode(int size) {
+		erode(size, size);
+	}
+	
+	/**
+	 * Erodes {@code this} binary image by a rectangular structuring element of the given size.
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @see #dilate(int, int)*/
+	public final void erode(int sizeX, int sizeY) {
+		checkSize(sizeX);
+		checkSize(sizeY);
+		// Erosion is dilation of the background
+		invert();
+		dilate(sizeX, sizeY);
+		invert();
+	}
+	
+	/**
+	 * Opens {@code this} binary image by a rectangular structuring element of the given size,
+	 * i.e. erodes and then dilates it. Removes foreground details smaller than the structuring
+	 * element.
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd*/
+	public final void open(int sizeX, int sizeY) {
+		erode(sizeX, sizeY);
+		dilate(sizeX, sizeY);
+	}
+	
+	/**
+	 * Closes {@code this} binary image by a rectangular structuring element of the given size,
+	 * i.e. dilates and then erodes it. Fills background details smaller than the structuring
+	 * element.
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd*/
+	public final void close(int sizeX, int sizeY) {
+		dilate(sizeX, sizeY);
+		erode(sizeX, sizeY);
+	}
+	
+	// Fills dst so that its pixel x is the pixel (x + dx) of the src row. The pixels outside
+	// the row are replaced by the pixel x itself, the same as Structures do at the edges.
+	private final void shiftRow(long[] src, int srcOff, long[] dst, int dx) {
+		if((dx == 0)) {
+			System.arraycopy(src, srcOff, dst, 0, words);
+			return;
+		}
+		shiftRowZero(src, srcOff, dst, 0, dx);
+		int x0, x1;
+		if((dx > 0)) { x0 = Math.max(0, width - dx); x1 = width; }
+		else         { x0 = 0; x1 = Math.min(width, -dx); }
+		for(int w = x0 >>> 6, e = (x1 - 1) >>> 6; w <= e; ++w) {
+			long mask = -1L;
+			if((w == x0 >>> 6))       mask &= -1L << x0;
+			if((w == (x1 - 1) >>> 6)) mask &= -1L >>> (63 - ((x1 - 1) & 63));
+			dst[w] = (dst[w] & ~mask) | (src[srcOff + w] & mask);
+		}
+	}
+	
+	// Computes the hit-and-miss transform of the pixels to the given array
+	private final void hitAndMiss(int[] structure, long[] output) {
+		int size = checkStructure(structure), half = size / 2;
+		int count = 0;
+		int[] dxs = new int[structure.length];
+		int[] dys = new int[structure.length];
+		boolean[] fgs = new boolean[structure.length];
+		for(int k = 0; k < structure.length; ++k) {
+			if((structure[k] == BLANK)) continue;
+			dxs[count] = k % size - half;
+			dys[count] = k / size - half;
+			fgs[count] = structure[k] == FOREGROUND;
+			++count;
+		}
+		long[] row = row();
+		for(int y = 0, o = 0; y < height; ++y, o += words) {
+			for(int w = 0; w < words; ++w)
+				output[o + w] = -1L;
+			output[o + words - 1] = lastMask;
+			for(int k = 0; k < count; ++k) {
+				int sy = y + dys[k];
+				if((sy < 0 || sy >= height)) sy = y;
+				shiftRow(bits, sy * words, row, dxs[k]);
+				if((fgs[k])) {
+					for(int w = 0; w < words; ++w)
+						output[o + w] &= row[w];
+				} else {
+					for(int w = 0; w < words; ++w)
+						output[o + w] &= ~row[w];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Applies the hit-and-miss transform to {@code this} binary image. A pixel becomes
+	 * a foreground one, if its neighborhood matches the given structure, otherwise it becomes
+	 * a background one. The structure is a square of odd size, containing only the values
+	 * {@code FOREGROUND}, {@code BACKGROUND} and {@code BLANK} of {@link StructuresConfiguration},
+	 * where {@code BLANK} matches any pixel.
+	 * @param structure The structure*/
+	public final void hitAndMiss(int[] structure) {
+		long[] output = temp();
+		hitAndMiss(structure, output);
+		temp = bits;
+		bits = output;
+	}
+	
+	/**
+	 * Thins {@code this} binary image, i.e. removes the foreground pixels whose
+	 * neighborhood matches the given structure.
+	 * @param structure The structure, see {@link #hitAndMiss(int[])}
+	 * @return {@code true}, if any pixel has changed, otherwise {@code false}*/
+	public final boolean thin(int[] structure) {
+		long[] matched = temp();
+		hitAndMiss(structure, matched);
+		long changed = 0L;
+		for(int i = 0, l = bits.length; i < l; ++i) {
+			changed |= bits[i] & matched[i];
+			bits[i] &= ~matched[i];
+		}
+		return changed != 0L;
+	}
+	
+	/**
+	 * Thins {@code this} binary image by each of the given structures, in order.
+	 * @param structures The structures, see {@link #hitAndMiss(int[])}
+	 * @return {@code true}, if any pixel has changed, otherwise {@code false}*/
+	public final boolean thin(int[]... structures) {
+		boolean changed = false;
+		for(int[] structure : structures)
+			changed |= thin(structure);
+		return changed;
+	}
+	
+	public final int getWidth() {
+		return width;
+	}
+	
+	public final int getHeight() {
+		return height;
+	}
+}
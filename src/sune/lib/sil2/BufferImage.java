@@ -0,0 +1,1798 @@
+package sune.lib.sil2;
+
+import static sune.lib.sil2.StructuresConfiguration.BACKGROUND;
+import static sune.lib.sil2.StructuresConfiguration.BLANK;
+import static sune.lib.sil2.StructuresConfiguration.FOREGROUND;
+
+import java.nio.Buffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+import sune.lib.sil2.StructuresConfiguration.IntBiPredicate;
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Represents an image, given only by its pixels in a buffer, to which can be applied
+ * various operations. This class does not depend on any UI toolkit, therefore it can be
+ * used also in a headless environment. The pixels of a row are stored consecutively,
+ * rows are {@code stride} pixels apart.
+ * @param <T> The type of an underlying buffer this image uses
+ * @see IImage
+ * @see AWTImage
+ * @since 2.1
+ * @author Sune*/
+public class BufferImage<T extends Buffer> implements IImageContext<T> {
+	
+	private static final float F2I = 255.0f;
+	private static final float I2F = 1.0f / 255.0f;
+	
+	// The maximum relative error of a kernel to be considered separable
+	private static final float SEPARABLE_EPSILON = 1.0e-5f;
+	// The number of rows processed at once by the separable convolution
+	private static final int SEPARABLE_STRIP_HEIGHT = 64;
+	// The minimum size of a non-separable kernel to be convoluted in the frequency domain
+	private static final int FFT_KERNEL_SIZE = 17;
+	
+	private final BufferImage<T> parent;
+	private final BufferImage<T> root;
+	private final List<BufferImage<T>> children = new LinkedList<>();
+	
+	private int offX;
+	private int offY;
+	private int subWidth;
+	private int subHeight;
+	private int width;
+	private int height;
+	private int stride;
+	private ImagePixelFormat<T> format;
+	
+	private T original;
+	private T pixels;
+	private T buffer;
+	
+	private InternalChannels<T> channels;
+	private final Convolution convolution = new Convolution();
+	private final Structures structures = new Structures();
+	private final Operations operations = new Operations();
+	
+	private BufferStrategy<T> bufferStrategy;
+	private int ptrBuffer = 0;
+	private int ptrPixels = 1;
+	// The changed regions of the last flush periods, the first one is the current period.
+	// Only the root image tracks them, sub-images report their changes to it.
+	private DirtyRegion[] dirty;
+	// The region where the buffer can have different pixels than the pixels
+	private DirtyRegion stale;
+	// The rows changed by setPixel, not yet added to the dirty and stale regions.
+	// Only the root image tracks them, the flags are only ever set to non-zero
+	// values, so concurrent writes of distinct pixels do not interfere.
+	private byte[] touchedRows;
+	private boolean touched;
+	
+	private TileScheduler scheduler;
+	private BufferPool bufferPool;
+	
+	/**
+	 * Creates a new instance with the given width and height and new pixels
+	 * of the given pixel format.
+	 * @param width The width
+	 * @param height The height
+	 * @param format The pixel format*/
+	public BufferImage(int width, int height, ImagePixelFormat<T> format) {
+		this(width, height, format, checkFormat(format).newBuffer(width * height));
+	}
+	
+	/**
+	 * Creates a new instance with the given width and height from
+	 * the given pixels of the given pixel format.
+	 * @param width The width
+	 * @param height The height
+	 * @param format The pixel format
+	 * @param pixels The pixels*/
+	public BufferImage(int width, int height, ImagePixelFormat<T> format, T pixels) {
+		this(width, height, width, format, pixels);
+	}
+	
+	/**
+	 * Creates a new instance with the given width, height and stride from
+	 * the given pixels of the given pixel format.
+	 * @param width The width
+	 * @param height The height
+	 * @param stride The distance, in pixels, between the first pixels of two consecutive rows
+	 * @param format The pixel format
+	 * @param pixels The pixels*/
+	public BufferImage(int width, int height, int stride, ImagePixelFormat<T> format, T pixels) {
+		this(width, height, stride, format, pixels, new NBufferStrategyFactory<>(2));
+	}
+	
+	public BufferImage(int width, int height, int stride, ImagePixelFormat<T> format, T pixels,
+			BufferStrategyFactory<T> bufferStrategyFactory) {
+		this(width, height, stride, format, pixels, bufferStrategyFactory, TileScheduler.getDefault());
+	}
+	
+	public BufferImage(int width, int height, int stride, ImagePixelFormat<T> format, T pixels,
+			BufferStrategyFactory<T> bufferStrategyFactory, TileScheduler scheduler) {
+		if((width <= 0 || height <= 0))
+			throw new IllegalArgumentException("Invalid image size");
+		if((stride < width))
+			throw new IllegalArgumentException("Stride cannot be less than width");
+		if((pixels == null))
+			throw new IllegalArgumentException("Pixels cannot be null");
+		if((checkFormat(format).getElementsPerPixel() * ((height - 1) * stride + width) > pixels.capacity()))
+			throw new IllegalArgumentException("Pixels buffer is too small");
+		if((bufferStrategyFactory == null))
+			throw new IllegalArgumentException("Buffer strategy factory cannot be null");
+		if((scheduler == null))
+			throw new IllegalArgumentException("Scheduler cannot be null");
+		this.width 	  = width;
+		this.height   = height;
+		this.stride   = stride;
+		this.format   = format;
+		this.original = pixels;
+		this.channels = new InternalChannels<>(format);
+		// Buffering
+		this.bufferStrategy = bufferStrategyFactory.create(original);
+		this.buffer = bufferStrategy.prepareBuffer(ptrBuffer);
+		this.pixels = bufferStrategy.prepareBuffer(ptrPixels);
+		int numOfBuffers = bufferStrategy.getBuffersCount();
+		if((numOfBuffers > 2)) {
+			for(int i = 2; i < numOfBuffers; ++i)
+				bufferStrategy.prepareBuffer(i);
+		}
+		this.dirty = new DirtyRegion[Math.max(1, numOfBuffers - 1)];
+		for(int i = 0; i < dirty.length; ++i)
+			dirty[i] = new DirtyRegion();
+		this.stale = new DirtyRegion();
+		this.touchedRows = new byte[height];
+		this.subWidth  = width;
+		this.subHeight = height;
+		this.scheduler = scheduler;
+		this.bufferPool = BufferPool.getDefault();
+		this.parent = null;
+		this.root = this;
+	}
+	
+	/**
+	 * Creates a new sub-image of the given parent image. The sub-image shares
+	 * the pixels with its parent.
+	 * @param parent The parent image
+	 * @param x The x-coordinate of the sub-image in the parent's source image
+	 * @param y The y-coordinate of the sub-image in the parent's source image
+	 * @param width The width of the sub-image
+	 * @param height The height of the sub-image*/
+	protected BufferImage(BufferImage<T> parent, int x, int y, int width, int height) {
+		if((x < parent.offX || y < parent.offY
+				|| width  > parent.subWidth  - (x - parent.offX)
+				|| height > parent.subHeight - (y - parent.offY)))
+			throw new IllegalArgumentException();
+		this.width 	  = parent.width;
+		this.height   = parent.height;
+		this.stride   = parent.stride;
+		this.format   = parent.format;
+		this.original = parent.original;
+		this.channels = parent.channels;
+		this.bufferStrategy = parent.bufferStrategy;
+		this.buffer = parent.buffer;
+		this.pixels = parent.pixels;
+		this.ptrPixels = parent.ptrPixels;
+		this.ptrBuffer = parent.ptrBuffer;
+		this.offX = x;
+		this.offY = y;
+		this.subWidth = width;
+		this.subHeight = height;
+		this.scheduler = parent.scheduler;
+		this.bufferPool = parent.bufferPool;
+		this.parent = parent;
+		this.root = parent.root;
+		this.parent.children.add(this);
+	}
+	
+	public BufferImage<T> subImage(int x, int y, int width, int height) {
+		return new BufferImage<>(this, x, y, width, height);
+	}
+	
+	private static final <T extends Buffer> ImagePixelFormat<T> checkFormat(ImagePixelFormat<T> format) {
+		if((format == null))
+			throw new IllegalArgumentException("Pixel format cannot be null");
+		return format;
+	}
+	
+	private static final int clamp02(int val) {
+		if((val <= 0x00)) return 0x00;
+		if((val >= 0xff)) return 0xff;
+		return val;
+	}
+	
+	@FunctionalInterface
+	private static interface BufferPass<T extends Buffer> {
+		void apply(T input, T output);
+	}
+	
+	@FunctionalInterface
+	private static interface TileRegion {
+		void apply(int x, int y, int width, int height, boolean edge);
+	}
+	
+	// Splits the given tile to the inner region, whose neighborhood of the given size
+	// lies completely in this image, and to the edge regions.
+	private final void splitTile(int x, int y, int width, int height, int size, TileRegion region) {
+		int ex = x + width, ey = y + height;
+		int ix = Math.max(x, offX + size), iex = Math.min(ex, offX + subWidth  - size);
+		int iy = Math.max(y, offY + size), iey = Math.min(ey, offY + subHeight - size);
+		if((ix >= iex || iy >= iey)) {
+			// The whole tile is near the edges
+			region.apply(x, y, width, height, true);
+			return;
+		}
+		region.apply(ix, iy, iex - ix, iey - iy, false);
+		if((iy > y))   region.apply(x, y, width, iy - y, true);                 // Top edge
+		if((iey < ey)) region.apply(x, iey, width, ey - iey, true);             // Bottom edge
+		if((ix > x))   region.apply(x, iy, ix - x, iey - iy, true);             // Left edge
+		if((iex < ex)) region.apply(iex, iy, ex - iex, iey - iy, true);         // Right edge
+	}
+	
+	/**
+	 * Contains methods for image convolution.*/
+	private final class Convolution {
+		
+		/**
+		 * Convolutes {@code this} image with the given kernel {@code iterations} times.
+		 * @param kernel The kernel
+		 * @param iterations The number of iterations
+		 * @param alphaChannel If {@code true}, also convolute the alpha channel*/
+		public final void convolute2d(float[] kernel, int iterations, boolean alphaChannel) {
+			float[] fkernel = checkKernel(kernel);
+			int size = kernelSize(fkernel.length);
+			float[][] vectors = separateKernel(fkernel, size);
+			boolean swap;
+			if((vectors != null)) {
+				// Rank-1 kernel, two 1D passes are enough
+				swap = convolute1d(vectors[0], vectors[1], pixels, buffer, iterations, alphaChannel);
+			} else if((size >= FFT_KERNEL_SIZE)) {
+				// Large kernel, the cost of FFT does not depend on its size
+				swap = convoluteFFT(fkernel, size, pixels, buffer, iterations, alphaChannel);
+			} else {
+				int[] indexes = new int[fkernel.length];
+				indexKernel(indexes, size, size);
+				swap = convolute2d(fkernel, indexes, pixels, buffer, iterations, alphaChannel);
+			}
+			done(swap, iterations);
+		}
+		
+		/**
+		 * Convolutes {@code this} image with the kernel given by the row and column vectors
+		 * {@code iterations} times.
+		 * @param kernelX The row vector of the kernel
+		 * @param kernelY The column vector of the kernel
+		 * @param iterations The number of iterations
+		 * @param alphaChannel If {@code true}, also convolute the alpha channel*/
+		public final void convolute2d(float[] kernelX, float[] kernelY, int iterations, boolean alphaChannel) {
+			done(convolute1d(checkVector(kernelX), checkVector(kernelY), pixels, buffer, iterations, alphaChannel),
+				iterations);
+		}
+		
+		// Publishes the result of the passes. If it ended in the pixels, there is nothing
+		// to swap, but the pixels still changed and the buffer was used by the passes.
+		private final void done(boolean swap, int iterations) {
+			if((swap)) swapBuffer(); else
+			if((iterations > 0)) markDirty(offX, offY, subWidth, subHeight);
+		}
+		
+		private final int kernelSize(int length) {
+			return (int) Math.round(Math.sqrt(length));
+		}
+		
+		// Returns the row and column vectors of the given kernel, if the kernel is separable,
+		// i.e. its rank is 1, otherwise returns null.
+		private final float[][] separateKernel(float[] kernel, int size) {
+			if((size <= 1)) return null;
+			// Find the element with the maximum absolute value, so that the division is stable
+			int pivot = 0;
+			float max = 0.0f;
+			for(int i = 0, l = kernel.length; i < l; ++i) {
+				float val = Math.abs(kernel[i]);
+				if((val > max)) { max = val; pivot = i; }
+			}
+			if((max == 0.0f)) return null;
+			int pr = pivot / size, pc = pivot % size;
+			float[] kernelX = new float[size];
+			float[] kernelY = new float[size];
+			for(int i = 0; i < size; ++i) {
+				kernelX[i] = kernel[pr * size + i];
+				kernelY[i] = kernel[i * size + pc] / kernel[pivot];
+			}
+			float eps = max * SEPARABLE_EPSILON;
+			for(int r = 0, i = 0; r < size; ++r) {
+				for(int c = 0; c < size; ++c, ++i) {
+					if((Math.abs(kernel[i] - kernelY[r] * kernelX[c]) > eps))
+						return null;
+				}
+			}
+			return new float[][] { kernelX, kernelY };
+		}
+		
+		private final float[] checkVector(float[] vector) {
+			// Same as for the kernel, there must be only one middle element
+			return (vector.length & 1) == 0 ? Arrays.copyOf(vector, vector.length + 1) : vector;
+		}
+		
+		private final void indexKernel(int[] indexes, int rows, int cols) {
+			int hr = rows / 2;
+			int hc = cols / 2;
+			for(int i = 0, c = cols, x = -hc, y = -hr * stride, l = indexes.length; i < l; ++i) {
+				/* Creates the indexes of a kernel so that the final index of the pixel
+				 * to take from will be: px = index + kernel[i].
+				 *
+				 * As an example, the index kernel of size 3x3 should look like this:
+				 *
+				 *     -stride-1 -stride -stride+1
+				 *     -1        0       +1
+				 *     +stride-1 +stride +stride+1
+				 *
+				 * So then, the pixels values (separated in all channels RGB and A)
+				 * will be taken from the indexes:
+				 * 
+				 *     index-stride-1, index-stride, index-stride+1, index-1, ...
+				 *
+				 * The final value of added values divided by the value of the kernel
+				 * will be the final value of the pixel on the given index.*/
+				indexes[i] = y + x; ++x;
+				if((--c == 0)) { c = cols; x = -hc; y += stride; }
+			}
+		}
+		
+		private final float[] checkKernel(float[] kernel) {
+			int rows, cols = rows = kernelSize(kernel.length);
+			/* The middle row is the row where the pixel for what
+			 * we want to calculate the value is. Even number of rows
+			 * does not have only one middle row but two. Therefore the
+			 * number of rows should not be even. In the case of even
+			 * sized kernel, just resize the kernel array and set
+			 * the values to 0, if the index of the value is outside
+			 * of the previous kernel.*/
+			if((rows & 1) == 0 || (cols & 1) == 0) {
+				float[] padded = new float[(rows + 1) * (cols + 1)];
+				for(int r = 0; r < rows; ++r)
+					System.arraycopy(kernel, r * cols, padded, r * (cols + 1), cols);
+				kernel = padded;
+			}
+			return kernel;
+		}
+		
+		// Applies the given pass the given number of times. Instead of copying the output
+		// back to the input after each pass, the buffers just exchange their roles.
+		// Returns true, if the result is in the output buffer, false otherwise.
+		private final boolean iterate(T input, T output, int iterations, BufferPass<T> pass) {
+			T src = input, dst = output, tmp;
+			for(int i = 0; i < iterations; ++i) {
+				pass.apply(src, dst);
+				tmp = src; src = dst; dst = tmp;
+			}
+			return src == output;
+		}
+		
+		private final boolean convolute2d(float[] kernel, int[] indexes,
+				T input, T output, int iterations, boolean alphaChannel) {
+			return iterate(input, output, iterations, (src, dst) -> {
+				scheduler.execute(offX, offY, subWidth, subHeight, (sx, sy, sw, sh) -> {
+					convolute2d(sx, sy, sw, sh, stride, kernel,
+						indexes, src, dst, alphaChannel);
+				});
+			});
+		}
+		
+		private final boolean convolute1d(float[] kernelX, float[] kernelY,
+				T input, T output, int iterations, boolean alphaChannel) {
+			return iterate(input, output, iterations, (src, dst) -> {
+				scheduler.execute(offX, offY, subWidth, subHeight, (sx, sy, sw, sh) -> {
+					convolute1d(sx, sy, sw, sh, kernelX, kernelY, src, dst, alphaChannel);
+				});
+			});
+		}
+		
+		private final boolean convoluteFFT(float[] kernel, int size,
+				T input, T output, int iterations, boolean alphaChannel) {
+			return iterate(input, output, iterations, (src, dst) -> {
+				FFTConvolution.convolute(kernel, size, src, dst, format, offX, offY,
+					subWidth, subHeight, stride, alphaChannel, scheduler);
+			});
+		}
+		
+		// Convolutes the given tile with a separable kernel by a horizontal and a vertical pass.
+		// The edges are extended the same way as in convolute2d_edges, i.e. a pixel outside
+		// is replaced by the pixel in the same column (horizontal pass) or row (vertical pass)
+		// as the convoluted pixel, so the result is the same as of the 2D kernel.
+		private final void convolute1d(int x, int y, int w, int h, float[] kernelX, float[] kernelY,
+				T input, T output, boolean alphaChannel) {
+			float pxa, pxr, pxg, pxb, mul;
+			int epp = format.getElementsPerPixel();
+			int sx = offX, ex = sx + subWidth;
+			int sy = offY, ey = sy + subHeight;
+			int mx = kernelX.length, hx = mx / 2;
+			int my = kernelY.length, hy = my / 2;
+			int lw = w + 2 * hx, rw = w * 4;
+			int sh = Math.min(h, SEPARABLE_STRIP_HEIGHT);
+			// The horizontal pass of the needed input rows of a strip
+			float[] rows = new float[(sh + 2 * hy) * rw];
+			float[] acc  = new float[rw];
+			int[]   line = new int[lw];
+			// The columns of the line that are in the image, the rest is not used
+			int lx = Math.max(sx, x - hx), lxe = Math.min(ex, x + w + hx);
+			int pl = lx - (x - hx), pr = pl + (lxe - lx);
+			for(int strip = y, ye = y + h; strip < ye; strip += sh) {
+				int sth = Math.min(sh, ye - strip);
+				int ry  = Math.max(sy, strip - hy);
+				int rye = Math.min(ey, strip + sth + hy);
+				// Horizontal pass
+				for(int r = ry, o = 0, clr; r < rye; ++r, o += rw) {
+					format.getARGB(input, (r * stride + lx) * epp, line, pl, lxe - lx);
+					for(int j = 0, q = o; j < w; ++j, q += 4) {
+						pxa = 0.0f;
+						pxr = 0.0f;
+						pxg = 0.0f;
+						pxb = 0.0f;
+						boolean inner = j >= pl && j + mx <= pr;
+						for(int k = 0, c; k < mx; ++k) {
+							mul  = kernelX[k];
+							c    = j + k;
+							if(!inner && (c < pl || c >= pr)) c = j + hx;
+							clr  = line[c];
+							pxa += ((clr >> 24) & 0xff) * mul;
+							pxr += ((clr >> 16) & 0xff) * mul;
+							pxg += ((clr >>  8) & 0xff) * mul;
+							pxb += ((clr)       & 0xff) * mul;
+						}
+						rows[q]     = pxa;
+						rows[q + 1] = pxr;
+						rows[q + 2] = pxg;
+						rows[q + 3] = pxb;
+					}
+				}
+				// Vertical pass
+				for(int r = strip, re = strip + sth; r < re; ++r) {
+					Arrays.fill(acc, 0.0f);
+					for(int k = 0; k < my; ++k) {
+						mul = kernelY[k];
+						int ky = r - hy + k;
+						if((ky < sy || ky >= ey)) ky = r;
+						int o = (ky - ry) * rw;
+						for(int j = 0; j < rw; ++j)
+							acc[j] += rows[o + j] * mul;
+					}
+					for(int j = 0, q = 0; j < w; ++j, q += 4) {
+						line[j] = argb((int) acc[q + 1], (int) acc[q + 2], (int) acc[q + 3],
+						               alphaChannel ? (int) acc[q] : 0xff);
+					}
+					format.setARGB(output, (r * stride + x) * epp, line, 0, w);
+				}
+			}
+		}
+		
+		private final void convolute2d(int x, int y, int width, int height, int stride,
+				float[] kernel, int[] indexes, T input, T output, boolean alphaChannel) {
+			int klen = kernelSize(kernel.length) / 2;
+			splitTile(x, y, width, height, klen, (rx, ry, rw, rh, edge) -> {
+				if((edge)) {
+					convolute2d_edges(rx, ry, rw, rh, stride - rw, stride, kernel,
+					                  indexes, input, output, alphaChannel);
+				} else {
+					convolute2d_inner(rx, ry, rw, rh, stride, kernel,
+					                  indexes, input, output, alphaChannel);
+				}
+			});
+		}
+		
+		// Faster version of image convolution that requires the kernel to be normalized
+		// and the whole neighborhood of all the pixels to be in the image
+		private final void convolute2d_inner(int x, int y, int width, int height, int stride,
+				float[] kernel, int[] indexes, T input, T output, boolean alphaChannel) {
+			float pxa, pxr, pxg, pxb, mul;
+			int iinc = stride - width;
+			int epp  = format.getElementsPerPixel();
+			if((alphaChannel)) {
+				for(int i = y * stride + x, c = width, r = height, m = indexes.length, clr, ind;; ++i) {
+					pxa = 0.0f;
+					pxr = 0.0f;
+					pxg = 0.0f;
+					pxb = 0.0f;
+					for(int k = 0; k < m; ++k) {
+						mul  = kernel[k];
+						ind  = i + indexes[k];
+						clr  = format.getARGB(input, ind * epp);
+						pxa += ((clr >> 24) & 0xff) * mul;
+						pxr += ((clr >> 16) & 0xff) * mul;
+						pxg += ((clr >>  8) & 0xff) * mul;
+						pxb += ((clr)       & 0xff) * mul;
+					}
+					format.setPixel(output, i * epp,
+					                clamp02((int) pxr),
+					                clamp02((int) pxg),
+					                clamp02((int) pxb),
+					                clamp02((int) pxa));
+					if((--c == 0)) {
+						c  = width;
+						i += iinc;
+						if((--r == 0))
+							break;
+					}
+				}
+			} else {
+				int alpha = 0xff;
+				for(int i = y * stride + x, c = width, r = height, m = indexes.length, clr, ind;; ++i) {
+					pxr = 0.0f;
+					pxg = 0.0f;
+					pxb = 0.0f;
+					for(int k = 0; k < m; ++k) {
+						mul  = kernel[k];
+						ind  = i + indexes[k];
+						clr  = format.getARGB(input, ind * epp);
+						pxr += ((clr >> 16) & 0xff) * mul;
+						pxg += ((clr >>  8) & 0xff) * mul;
+						pxb += ((clr)       & 0xff) * mul;
+					}
+					format.setPixel(output, i * epp,
+					                clamp02((int) pxr),
+					                clamp02((int) pxg),
+					                clamp02((int) pxb),
+					                (alpha));
+					if((--c == 0)) {
+						c  = width;
+						i += iinc;
+						if((--r == 0))
+							break;
+					}
+				}
+			}
+		}
+		
+		// Convolute the edges using the Extend method (edge pixels are "copied" over)
+		private final void convolute2d_edges(int x, int y, int w, int h, int d, int stride, float[] kernel,
+				int[] indexes, T input, T output, boolean alphaChannel) {
+			if((w <= 0 || h <= 0)) return; // Nothing to do
+			float pxa, pxr, pxg, pxb, mul;
+			int klen = kernelSize(kernel.length);
+			int sx = offX, ex = sx + subWidth;
+			int sy = offY, ey = sy + subHeight;
+			int epp  = format.getElementsPerPixel();
+			for(int i = y * stride + x, c = w, r = h, m = indexes.length, ind, clr, kcx, kcy, kh = klen / 2;; ++i) {
+				pxa = 0.0f;
+				pxr = 0.0f;
+				pxg = 0.0f;
+				pxb = 0.0f;
+				for(int k = 0, kx = -kh, ky = -kh, ke = kh+1; k < m; ++k) {
+					mul = kernel[k];
+					ind = i + indexes[k];
+					kcx = x + (w - c) + kx;
+					kcy = y + (h - r) + ky;
+					if((kcy < sy))  ind -= ky * stride; else
+					if((kcy >= ey)) ind -= ky * stride;
+					if((kcx < sx))  ind -= kx; else
+					if((kcx >= ex)) ind -= kx;
+					clr = format.getARGB(input, ind * epp);
+					pxa += ((clr >> 24) & 0xff) * mul;
+					pxr += ((clr >> 16) & 0xff) * mul;
+					pxg += ((clr >>  8) & 0xff) * mul;
+					pxb += ((clr)       & 0xff) * mul;
+					if((++kx == ke)) {
+						kx = -kh;
+						if((++ky == ke))
+							break;
+					}
+				}
+				if(!alphaChannel) pxa = 0xff;
+				format.setPixel(output, i * epp,
+				                clamp02((int) pxr),
+				                clamp02((int) pxg),
+				                clamp02((int) pxb),
+				                clamp02((int) pxa));
+				if((--c == 0)) {
+					c  = w;
+					i += d;
+					if((--r == 0))
+						break;
+				}
+			}
+		}
+	}
+	
+	private final class Structures {
+		
+		public final void convolute2d(int[] structure, StructuresConfiguration config) {
+			// Make sure that the convolution outputs to the current version of pixels
+			syncBuffer();
+			convolute2d(structure, pixels, buffer, config);
+			swapBuffer();
+		}
+		
+		private final void convolute2d(int[] structure, T input, T output,
+				StructuresConfiguration config) {
+			int slen = structure.length;
+			int size = (int) FastMath.sqrt(slen) + 1;
+			int[] indexes = new int[slen];
+			indexStructure(indexes, size, size);
+			convolute2d(structure, indexes, input, output, config);
+		}
+		
+		private final void indexStructure(int[] indexes, int rows, int cols) {
+			int hr = rows / 2;
+			int hc = cols / 2;
+			for(int i = 0, c = cols, x = -hc, y = -hr * stride, l = indexes.length; i < l; ++i) {
+				indexes[i] = y + x; ++x;
+				if((--c == 0)) { c = cols; x = -hc; y += stride; }
+			}
+		}
+		
+		private final int[] checkStructure(int[] structure) {
+			int rows, cols = rows = (int) FastMath.sqrt(structure.length);
+			if((rows & 1) == 0 || (cols & 1) == 0) {
+				int newSize = ++rows * ++cols;
+				structure  	= Arrays.copyOf(structure, newSize);
+			}
+			return structure;
+		}
+		
+		private final void convolute2d(int[] structure, int[] indexes, T input, T output,
+				StructuresConfiguration config) {
+			int[] fStructure = checkStructure(structure);
+			// Precompile the non-blank elements, so that the inner loop does not have to skip the blank ones
+			int count = 0;
+			int[] offsets = new int[indexes.length];
+			int[] values  = new int[indexes.length];
+			for(int k = 0, m = indexes.length; k < m; ++k) {
+				if((fStructure[k] < BLANK)) {
+					offsets[count] = indexes[k];
+					values [count] = fStructure[k];
+					++count;
+				}
+			}
+			int[] fOffsets = Arrays.copyOf(offsets, count);
+			int[] fValues  = Arrays.copyOf(values,  count);
+			scheduler.execute(offX, offY, subWidth, subHeight, (sx, sy, sw, sh) -> {
+				convolute2d(sx, sy, sw, sh, stride, fStructure, indexes, fOffsets, fValues, input, output, config);
+			});
+		}
+		
+		private final void convolute2d(int x, int y, int width, int height, int stride, int[] structure,
+				int[] indexes, int[] offsets, int[] values, T input, T output, StructuresConfiguration config) {
+			int slen = (int) FastMath.sqrt(structure.length) / 2;
+			splitTile(x, y, width, height, slen, (rx, ry, rw, rh, edge) -> {
+				if((edge)) {
+					convolute2d_edges(rx, ry, rw, rh, stride - rw, stride, structure,
+					                  indexes, input, output, config);
+				} else {
+					convolute2d_inner(rx, ry, rw, rh, stride, offsets, values,
+					                  input, output, config);
+				}
+			});
+		}
+		
+		private final void convolute2d_inner(int x, int y, int width, int height, int stride,
+				int[] offsets, int[] values, T input, T output, StructuresConfiguration config) {
+			ImagePixelFormat<T> format = BufferImage.this.format;
+			IntBiPredicate conditionHas = config.conditionHas;
+			IntPredicate   conditionCan = config.conditionCan;
+			int valueTrue  = config.valueTrue;
+			int valueFalse = config.valueFalse;
+			int iinc = stride - width;
+			int epp  = format.getElementsPerPixel();
+			for(int i = y * stride + x, c = width, r = height, m = offsets.length, pxv;; ++i) {
+				if((conditionCan.test(format.getARGB(input, i * epp) & 0xff))) {
+					pxv = valueTrue;
+					for(int k = 0; k < m; ++k) {
+						if((conditionHas.test(format.getARGB(input, (i + offsets[k]) * epp) & 0xff, values[k]))) {
+							pxv = valueFalse; break;
+						}
+					}
+					format.setPixel(output, i * epp, pxv, pxv, pxv, 0xff);
+				}
+				if((--c == 0)) {
+					c  = width;
+					i += iinc;
+					if((--r == 0))
+						break;
+				}
+			}
+		}
+		
+		private final void convolute2d_edges(int x, int y, int w, int h, int d, int stride, int[] structure,
+				int[] indexes, T input, T output, StructuresConfiguration config) {
+			if((w <= 0 || h <= 0)) return; // Nothing to do
+			int slen = (int) FastMath.sqrt(structure.length) + 1;
+			int sx = offX, ex = sx + subWidth;
+			int sy = offY, ey = sy + subHeight;
+			ImagePixelFormat<T> format = BufferImage.this.format;
+			IntBiPredicate conditionHas = config.conditionHas;
+			IntPredicate   conditionCan = config.conditionCan;
+			int valueTrue  = config.valueTrue;
+			int valueFalse = config.valueFalse;
+			int epp  = format.getElementsPerPixel();
+			for(int i = y * stride + x, c = w, r = h, m = indexes.length, ind, kcx, kcy, kh = slen / 2, pxv;; ++i) {
+				if((conditionCan.test(format.getARGB(input, i * epp) & 0xff))) {
+					pxv = valueTrue;
+					for(int k = 0, kx = -kh, ky = -kh, ke = kh+1; k < m; ++k) {
+						ind = i + indexes[k];
+						kcx = x + (w - c) + kx;
+						kcy = y + (h - r) + ky;
+						if((kcy < sy))  ind -= ky * stride; else
+						if((kcy >= ey)) ind -= ky * stride;
+						if((kcx < sx))  ind -= kx; else
+						if((kcx >= ex)) ind -= kx;
+						if((structure[k] < BLANK
+								&& conditionHas.test(format.getARGB(input, ind * epp) & 0xff, structure[k]))) {
+							pxv = valueFalse; break;
+						}
+						if((++kx == ke)) {
+							kx = -kh;
+							if((++ky == ke))
+								break;
+						}
+					}
+					format.setPixel(output, i * epp, pxv, pxv, pxv, 0xff);
+				}
+				if((--c == 0)) {
+					c  = w;
+					i += d;
+					if((--r == 0))
+						break;
+				}
+			}
+		}
+	}
+	
+	private final class Operations {
+		
+		public final int FALSE = BACKGROUND;
+		public final int TRUE  = FOREGROUND;
+		
+		public final int COLOR_FALSE = Colors.rgba(BACKGROUND, BACKGROUND, BACKGROUND, 0xff);
+		public final int COLOR_TRUE  = Colors.rgba(FOREGROUND, FOREGROUND, FOREGROUND, 0xff);
+		
+		private final Deque<T> stack = new ArrayDeque<T>();
+		
+		private final int bool2val(boolean bool) {
+			return bool ? COLOR_TRUE : COLOR_FALSE;
+		}
+		
+		// Saves a copy of the given buffer to the stack, the copy is taken from the pool
+		public final void save(T buffer) {
+			T copy = bufferPool.acquire(buffer);
+			BufferUtils.buffercopy(buffer, copy);
+			stack.push(copy);
+		}
+		
+		// Takes the current state of the image's pixels and do an OR operation
+		// with the first buffer on the stack
+		public final void or() {
+			T buffer = stack.pop();
+			or(buffer);
+			bufferPool.release(buffer);
+		}
+		
+		public final void and() {
+			T buffer = stack.pop();
+			and(buffer);
+			bufferPool.release(buffer);
+		}
+		
+		// Does not use stack. The buffer can also be the image's buffer, since each
+		// element is read before the same element of the output is written.
+		public final void or(T buffer) {
+			applyActionINT((input, output, i, varStore) -> {
+				boolean pi = (format.getARGB(input,  i) & 0xff) == TRUE;
+				boolean pb = (format.getARGB(buffer, i) & 0xff) == TRUE;
+				format.setARGB(output, i, bool2val(pi | pb));
+			});
+		}
+		
+		// Does not use stack
+		public final void and(T buffer) {
+			applyActionINT((input, output, i, varStore) -> {
+				boolean pi = (format.getARGB(input,  i) & 0xff) == TRUE;
+				boolean pb = (format.getARGB(buffer, i) & 0xff) == TRUE;
+				format.setARGB(output, i, bool2val(pi & pb));
+			});
+		}
+		
+		// Returns all the buffers on the stack to the pool
+		public final void clear() {
+			for(T buffer; (buffer = stack.poll()) != null;)
+				bufferPool.release(buffer);
+		}
+		
+		// Does not use stack
+		public final void not() {
+			applyActionINT((input, output, i, varStore) -> {
+				format.setARGB(output, i, bool2val((format.getARGB(input, i) & 0xff) == FALSE));
+			});
+		}
+		
+		// Applies Summed-area table "operator" to the binary image
+		// https://en.wikipedia.org/wiki/Summed-area_table
+		public final int[] integral(Function<Integer, Integer> function) {
+			int sx = offX, ex = offX + subWidth;
+			int sy = offY, ey = offY + subHeight;
+			int[] array = new int[subWidth * subHeight];
+			for(int x = sx, y = sy, i = y * stride + x, k = 0;; ++i, ++k) {
+				int sum = function.apply(format.getARGB(pixels, i) & 0xff);
+				if((x > sy))           sum += array[k - 1];
+				if((y > sy))           sum += array[k - subWidth];
+				if((y > sy && x > sx)) sum -= array[k - subWidth - 1];
+				array[k] = sum;
+				if((++x == ex)) {
+					x = sx;
+					i += stride - subWidth;
+					if((++y == ey))
+						break;
+				}
+			}
+			return array;
+		}
+	}
+	
+	/**
+	 * Convolutes {@code this} image with the given kernel {@code iterations} times.
+	 * @param kernel The kernel
+	 * @param iterations The number of iterations
+	 * @param alphaChannel If {@code true}, also convolute the alpha channel*/
+	@Override
+	public final void convolute2d(float[] kernel, int iterations, boolean alphaChannel) {
+		convolution.convolute2d(kernel, iterations, alphaChannel);
+	}
+	
+	/**
+	 * Convolutes {@code this} image with a separable kernel, given by its row and
+	 * column vectors, {@code iterations} times. This is equivalent to convoluting
+	 * with the kernel {@code kernelY * kernelX}, but only {@code O(n)} operations
+	 * are done per pixel instead of {@code O(n^2)}.
+	 * @param kernelX The row vector of the kernel
+	 * @param kernelY The column vector of the kernel
+	 * @param iterations The number of iterations
+	 * @param alphaChannel If {@code true}, also convolute the alpha channel*/
+	@Override
+	public final void convolute2d(float[] kernelX, float[] kernelY, int iterations, boolean alphaChannel) {
+		convolution.convolute2d(kernelX, kernelY, iterations, alphaChannel);
+	}
+	
+	@Override
+	public final void structureConvolute2d(int[] structure, StructuresConfiguration config) {
+		structures.convolute2d(structure, config);
+	}
+	
+	// Saves the current state of the image's pixels to the operations stack
+	@Override
+	public final void opSave() {
+		opSave(pixels);
+	}
+	
+	/**
+	 * Saves a copy of the given buffer to the operations stack. The copy is acquired
+	 * from the buffer pool of {@code this} image and is returned to it when it is
+	 * popped by {@link #opOr()} or {@link #opAnd()}.
+	 * @param buffer The buffer*/
+	public final void opSave(T buffer) {
+		operations.save(buffer);
+	}
+	
+	// Removes the first element on the operations stack and returns it. The caller
+	// then owns the buffer and may return it to the pool of this image when done.
+	@Override
+	public final T opRemove() {
+		return operations.stack.pop();
+	}
+	
+	@Override
+	public final void opOr() {
+		operations.or();
+	}
+	
+	@Override
+	public final void opAnd() {
+		operations.and();
+	}
+	
+	/**
+	 * Does an OR operation of the current state of the image's pixels with
+	 * the given buffer, without using the operations stack. The buffer may be
+	 * any buffer of the image's buffer strategy, e.g. {@link #getBuffer()},
+	 * which contains the pixels before the last operation.
+	 * @param buffer The buffer*/
+	@Override
+	public final void opOr(T buffer) {
+		operations.or(buffer);
+	}
+	
+	/**
+	 * Does an AND operation of the current state of the image's pixels with
+	 * the given buffer, without using the operations stack. The buffer may be
+	 * any buffer of the image's buffer strategy, e.g. {@link #getBuffer()},
+	 * which contains the pixels before the last operation.
+	 * @param buffer The buffer*/
+	@Override
+	public final void opAnd(T buffer) {
+		operations.and(buffer);
+	}
+	
+	@Override
+	public final void opNot() {
+		operations.not();
+	}
+	
+	@Override
+	public final int[] opIntegral(Function<Integer, Integer> function) {
+		return operations.integral(function);
+	}
+	
+	// ----- Experimental
+	
+	@Override
+	public final <R> R applyOperation(IImageOperation<T, R> operation) {
+		if((operation == null))
+			throw new IllegalArgumentException("Operation cannot be null");
+		return operation.execute(this);
+	}
+	
+	// -----
+	
+	@FunctionalInterface
+	public static interface Job2D<T extends Buffer> {
+		void execute(int rx, int ry, int rw, int rh, T input, int stride, T output);
+	}
+	
+	@FunctionalInterface
+	public static interface Job1D<T extends Buffer> {
+		void execute(int i, int x, int y, T input, int stride, T output);
+	}
+	
+	@Override
+	public final void applyAreaJob(int x, int y, int width, int height, T input, T output, Job2D<T> job) {
+		int ex = Math.min(BufferImage.this.width, Math.min(x + width, offX + subWidth));
+		int ey = Math.min(BufferImage.this.height, Math.min(y + height, offY + subHeight));
+		scheduler.execute(x, y, ex - x, ey - y, (sx, sy, sw, sh) -> {
+			job.execute(sx, sy, sw, sh, input, stride, output);
+		});
+	}
+	
+	@Override
+	public final void applyLineHJob(int x, int y, int width, T input, T output, Job1D<T> job) {
+		for(int stride = this.stride, sx = x, i = y * stride + x, kx = width; kx-- != 0; ++sx, ++i) {
+			job.execute(i, sx, y, input, stride, output);
+		}
+	}
+	
+	@Override
+	public final void applyLineVJob(int x, int y, int height, T input, T output, Job1D<T> job) {
+		for(int stride = this.stride, sy = y, i = y * stride + x, ky = height; ky-- != 0; ++sy, i += stride) {
+			job.execute(i, x, sy, input, stride, output);
+		}
+	}
+	
+	@FunctionalInterface
+	public static interface ActionINT<T extends Buffer> {
+		void action(T input, T output, int index, VariableStore varStore);
+	}
+	
+	@FunctionalInterface
+	public static interface ActionRGB<T extends Buffer> {
+		void action(int[] rgb, T input, T output, int index, VariableStore varStore);
+	}
+	
+	@FunctionalInterface
+	public static interface ActionFloat<T extends Buffer> {
+		void action(float[] arr, T input, T output, int index, VariableStore varStore);
+	}
+	
+	@FunctionalInterface
+	static interface ConversionAction<A, B> {
+		void convert(A a, B b);
+	}
+	
+	@FunctionalInterface
+	private static interface ThreadedAction<T> {
+		void action(int i, int epp, VariableStore varStore);
+	}
+	
+	@FunctionalInterface
+	private static interface ThreadedRowAction<T> {
+		void action(int i, int length, int epp, int[] row, VariableStore varStore);
+	}
+	
+	public static interface VariableStore {
+		VariableStore copy();
+		void prepare();
+		Object get(int addr);
+	}
+	
+	private static final EmptyVariableStore VAR_STORE_EMPTY = EmptyVariableStore.INSTANCE;
+	private static final RGBVariableStore   VAR_STORE_RGB   = RGBVariableStore.INSTANCE;
+	private static final FloatVariableStore VAR_STORE_FLOAT = FloatVariableStore.INSTANCE;
+	
+	private static final class EmptyVariableStore implements VariableStore {
+		
+		public static final EmptyVariableStore INSTANCE = new EmptyVariableStore();
+		
+		@Override public VariableStore copy() { return INSTANCE; }
+		@Override public void prepare() {}
+		@Override public Object get(int addr) { return null; }
+	}
+	
+	private static final class RGBVariableStore implements VariableStore {
+		
+		public static final RGBVariableStore INSTANCE = new RGBVariableStore();
+		
+		private int[] rgb;
+		
+		@Override
+		public VariableStore copy() {
+			return new RGBVariableStore();
+		}
+		
+		@Override
+		public void prepare() {
+			rgb = new int[4];
+		}
+		
+		@Override
+		public Object get(int addr) {
+			// Always return RGB array, so it can be JITed easily
+			return rgb;
+		}
+	}
+	
+	private static final class FloatVariableStore implements VariableStore {
+		
+		public static final FloatVariableStore INSTANCE = new FloatVariableStore();
+		
+		private float[] arr;
+		private int  [] rgb;
+		
+		@Override
+		public VariableStore copy() {
+			return new FloatVariableStore();
+		}
+		
+		@Override
+		public void prepare() {
+			arr = new float[4];
+			rgb = new int  [3];
+		}
+		
+		@Override
+		public Object get(int addr) {
+			return addr == 0 ? rgb : arr;
+		}
+	}
+	
+	private final void applyThreadedAction(T input, T output, VariableStore varStore, ThreadedAction<T> action) {
+		int epp = format.getElementsPerPixel();
+		scheduler.execute(offX, offY, subWidth, subHeight, (sx, sy, sw, sh) -> {
+			VariableStore localVarStore = varStore.copy();
+			localVarStore.prepare();
+			for(int i = sy * stride + sx, ai = stride - sw, px = sw, py = sh;; ++i) {
+				action.action(i, epp, localVarStore);
+				if((--px == 0)) {
+					px = sw;
+					i += ai;
+					if((--py == 0))
+						break;
+				}
+			}
+		});
+	}
+	
+	// Same as applyThreadedAction but gives the action whole rows of a tile at once,
+	// together with a scratch array of a tile's width
+	private final void applyThreadedRowAction(T input, T output, VariableStore varStore,
+			ThreadedRowAction<T> action) {
+		int epp = format.getElementsPerPixel();
+		scheduler.execute(offX, offY, subWidth, subHeight, (sx, sy, sw, sh) -> {
+			VariableStore localVarStore = varStore.copy();
+			localVarStore.prepare();
+			int[] row = new int[sw];
+			for(int i = sy * stride + sx, py = sh; py-- != 0; i += stride) {
+				action.action(i, sw, epp, row, localVarStore);
+			}
+		});
+	}
+	
+	private static final int argb(int r, int g, int b, int a) {
+		return (clamp02(a) << 24) |
+		       (clamp02(r) << 16) |
+		       (clamp02(g) <<  8) |
+		       (clamp02(b));
+	}
+	
+	private final void applyActionINT(T input, T output, ActionINT<T> action) {
+		applyThreadedAction(input, output, VAR_STORE_EMPTY, (i, epp, varStore) -> {
+			action.action(input, output, i * epp, varStore);
+		});
+	}
+	
+	private final void applyActionRGB(T input, T output, ActionRGB<T> action, VariableStore mainVarStore) {
+		applyThreadedRowAction(input, output, mainVarStore, (i, length, epp, row, varStore) -> {
+			int argb; // Variable declarations
+			int[] rgb = (int[]) varStore.get(0);
+			format.getARGB(input, i * epp, row, 0, length);
+			for(int k = 0, p = i * epp; k < length; ++k, p += epp) {
+				argb   = row[k];
+				rgb[0] = (argb >> 16) & 0xff;
+				rgb[1] = (argb >>  8) & 0xff;
+				rgb[2] = (argb)       & 0xff;
+				rgb[3] = (argb >> 24) & 0xff;
+				action.action(rgb, input, output, p, varStore);
+				row[k] = argb(rgb[0], rgb[1], rgb[2], rgb[3]);
+			}
+			format.setARGB(output, i * epp, row, 0, length);
+		});
+	}
+	
+	private final void applyLookupTable(T input, T output, LookupTable table) {
+		applyThreadedRowAction(input, output, VAR_STORE_EMPTY, (i, length, epp, row, varStore) -> {
+			format.getARGB(input, i * epp, row, 0, length);
+			table.apply(row, 0, length);
+			format.setARGB(output, i * epp, row, 0, length);
+		});
+	}
+	
+	private final void applyActionRGB(T input, T output, ActionRGB<T> action) {
+		applyActionRGB(input, output, action, VAR_STORE_RGB);
+	}
+	
+	private final void applyActionFloat(T input, T output, ActionFloat<T> action,
+			ConversionAction<int[], float[]> convForward,
+			ConversionAction<float[], int[]> convInverse) {
+		applyActionFloat(input, output, action, convForward, convInverse, VAR_STORE_FLOAT);
+	}
+	
+	private final void applyActionFloat(T input, T output, ActionFloat<T> action,
+			ConversionAction<int[], float[]> convForward,
+			ConversionAction<float[], int[]> convInverse,
+			VariableStore mainVarStore) {
+		applyThreadedRowAction(input, output, mainVarStore, (i, length, epp, row, varStore) -> {
+			int argb, alpha; // Variable declarations
+			float[] arr = (float[]) varStore.get(1);
+			int[]   rgb = (int[])   varStore.get(0);
+			format.getARGB(input, i * epp, row, 0, length);
+			for(int k = 0, p = i * epp; k < length; ++k, p += epp) {
+				argb   = row[k];
+				rgb[0] = (argb >> 16) & 0xff;
+				rgb[1] = (argb >>  8) & 0xff;
+				rgb[2] = (argb)       & 0xff;
+				convForward.convert(rgb, arr);
+				arr[3] = ((argb >> 24) & 0xff) * I2F;
+				action.action(arr, input, output, p, varStore);
+				convInverse.convert(arr, rgb);
+				alpha  = FastMath.round(arr[3] * F2I);
+				row[k] = argb(rgb[0], rgb[1], rgb[2], alpha);
+			}
+			format.setARGB(output, i * epp, row, 0, length);
+		});
+	}
+	
+	@Override
+	public final void applyActionINT(ActionINT<T> action) {
+		applyActionINT(pixels, buffer, action);
+		swapBuffer();
+	}
+	
+	@Override
+	public final void applyActionRGB(ActionRGB<T> action) {
+		applyActionRGB(pixels, buffer, action);
+		swapBuffer();
+	}
+	
+	@Override
+	public final void applyActionHSL(ActionFloat<T> action) {
+		applyActionFloat(pixels, buffer, action,
+ 			(rgb, hsl) -> Colors.rgb2hsl(rgb[0], rgb[1], rgb[2], hsl),
+ 			(hsl, rgb) -> Colors.hsl2rgb(hsl[0], hsl[1], hsl[2], rgb));
+ 		swapBuffer();
+ 	}
+	
+	@Override
+	public final void applyLookupTable(LookupTable table) {
+		if((table == null))
+			throw new IllegalArgumentException("Lookup table cannot be null");
+		applyLookupTable(pixels, buffer, table);
+		swapBuffer();
+	}
+	
+	@Override
+	public final void applyLookupTable(LookupTable3D table) {
+		if((table == null))
+			throw new IllegalArgumentException("Lookup table cannot be null");
+		applyThreadedRowAction(pixels, buffer, VAR_STORE_EMPTY, (i, length, epp, row, varStore) -> {
+			format.getARGB(pixels, i * epp, row, 0, length);
+			table.apply(row, 0, length);
+			format.setARGB(buffer, i * epp, row, 0, length);
+		});
+		swapBuffer();
+	}
+	
+	@Override
+	public final ImagePipeline<T> pipeline() {
+		return new ImagePipeline<>(this);
+	}
+	
+	@Override
+	public final void applyActionHCL(ActionFloat<T> action) {
+		applyActionFloat(pixels, buffer, action,
+			(rgb, hcl) -> Colors.rgb2hcl(rgb[0], rgb[1], rgb[2], hcl),
+			(hcl, rgb) -> Colors.hcl2rgb(hcl[0], hcl[1], hcl[2], rgb));
+		swapBuffer();
+	}
+	
+	private final void swapBuffer(BufferImage<T> caller) {
+		T parray = pixels;
+		pixels = buffer;
+		buffer = parray;
+		// Swap the buffers also in the buffer strategy
+		if((caller == this))
+			bufferStrategy.swap(ptrBuffer, ptrPixels);
+		ptrBuffer = 1 - ptrBuffer;
+		ptrPixels = 1 - ptrPixels;
+		// Must propagate the changes to the parent as well
+		if((parent != null && parent != caller))
+			parent.swapBuffer(this);
+		// Must propagate the changes to the children as well
+		if(!children.isEmpty()) {
+			for(BufferImage<T> iimg : children)
+				if((iimg != caller))
+					iimg.swapBuffer(this);
+		}
+	}
+	
+	@Override
+	public final void swapBuffer() {
+		BufferImage<T> root = root();
+		root.collectTouched();
+		// The buffer contains the new pixels only in the area of this image, elsewhere
+		// it must be made the same as the current pixels before it becomes the pixels.
+		int epp = format.getElementsPerPixel();
+		int str = stride * epp;
+		T src = pixels, dst = buffer;
+		root.stale.forEachDifference(offX, offY, subWidth, subHeight, (x, y, w, h) -> {
+			Pixels.copy(src, x, y, str, dst, x, y, str, w, h, epp);
+		});
+		// After the swap, the buffers differ only in the area of this image
+		root.stale.clear();
+		root.stale.add(offX, offY, subWidth, subHeight);
+		root.dirty[0].add(offX, offY, subWidth, subHeight);
+		swapBuffer(this);
+	}
+	
+	// Makes the buffer the same as the pixels in the area of this image
+	private final void syncBuffer() {
+		int epp = format.getElementsPerPixel();
+		int str = stride * epp;
+		T src = pixels, dst = buffer;
+		root().collectTouched();
+		root().stale.forEachIntersection(offX, offY, subWidth, subHeight, (x, y, w, h) -> {
+			Pixels.copy(src, x, y, str, dst, x, y, str, w, h, epp);
+		});
+	}
+	
+	private final BufferImage<T> root() {
+		return root;
+	}
+	
+	// Adds the rows changed by setPixel to the dirty and stale regions. Must be called
+	// on the root image before any of the regions is used.
+	private final void collectTouched() {
+		if(!touched) return;
+		touched = false;
+		for(int y = 0; y < height;) {
+			if((touchedRows[y] == 0)) {
+				++y; continue;
+			}
+			int sy = y;
+			while((y < height && touchedRows[y] != 0))
+				touchedRows[y++] = 0;
+			dirty[0].add(0, sy, width, y - sy);
+			stale.add(0, sy, width, y - sy);
+		}
+	}
+	
+	/**
+	 * Writes all changes to the original pixels, i.e. the pixels {@code this} image
+	 * was created from. Only the changed regions that lie in {@code this} image are
+	 * written.*/
+	public void flush() {
+		flushRegion();
+	}
+	
+	// Writes all changes to the original pixels and returns the region of the original
+	// pixels that was changed. The buffer at index i holds the state of the pixels from
+	// i - 1 flushes of the root image ago, the original being at index numOfBuffers.
+	// Therefore two consecutive buffers differ only in the region changed in the respective
+	// period and the original changes only in the region of the oldest period.
+	final DirtyRegion flushRegion() {
+		try {
+			int epp = format.getElementsPerPixel();
+			int str = stride * epp;
+			int numOfBuffers = bufferStrategy.numberOfBuffers();
+			BufferImage<T> root = root();
+			root.collectTouched();
+			DirtyRegion[] dirty = root.dirty;
+			DirtyRegion flushed = new DirtyRegion();
+			// Special case for 1 buffer
+			if((numOfBuffers == 1)) {
+				// The pixels are the original, unless the buffers are swapped incorrectly
+				flushed.add(dirty[0]);
+				if((buffer == original)) {
+					// The original has to be made the same as the pixels in the whole image,
+					// since it becomes the pixels again
+					T src = pixels;
+					root.stale.forEach((x, y, w, h) -> {
+						Pixels.copy(src, x, y, str, original, x, y, str, w, h, epp);
+						flushed.add(x, y, w, h);
+					});
+					root.stale.clear();
+					swapBuffer(this);
+				}
+			} else {
+				DirtyRegion oldest = dirty[dirty.length - 1];
+				oldest.forEachIntersection(offX, offY, subWidth, subHeight, flushed::add);
+				if((parent == null && bufferStrategy.canRotate()
+						&& publish(bufferStrategy.getBuffer(numOfBuffers - 1)))) {
+					// Move the buffers up the line just by references, the original comes back
+					// as the pixels, so only the regions it has missed have to be copied to it.
+					T current = pixels;
+					bufferStrategy.rotate();
+					T next = bufferStrategy.getBuffer(1);
+					for(DirtyRegion region : dirty) {
+						region.forEach((x, y, w, h) -> {
+							Pixels.copy(current, x, y, str, next, x, y, str, w, h, epp);
+						});
+					}
+					setFlushedBuffers(bufferStrategy.getBuffer(numOfBuffers), next);
+				} else {
+					// Shift the changed parts of the buffers up the line
+					for(int i = numOfBuffers; i > 1; --i) {
+						T src = bufferStrategy.getBuffer(i - 1);
+						T dst = bufferStrategy.getBuffer(i);
+						dirty[i - 2].forEachIntersection(offX, offY, subWidth, subHeight, (x, y, w, h) -> {
+							Pixels.copy(src, x, y, str, dst, x, y, str, w, h, epp);
+						});
+					}
+				}
+			}
+			if((parent == null)) {
+				// Start a new period
+				DirtyRegion last = dirty[dirty.length - 1];
+				System.arraycopy(dirty, 0, dirty, 1, dirty.length - 1);
+				last.clear();
+				dirty[0] = last;
+			}
+			return flushed;
+		} catch(Exception ex) {
+			throw new IllegalStateException("Unable to apply changes to an image: " + this, ex);
+		}
+	}
+	
+	private final void setFlushedBuffers(T original, T pixels) {
+		this.original = original;
+		this.pixels   = pixels;
+		for(BufferImage<T> iimg : children)
+			iimg.setFlushedBuffers(original, pixels);
+	}
+	
+	/**
+	 * Makes the given buffer the original pixels, i.e. the pixels that are presented
+	 * to the outside, instead of copying the pixels to the current original pixels.
+	 * The previous original pixels are then reused as the working pixels. This method
+	 * is called when flushing an image that is not a sub-image.
+	 * @param pixels The buffer that should become the original pixels
+	 * @return {@code true}, if the buffer was taken as the original pixels,
+	 * {@code false} if the pixels must be copied instead*/
+	protected boolean publish(T pixels) {
+		// The original pixels are given from the outside, they cannot be replaced
+		return false;
+	}
+	
+	/**
+	 * Marks the given region, in the source image coordinates, as changed, so that
+	 * it is written to the original pixels on the next call of the {@linkplain #flush()}
+	 * method. All the methods of {@code this} image do this automatically, it has to be
+	 * called only when the pixels are changed in some other way.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region*/
+	public final void markDirty(int x, int y, int width, int height) {
+		BufferImage<T> root = root();
+		root.dirty[0].add(x, y, width, height);
+		// The buffer no longer has the same pixels in the region
+		root.stale.add(x, y, width, height);
+	}
+	
+	/**
+	 * Applies the given mask to {@code this} image.
+	 * @param mask The mask*/
+	public final void applyMask(int mask) {
+		applyActionINT((input, output, i, varStore) -> {
+			format.setARGB(output, i, format.getARGB(input, i) & mask);
+		});
+	}
+	
+	/**
+	 * Keeps only the given color channels in {@code this} image.
+	 * @param channels The color channels*/
+	public final void keepChannels(ColorChannel... channels) {
+		applyMask(this.channels.combineMasks(InternalColorChannel.fromMany(format, channels)));
+	}
+	
+	/**
+	 * Removes the given color channels from {@code this} image.
+	 * @param channels The color channels*/
+	public final void removeChannels(ColorChannel... channels) {
+		applyMask(~this.channels.combineMasks(InternalColorChannel.fromMany(format, channels)));
+	}
+	
+	/**
+	 * Converts all the pixels of {@code this} image to premultiplied version.*/
+	public final void toPremultipliedAlpha() {
+		applyActionINT((input, output, index, varStore) -> {
+			format.setARGB(output, index, Colors.linear2premult(format.getARGB(input, index)));
+		});
+	}
+	
+	/**
+	 * Converts all the pixels of {@code this} image to linear version.*/
+	public final void toLinearAlpha() {
+		applyActionINT((input, output, index, varStore) -> {
+			format.setARGB(output, index, Colors.premult2linear(format.getARGB(input, index)));
+		});
+	}
+	
+	/**
+	 * Disposes of all resources held by {@code this} image. Note that after
+	 * calling this method the image is unusable and must be recreated.
+	 * No checking in any method is present, therefore an external checking
+	 * must be done in order to prevent exceptions. Disposing an image that is not
+	 * a sub-image also releases its buffers, so that all its sub-images become
+	 * unusable as well.*/
+	public void dispose() {
+		// Return the saved states to the pool
+		operations.clear();
+		// Reset all the properties
+		width    = 0;
+		height   = 0;
+		stride   = 0;
+		format   = null;
+		original = null;
+		pixels   = null;
+		buffer   = null;
+		channels = null;
+		// Buffering, the buffers are shared with sub-images, so only the root image
+		// may release them
+		if((parent == null && bufferStrategy != null))
+			bufferStrategy.dispose();
+		bufferStrategy = null;
+		ptrBuffer = -1;
+		ptrPixels = -1;
+		dirty = null;
+		stale = null;
+		touchedRows = null;
+		// Remove from parent
+		if((parent != null))
+			parent.children.remove(this);
+	}
+	
+	/**
+	 * Sets a pixel at the given position to the given color.
+	 * Only the row of the pixel is recorded as changed, so pixels of distinct
+	 * positions can be set from multiple threads at once. To change many pixels,
+	 * the bulk methods or a {@linkplain #cursor() cursor} are faster.
+	 * @param x The x-coordinate of the position
+	 * @param y The y-coordinate of the position
+	 * @param argb The color, as an ARGB int*/
+	@Override
+	public final void setPixel(int x, int y, int argb) {
+		format.setARGB(pixels, ((y + offY) * stride + (x + offX)) * format.getElementsPerPixel(), argb);
+		root.touchedRows[y + offY] = 1;
+		root.touched = true;
+	}
+	
+	/**
+	 * Sets a pixel at the given index to the given color.
+	 * Note that this method does <em>NOT</em> check for index bounds.
+	 * Only the row of the pixel is recorded as changed, the same as
+	 * in {@link #setPixel(int, int, int)}.
+	 * @param index The index
+	 * @param argb The color, as an ARGB int*/
+	@Override
+	public final void setPixel(int index, int argb) {
+		format.setARGB(pixels, index * format.getElementsPerPixel(), argb);
+		root.touchedRows[index / stride] = 1;
+		root.touched = true;
+	}
+	
+	/**
+	 * Sets pixels of {@code this} image to the given pixels.
+	 * @param pixels The pixels*/
+	@Override
+	public final void setPixels(T pixels) {
+		int epp = format.getElementsPerPixel();
+		if((pixels.capacity() != subWidth * subHeight * epp))
+			throw new IllegalArgumentException("Invalid array size");
+		Pixels.copy(pixels, 0, 0, subWidth * epp, this.pixels, offX, offY, stride * epp, subWidth, subHeight, epp);
+		markDirty(offX, offY, subWidth, subHeight);
+	}
+	
+	private final void checkRegion(int x, int y, int width, int height) {
+		if((x < 0 || y < 0 || width < 0 || height < 0
+				|| width > subWidth - x || height > subHeight - y))
+			throw new IllegalArgumentException("Region out of bounds");
+	}
+	
+	private static final void checkArray(int[] argb, int offset, int width, int height, int scanlineStride) {
+		if((argb == null))
+			throw new IllegalArgumentException("Array cannot be null");
+		if((width > 0 && height > 0
+				&& (offset < 0 || scanlineStride < width
+						|| offset + (long) (height - 1) * scanlineStride + width > argb.length)))
+			throw new IllegalArgumentException("Invalid array region");
+	}
+	
+	/**
+	 * Gets colors of the pixels in the given region. The pixel format is used only
+	 * once per row, therefore this is much faster than calling the
+	 * {@linkplain #getPixel(int, int) getPixel} method for each pixel.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @param argb The array where to store the colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel of the region
+	 * @param scanlineStride The distance between two rows in the array*/
+	@Override
+	public final void getPixels(int x, int y, int width, int height, int[] argb, int offset, int scanlineStride) {
+		checkRegion(x, y, width, height);
+		checkArray(argb, offset, width, height, scanlineStride);
+		int epp = format.getElementsPerPixel();
+		for(int i = (y + offY) * stride + (x + offX), o = offset, r = height; r-- != 0; i += stride, o += scanlineStride) {
+			format.getARGB(pixels, i * epp, argb, o, width);
+		}
+	}
+	
+	/**
+	 * Sets colors of the pixels in the given region. The pixel format is used only
+	 * once per row, therefore this is much faster than calling the
+	 * {@linkplain #setPixel(int, int, int) setPixel} method for each pixel.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @param argb The colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel of the region
+	 * @param scanlineStride The distance between two rows in the array*/
+	@Override
+	public final void setPixels(int x, int y, int width, int height, int[] argb, int offset, int scanlineStride) {
+		checkRegion(x, y, width, height);
+		checkArray(argb, offset, width, height, scanlineStride);
+		int epp = format.getElementsPerPixel();
+		for(int i = (y + offY) * stride + (x + offX), o = offset, r = height; r-- != 0; i += stride, o += scanlineStride) {
+			format.setARGB(pixels, i * epp, argb, o, width);
+		}
+		markDirty(x + offX, y + offY, width, height);
+	}
+	
+	/**
+	 * Sets all the pixels in the given region to the given color.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @param argb The color, as an ARGB int*/
+	@Override
+	public final void fillPixels(int x, int y, int width, int height, int argb) {
+		checkRegion(x, y, width, height);
+		if((width == 0 || height == 0)) return; // Nothing to fill
+		PlanePool pool = PlanePool.getDefault();
+		int[] row = pool.acquireInts(width);
+		try {
+			Arrays.fill(row, 0, width, argb);
+			int epp = format.getElementsPerPixel();
+			for(int i = (y + offY) * stride + (x + offX), r = height; r-- != 0; i += stride) {
+				format.setARGB(pixels, i * epp, row, 0, width);
+			}
+		} finally {
+			pool.release(row);
+		}
+		markDirty(x + offX, y + offY, width, height);
+	}
+	
+	/**
+	 * Sets the given number of pixels of a row, starting at the given position,
+	 * to the given color.
+	 * @param x The x-coordinate of the first pixel
+	 * @param y The y-coordinate of the row
+	 * @param length The number of pixels
+	 * @param argb The color, as an ARGB int*/
+	@Override
+	public final void fillSpan(int x, int y, int length, int argb) {
+		fillPixels(x, y, length, 1, argb);
+	}
+	
+	/**
+	 * Gets colors of the given number of pixels of a row, starting at the given position.
+	 * @param x The x-coordinate of the first pixel
+	 * @param y The y-coordinate of the row
+	 * @param length The number of pixels
+	 * @param argb The array where to store the colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel*/
+	@Override
+	public final void getScanline(int x, int y, int length, int[] argb, int offset) {
+		getPixels(x, y, length, 1, argb, offset, length);
+	}
+	
+	/**
+	 * Sets colors of the given number of pixels of a row, starting at the given position.
+	 * @param x The x-coordinate of the first pixel
+	 * @param y The y-coordinate of the row
+	 * @param length The number of pixels
+	 * @param argb The colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel*/
+	@Override
+	public final void setScanline(int x, int y, int length, int[] argb, int offset) {
+		setPixels(x, y, length, 1, argb, offset, length);
+	}
+	
+	/**
+	 * Creates a new cursor for sequential access to all the pixels of {@code this} image.
+	 * @return The cursor
+	 * @see PixelCursor*/
+	@Override
+	public final PixelCursor<T> cursor() {
+		return cursor(0, 0, subWidth, subHeight);
+	}
+	
+	/**
+	 * Creates a new cursor for sequential access to the pixels in the given region
+	 * of {@code this} image.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @return The cursor
+	 * @see PixelCursor*/
+	@Override
+	public final PixelCursor<T> cursor(int x, int y, int width, int height) {
+		checkRegion(x, y, width, height);
+		if((width == 0 || height == 0))
+			throw new IllegalArgumentException("Region cannot be empty");
+		return new PixelCursor<>(this, format, pixels, stride, x + offX, y + offY, width, height);
+	}
+	
+	/**
+	 * Gets a pixel color at the given position.
+	 * @param x The x-coordinate of the position
+	 * @param y The y-coordinate of the position
+	 * @return The pixel color, as an ARGB int*/
+	@Override
+	public final int getPixel(int x, int y) {
+		return getPixel((y + offY) * stride + (x + offX));
+	}
+	
+	/**
+	 * Gets a pixel color at the given index.
+	 * Note that this method does <em>NOT</em> check for index bounds.
+	 * @param index The index
+	 * @return The pixel color, as an ARGB int*/
+	@Override
+	public final int getPixel(int index) {
+		return format.getARGB(pixels, index * format.getElementsPerPixel());
+	}
+	
+	/**
+	 * Gets pixels of {@code this} image. Since the pixels can be changed directly,
+	 * the whole area of {@code this} image is marked as changed.
+	 * @return Buffer containing the pixels*/
+	@Override
+	public final T getPixels() {
+		markDirty(offX, offY, subWidth, subHeight);
+		return pixels;
+	}
+	
+	@Override
+	public final T getBuffer() {
+		return buffer;
+	}
+	
+	@Override
+	public final int getX() {
+		return offX;
+	}
+	
+	@Override
+	public final int getY() {
+		return offY;
+	}
+	
+	/**
+	 * Gets the width of {@code this} image.
+	 * @return The width*/
+	@Override
+	public final int getWidth() {
+		return subWidth;
+	}
+	
+	/**
+	 * Gets the height of {@code this} image.
+	 * @return The height*/
+	@Override
+	public final int getHeight() {
+		return subHeight;
+	}
+	
+	@Override
+	public final int getStride() {
+		return stride;
+	}
+	
+	@Override
+	public final int getSourceWidth() {
+		return width;
+	}
+	
+	@Override
+	public final int getSourceHeight() {
+		return height;
+	}
+	
+	/**
+	 * Sets the scheduler that is used for executing parallel work
+	 * on {@code this} image.
+	 * @param scheduler The scheduler*/
+	public final void setScheduler(TileScheduler scheduler) {
+		if((scheduler == null))
+			throw new IllegalArgumentException("Scheduler cannot be null");
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Gets the scheduler that is used for executing parallel work
+	 * on {@code this} image.
+	 * @return The scheduler*/
+	@Override
+	public final TileScheduler getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * Sets the pool from which the buffers saved to the operations stack
+	 * of {@code this} image are acquired.
+	 * @param bufferPool The buffer pool*/
+	public final void setBufferPool(BufferPool bufferPool) {
+		if((bufferPool == null))
+			throw new IllegalArgumentException("Buffer pool cannot be null");
+		this.bufferPool = bufferPool;
+	}
+	
+	/**
+	 * Gets the pool from which the buffers saved to the operations stack
+	 * of {@code this} image are acquired.
+	 * @return The buffer pool*/
+	@Override
+	public final BufferPool getBufferPool() {
+		return bufferPool;
+	}
+	
+	/**
+	 * Gets the pixel format of {@code this} image.
+	 * @return The pixel format*/
+	@Override
+	public final ImagePixelFormat<T> getPixelFormat() {
+		return format;
+	}
+	
+	@Override
+	public final InternalChannels<T> getChannels() {
+		return channels;
+	}
+}
\ No newline at end of file
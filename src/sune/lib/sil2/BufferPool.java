@@ -0,0 +1,169 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of reusable buffers, so that copies of image buffers, e.g. the saved states
+ * on the operations stack of an image, do not have to be allocated every time.
+ * The buffers are grouped by their type and capacity, an acquired buffer is always
+ * of the same type and capacity as requested. The pool retains released buffers only
+ * up to a memory budget, the rest is left to the garbage collector.
+ * <br><br>
+ * All methods are thread-safe.
+ * @since 2.1
+ * @author Sune*/
+public final class BufferPool {
+	
+	/**
+	 * The default maximum number of bytes of buffers retained by a pool.*/
+	public static final long MAX_RETAINED_BYTES = 64L << 20;
+	
+	private static final BufferPool DEFAULT_POOL = new BufferPool();
+	
+	private final ConcurrentHashMap<Long, ConcurrentLinkedDeque<Buffer>> buckets = new ConcurrentHashMap<>();
+	private final long maxRetainedBytes;
+	private final AtomicLong retainedBytes = new AtomicLong();
+	private final LongAdder allocatedBytes = new LongAdder();
+	
+	/**
+	 * Creates a new empty pool.*/
+	public BufferPool() {
+		this(MAX_RETAINED_BYTES);
+	}
+	
+	/**
+	 * Creates a new empty pool.
+	 * @param maxRetainedBytes The maximum number of bytes of retained buffers*/
+	public BufferPool(long maxRetainedBytes) {
+		if((maxRetainedBytes < 0L))
+			throw new IllegalArgumentException("Maximum number of retained bytes must be >= 0");
+		this.maxRetainedBytes = maxRetainedBytes;
+	}
+	
+	/**
+	 * Gets the default pool shared by the library.
+	 * @return The default pool*/
+	public static final BufferPool getDefault() {
+		return DEFAULT_POOL;
+	}
+	
+	private static final long kind(Buffer buf) {
+		if((buf instanceof ByteBuffer))   return 0L;
+		if((buf instanceof CharBuffer))   return 1L;
+		if((buf instanceof ShortBuffer))  return 2L;
+		if((buf instanceof IntBuffer))    return 3L;
+		if((buf instanceof LongBuffer))   return 4L;
+		if((buf instanceof FloatBuffer))  return 5L;
+		if((buf instanceof DoubleBuffer)) return 6L;
+		throw new UnsupportedOperationException("Unsupported buffer: " + buf);
+	}
+	
+	private static final Long key(Buffer buf, int capacity) {
+		return (kind(buf) << 32) | capacity;
+	}
+	
+	private static final long size(Buffer buf) {
+		return (long) buf.capacity() * BufferUtils.elementSize(buf);
+	}
+	
+	/**
+	 * Acquires a buffer of the same type and capacity as the given buffer {@code buf}.
+	 * The contents of the buffer are undefined. The buffer should be released when
+	 * it is no longer needed.
+	 * @param <T> The type of the buffer
+	 * @param buf The buffer whose type and capacity to use
+	 * @return The buffer*/
+	public final <T extends Buffer> T acquire(T buf) {
+		return acquire(buf, buf.capacity());
+	}
+	
+	/**
+	 * Acquires a buffer of the same type as the given buffer {@code buf} and
+	 * of the given capacity. The contents of the buffer are undefined. The buffer
+	 * should be released when it is no longer needed.
+	 * @param <T> The type of the buffer
+	 * @param buf The buffer whose type to use
+	 * @param capacity The capacity of the buffer
+	 * @return The buffer*/
+	@SuppressWarnings("unchecked")
+	public final <T extends Buffer> T acquire(T buf, int capacity) {
+		if((capacity < 0))
+			throw new IllegalArgumentException("Capacity must be >= 0");
+		ConcurrentLinkedDeque<Buffer> bucket = buckets.get(key(buf, capacity));
+		// The most recently released buffer is most likely in the cache
+		Buffer pooled = bucket != null ? bucket.pollFirst() : null;
+		if((pooled != null)) {
+			retainedBytes.addAndGet(-size(pooled));
+			pooled.clear();
+			// Make it the same as a newly allocated buffer
+			if((pooled instanceof ByteBuffer))
+				((ByteBuffer) pooled).order(ByteOrder.BIG_ENDIAN);
+			return (T) pooled;
+		}
+		T created = BufferUtils.newBufferOfType(buf, capacity);
+		allocatedBytes.add(size(created));
+		return created;
+	}
+	
+	/**
+	 * Releases the given buffer, so that it can be acquired again. If retaining
+	 * the buffer would exceed the memory budget of {@code this} pool, the buffer
+	 * is left to the garbage collector.
+	 * @param buf The buffer, previously acquired from {@code this} pool*/
+	public final void release(Buffer buf) {
+		if((buf == null))
+			throw new IllegalArgumentException("Buffer cannot be null");
+		if((buf.isReadOnly()))
+			throw new IllegalArgumentException("Buffer cannot be read-only");
+		long size = size(buf);
+		if((retainedBytes.addAndGet(size) > maxRetainedBytes)) {
+			retainedBytes.addAndGet(-size);
+			return; // Over the budget, leave it to the GC
+		}
+		buckets.computeIfAbsent(key(buf, buf.capacity()), (k) -> new ConcurrentLinkedDeque<>())
+			.offerFirst(buf);
+	}
+	
+	/**
+	 * Releases all retained buffers.*/
+	public final void clear() {
+		for(ConcurrentLinkedDeque<Buffer> bucket : buckets.values()) {
+			for(Buffer buf; (buf = bucket.pollFirst()) != null;)
+				retainedBytes.addAndGet(-size(buf));
+		}
+	}
+	
+	/**
+	 * Gets the total number of bytes allocated by {@code this} pool, i.e. the sizes
+	 * of buffers that had to be created since no retained buffer could be reused.
+	 * @return The number of allocated bytes*/
+	public final long getAllocatedBytes() {
+		return allocatedBytes.sum();
+	}
+	
+	/**
+	 * Gets the number of bytes of the buffers currently retained by {@code this} pool.
+	 * @return The number of retained bytes*/
+	public final long getRetainedBytes() {
+		return retainedBytes.get();
+	}
+	
+	/**
+	 * Gets the maximum number of bytes of buffers retained by {@code this} pool.
+	 * @return The maximum number of bytes*/
+	public final long getMaxRetainedBytes() {
+		return maxRetainedBytes;
+	}
+}
@@ -9,4 +9,26 @@ public interface BufferStrategy<T extends Buffer> {
 	int numberOfBuffers();
 	void swap(int i1, int i2);
 	int getBuffersCount();
+	
+	/**
+	 * Checks whether the buffers of {@code this} strategy can be rotated, i.e. whether
+	 * the original can be exchanged for another buffer. By default, they cannot.
+	 * @return {@code true}, if the buffers can be rotated, otherwise {@code false}*/
+	default boolean canRotate() {
+		return false;
+	}
+	
+	/**
+	 * Moves each buffer to the next index, the last buffer becomes the original
+	 * and the original becomes the buffer at index 1. By default, this is not supported.
+	 * @throws UnsupportedOperationException If the buffers cannot be rotated*/
+	default void rotate() {
+		throw new UnsupportedOperationException("Buffers cannot be rotated");
+	}
+	
+	/**
+	 * Releases the buffers of {@code this} strategy. By default, nothing is done,
+	 * the buffers are left to the garbage collector.*/
+	default void dispose() {
+	}
 }
\ No newline at end of file
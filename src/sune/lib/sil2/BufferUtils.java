@@ -2,6 +2,7 @@ package sune.lib.sil2;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
@@ -35,17 +36,19 @@ public final class BufferUtils {
 	private static final class ArrayLess {
 		
 		// Unfortunate Java's thing not providing Buffer interface with put(buf) method
-		private static final void put(ByteBuffer   src, ByteBuffer   dst) { src.put(dst); }
-		private static final void put(CharBuffer   src, CharBuffer   dst) { src.put(dst); }
-		private static final void put(ShortBuffer  src, ShortBuffer  dst) { src.put(dst); }
-		private static final void put(IntBuffer    src, IntBuffer    dst) { src.put(dst); }
-		private static final void put(LongBuffer   src, LongBuffer   dst) { src.put(dst); }
-		private static final void put(FloatBuffer  src, FloatBuffer  dst) { src.put(dst); }
-		private static final void put(DoubleBuffer src, DoubleBuffer dst) { src.put(dst); }
+		private static final void put(ByteBuffer   src, ByteBuffer   dst) { dst.put(src); }
+		private static final void put(CharBuffer   src, CharBuffer   dst) { dst.put(src); }
+		private static final void put(ShortBuffer  src, ShortBuffer  dst) { dst.put(src); }
+		private static final void put(IntBuffer    src, IntBuffer    dst) { dst.put(src); }
+		private static final void put(LongBuffer   src, LongBuffer   dst) { dst.put(src); }
+		private static final void put(FloatBuffer  src, FloatBuffer  dst) { dst.put(src); }
+		private static final void put(DoubleBuffer src, DoubleBuffer dst) { dst.put(src); }
 		
 		private static final void buffercopy(Buffer src, int srcOff, Buffer dst, int dstOff, int length) {
-			src.position(srcOff).limit(srcOff + length);
-			dst.position(dstOff).limit(dstOff + length);
+			// Copy using duplicates, so that the position and limit of the buffers are not changed.
+			// This allows the same buffer to be copied from multiple threads at once.
+			src = src.duplicate().limit(srcOff + length).position(srcOff);
+			dst = dst.duplicate().limit(dstOff + length).position(dstOff);
 			if((src instanceof ByteBuffer))   put((ByteBuffer)   src, (ByteBuffer)   dst); else
 			if((src instanceof CharBuffer))   put((CharBuffer)   src, (CharBuffer)   dst); else
 			if((src instanceof ShortBuffer))  put((ShortBuffer)  src, (ShortBuffer)  dst); else
@@ -54,8 +57,6 @@ public final class BufferUtils {
 			if((src instanceof FloatBuffer))  put((FloatBuffer)  src, (FloatBuffer)  dst); else
 			if((src instanceof DoubleBuffer)) put((DoubleBuffer) src, (DoubleBuffer) dst); else
 			throw new IllegalStateException("Unable to copy buffer " + src + " -> " + dst);
-			src.rewind();
-			dst.rewind();
 		}
 	}
 	
@@ -75,7 +76,7 @@ public final class BufferUtils {
 			ArrayLess.buffercopy(src, srcOff, dst, dstOff, length);
 			return;
 		}
-		System.arraycopy(src.array(), srcOff, dst.array(), dstOff, length);
+		System.arraycopy(src.array(), src.arrayOffset() + srcOff, dst.array(), dst.arrayOffset() + dstOff, length);
 	}
 	
 	/**
@@ -238,10 +239,45 @@ public final class BufferUtils {
 		return newDirectBufferOfType(buf, buf.capacity());
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * Creates a new direct buffer of the same type as the given buffer {@code buf}
+	 * with the given capacity, in elements of the buffer.
+	 * No data are copied, the new buffer is simply allocated.
+	 * @param buf Buffer
+	 * @param capacity Capacity of the new buffer
+	 * @return Newly allocated direct buffer of the same type as {@code buf}.
+	 */
 	public static final <T extends Buffer> T newDirectBufferOfType(T buf, int capacity) {
-		ByteBuffer alc = ByteBuffer.allocateDirect(capacity);
-		if((buf instanceof ByteBuffer))   return (T) alc; // Fast return
+		return viewOfType(buf, ByteBuffer.allocateDirect(capacity * elementSize(buf)));
+	}
+	
+	/**
+	 * Gets the size, in bytes, of a single element of the given buffer {@code buf}.
+	 * @param buf Buffer
+	 * @return The size of an element, in bytes*/
+	public static final int elementSize(Buffer buf) {
+		if((buf instanceof ByteBuffer))   return Byte     .BYTES;
+		if((buf instanceof CharBuffer))   return Character.BYTES;
+		if((buf instanceof ShortBuffer))  return Short    .BYTES;
+		if((buf instanceof IntBuffer))    return Integer  .BYTES;
+		if((buf instanceof LongBuffer))   return Long     .BYTES;
+		if((buf instanceof FloatBuffer))  return Float    .BYTES;
+		if((buf instanceof DoubleBuffer)) return Double   .BYTES;
+		throw new UnsupportedOperationException("Unsupported buffer: " + buf);
+	}
+	
+	/**
+	 * Creates a view of the given bytes as a buffer of the same type as the given
+	 * buffer {@code buf}. Views of other types than bytes use the native byte order,
+	 * byte buffers are returned as they are, so that their byte order is the same
+	 * as of heap byte buffers.
+	 * @param buf Buffer
+	 * @param bytes The bytes
+	 * @return The view of the bytes*/
+	@SuppressWarnings("unchecked")
+	public static final <T extends Buffer> T viewOfType(T buf, ByteBuffer bytes) {
+		if((buf instanceof ByteBuffer)) return (T) bytes; // Fast return
+		ByteBuffer alc = bytes.duplicate().order(ByteOrder.nativeOrder());
 		if((buf instanceof CharBuffer))   return (T) alc.asCharBuffer();
 		if((buf instanceof ShortBuffer))  return (T) alc.asShortBuffer();
 		if((buf instanceof IntBuffer))    return (T) alc.asIntBuffer();
@@ -250,4 +286,16 @@ public final class BufferUtils {
 		if((buf instanceof DoubleBuffer)) return (T) alc.asDoubleBuffer();
 		throw new UnsupportedOperationException("Unsupported buffer: " + buf);
 	}
+	
+	/**
+	 * Frees the native memory of the given direct byte buffer immediately, rather than
+	 * when the buffer is garbage collected. The buffer, and all views of it, must not
+	 * be used afterwards, otherwise the JVM may crash.
+	 * @param buf Direct byte buffer, allocated by {@linkplain ByteBuffer#allocateDirect(int)}
+	 */
+	public static final void free(ByteBuffer buf) {
+		if((buf == null))
+			throw new IllegalArgumentException("Buffer cannot be null");
+		UnsafeInstance.get().invokeCleaner(buf);
+	}
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ public final class Colors {
 	private static final int SHIFT_R = 16;
 	private static final int SHIFT_A = 24;
 	private static final int  MASK_A = 0xff << SHIFT_A;
+	private static final int MASK_RB = (0xff << SHIFT_R) | (0xff << SHIFT_B);
 	
 	// Forbid anyone to create an instance of this class
 	private Colors() {
@@ -460,13 +461,20 @@ public final class Colors {
 		if((fa == 0xff)) return foreg;
 		int ba = backg >>> SHIFT_A;
 		if((ba == 0x00)) return foreg;
+		int af = (0xff - fa);
+		if((ba == 0xff)) {
+			// Opaque background, the result is just a linear interpolation
+			// of the two colors. Red and blue are computed at once.
+			int rb = FastMath.div255x2((foreg & MASK_RB) * fa + (backg & MASK_RB) * af);
+			int g  = FastMath.div255(((foreg >> SHIFT_G) & 0xff) * fa + ((backg >> SHIFT_G) & 0xff) * af);
+			return MASK_A | rb | (g << SHIFT_G);
+		}
 		int fr = (foreg >> SHIFT_R) & 0xff;
 		int fg = (foreg >> SHIFT_G) & 0xff;
 		int fb = (foreg >> SHIFT_B) & 0xff;
 		int br = (backg >> SHIFT_R) & 0xff;
 		int bg = (backg >> SHIFT_G) & 0xff;
 		int bb = (backg >> SHIFT_B) & 0xff;
-		int af = (0xff - fa);
 		int aa = FastMath.div255((FastMath.mul255(ba) + fa * (0xff - ba)));
 		int nr = FastMath.div255((FastMath.mul255(fr) * fa + br * ba * af) / aa);
 		int ng = FastMath.div255((FastMath.mul255(fg) * fa + bg * ba * af) / aa);
@@ -551,14 +559,13 @@ public final class Colors {
 	 * @param argb The color
 	 * @return The premultiplied color as an ARGB int*/
 	public static final int linear2premult(int argb) {
-		int a = argb >>> SHIFT_A;
-		int r = FastMath.div255(((argb >> SHIFT_R) & 0xff) * a);
-		int g = FastMath.div255(((argb >> SHIFT_G) & 0xff) * a);
-		int b = FastMath.div255(((argb >> SHIFT_B) & 0xff) * a);
+		int a  = argb >>> SHIFT_A;
+		// Red and blue are multiplied at once, each in its own 16-bit half
+		int rb = FastMath.div255x2((argb & MASK_RB) * a);
+		int g  = FastMath.div255(((argb >> SHIFT_G) & 0xff) * a);
 		return (argb & MASK_A) |
-			   (r  << SHIFT_R) |
-			   (g  << SHIFT_G) |
-			   (b  << SHIFT_B);
+			   (rb)            |
+			   (g  << SHIFT_G);
 	}
 	
 	/**
@@ -584,9 +591,9 @@ public final class Colors {
 	public static final int premult2linear(int argb) {
 		int a = argb >>> SHIFT_A;
 		if((a == 0x0)) return 0x0;
-		int r = FastMath.mul255((argb >> SHIFT_R) & 0xff) / a;
-		int g = FastMath.mul255((argb >> SHIFT_G) & 0xff) / a;
-		int b = FastMath.mul255((argb >> SHIFT_B) & 0xff) / a;
+		int r = FastMath.divAlpha((argb >> SHIFT_R) & 0xff, a);
+		int g = FastMath.divAlpha((argb >> SHIFT_G) & 0xff, a);
+		int b = FastMath.divAlpha((argb >> SHIFT_B) & 0xff, a);
 		return (argb & MASK_A) |
 			   (r  << SHIFT_R) |
 			   (g  << SHIFT_G) |
@@ -0,0 +1,90 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Buffer strategy that stores the buffers in direct (off-heap) memory, so that
+ * large images do not occupy the heap and do not prolong garbage collections.
+ * The memory is freed immediately when the strategy is disposed, which is done
+ * when the image using it is disposed. Buffers obtained from this strategy must
+ * not be used afterwards.
+ * @param <T> The type of the buffers
+ * @since 2.1
+ * @author Sune*/
+public final class DirectBufferStrategy<T extends Buffer> implements BufferStrategy<T> {
+	
+	private final T            original;
+	private final Buffer[]     buffers;
+	private final ByteBuffer[] memory;
+	
+	public DirectBufferStrategy(T original, int numOfBuffers) {
+		this.original = original;
+		this.buffers  = new Buffer[numOfBuffers];
+		this.memory   = new ByteBuffer[numOfBuffers];
+	}
+	
+	@Override
+	public T prepareBuffer(int index) {
+		if((index < 0 || index >= buffers.length))
+			return original;
+		if((memory[index] != null))
+			BufferUtils.free(memory[index]);
+		ByteBuffer bytes = ByteBuffer.allocateDirect(original.capacity() * BufferUtils.elementSize(original));
+		T _buffer = BufferUtils.viewOfType(original, bytes);
+		memory [index] = bytes;
+		buffers[index] = _buffer;
+		BufferUtils.buffercopy(original, _buffer);
+		return _buffer;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public T getBuffer(int index) {
+		return index >= 0 && index < buffers.length ? (T) buffers[index] : original;
+	}
+	
+	@Override
+	public int numberOfBuffers() {
+		return buffers.length;
+	}
+	
+	@Override
+	public void swap(int i1, int i2) {
+		if((i1 < 0 || i1 >= buffers.length ||
+			i2 < 0 || i2 >= buffers.length))
+			return;
+		// Only the buffers are swapped, the memory is freed all at once
+		Buffer _buf = buffers[i1];
+		buffers[i1] = buffers[i2];
+		buffers[i2] = _buf;
+	}
+	
+	@Override
+	public int getBuffersCount() {
+		return buffers.length;
+	}
+	
+	@Override
+	public boolean canRotate() {
+		// The memory is freed on dispose, so it must never become the original
+		return false;
+	}
+	
+	@Override
+	public void rotate() {
+		throw new UnsupportedOperationException("Direct buffers cannot be rotated");
+	}
+	
+	@Override
+	public void dispose() {
+		Arrays.fill(buffers, null);
+		for(int i = 0, l = memory.length; i < l; ++i) {
+			if((memory[i] != null)) {
+				BufferUtils.free(memory[i]);
+				memory[i] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+
+public final class DirectBufferStrategyFactory<T extends Buffer> implements BufferStrategyFactory<T> {
+	
+	private final int numOfBuffers;
+	
+	public DirectBufferStrategyFactory(int numOfBuffers) {
+		if((numOfBuffers <= 0))
+			throw new IllegalArgumentException("Number of buffers must be > 0");
+		this.numOfBuffers = numOfBuffers;
+	}
+	
+	@Override
+	public BufferStrategy<T> create(T original) {
+		return new DirectBufferStrategy<>(original, numOfBuffers);
+	}
+}
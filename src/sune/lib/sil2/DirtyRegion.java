@@ -0,0 +1,167 @@
+package sune.lib.sil2;
+
+import java.util.Arrays;
+
+/**
+ * Region of the pixels of an image that were changed, given by a list of rectangles.
+ * The coordinates are in the source image, i.e. not relative to a sub-image.
+ * Overlapping or touching rectangles are merged. When there are too many of them,
+ * a new rectangle is merged with the one that grows the least, so the region always
+ * contains all the changed pixels, but possibly also some unchanged ones.
+ * @since 2.1
+ * @author Sune*/
+final class DirtyRegion {
+	
+	/**
+	 * The maximum number of rectangles kept separately.*/
+	public static final int MAX_RECTANGLES = 16;
+	
+	// The rectangles, stored as (x0, y0, x1, y1), where the x1 and y1 are exclusive
+	private final int[] rects = new int[MAX_RECTANGLES * 4];
+	private int count;
+	
+	public DirtyRegion() {
+	}
+	
+	public DirtyRegion(DirtyRegion region) {
+		add(region);
+	}
+	
+	private static final long area(int x0, int y0, int x1, int y1) {
+		return (long) (x1 - x0) * (y1 - y0);
+	}
+	
+	private final void remove(int index) {
+		int last = --count * 4;
+		System.arraycopy(rects, last, rects, index * 4, 4);
+	}
+	
+	private final void add0(int x0, int y0, int x1, int y1) {
+		// Fast path for repeated changes of the same pixels, e.g. by setPixel
+		for(int i = 0, k = 0; i < count; ++i, k += 4) {
+			if((rects[k] <= x0 && x1 <= rects[k + 2] && rects[k + 1] <= y0 && y1 <= rects[k + 3]))
+				return;
+		}
+		// Merge all the rectangles that overlap or touch the new one
+		for(int i = 0; i < count;) {
+			int k = i * 4;
+			if((rects[k] <= x1 && x0 <= rects[k + 2] && rects[k + 1] <= y1 && y0 <= rects[k + 3])) {
+				x0 = Math.min(x0, rects[k]);
+				y0 = Math.min(y0, rects[k + 1]);
+				x1 = Math.max(x1, rects[k + 2]);
+				y1 = Math.max(y1, rects[k + 3]);
+				remove(i);
+				i = 0; // The grown rectangle can touch the already checked ones
+			} else ++i;
+		}
+		if((count == MAX_RECTANGLES)) {
+			// Merge with the rectangle that grows the least
+			int best = 0;
+			long min = Long.MAX_VALUE;
+			for(int i = 0, k = 0; i < count; ++i, k += 4) {
+				long grow = area(Math.min(x0, rects[k]),     Math.min(y0, rects[k + 1]),
+				                 Math.max(x1, rects[k + 2]), Math.max(y1, rects[k + 3]))
+				          - area(rects[k], rects[k + 1], rects[k + 2], rects[k + 3]);
+				if((grow < min)) { min = grow; best = i; }
+			}
+			int k = best * 4;
+			x0 = Math.min(x0, rects[k]);
+			y0 = Math.min(y0, rects[k + 1]);
+			x1 = Math.max(x1, rects[k + 2]);
+			y1 = Math.max(y1, rects[k + 3]);
+			remove(best);
+			add0(x0, y0, x1, y1);
+			return;
+		}
+		int k = count++ * 4;
+		rects[k]     = x0;
+		rects[k + 1] = y0;
+		rects[k + 2] = x1;
+		rects[k + 3] = y1;
+	}
+	
+	public final void add(int x, int y, int width, int height) {
+		if((width <= 0 || height <= 0)) return; // Nothing changed
+		add0(x, y, x + width, y + height);
+	}
+	
+	public final void add(DirtyRegion region) {
+		for(int i = 0, k = 0; i < region.count; ++i, k += 4)
+			add0(region.rects[k], region.rects[k + 1], region.rects[k + 2], region.rects[k + 3]);
+	}
+	
+	/**
+	 * Calls the given action for each rectangle of {@code this} region.*/
+	public final void forEach(RectangleAction action) {
+		for(int i = 0, k = 0; i < count; ++i, k += 4)
+			action.apply(rects[k], rects[k + 1], rects[k + 2] - rects[k], rects[k + 3] - rects[k + 1]);
+	}
+	
+	/**
+	 * Calls the given action for the parts of the rectangles of {@code this} region
+	 * that lie inside the given rectangle.*/
+	public final void forEachIntersection(int x, int y, int width, int height, RectangleAction action) {
+		for(int i = 0, k = 0, ex = x + width, ey = y + height; i < count; ++i, k += 4) {
+			int x0 = Math.max(x,  rects[k]),     y0 = Math.max(y,  rects[k + 1]);
+			int x1 = Math.min(ex, rects[k + 2]), y1 = Math.min(ey, rects[k + 3]);
+			if((x0 < x1 && y0 < y1))
+				action.apply(x0, y0, x1 - x0, y1 - y0);
+		}
+	}
+	
+	/**
+	 * Calls the given action for the parts of the rectangles of {@code this} region
+	 * that lie outside the given rectangle. The parts never cover the given rectangle,
+	 * but they can overlap each other.*/
+	public final void forEachDifference(int x, int y, int width, int height, RectangleAction action) {
+		for(int i = 0, k = 0, ex = x + width, ey = y + height; i < count; ++i, k += 4) {
+			int x0 = rects[k],     y0 = rects[k + 1];
+			int x1 = rects[k + 2], y1 = rects[k + 3];
+			if((x0 >= ex || x >= x1 || y0 >= ey || y >= y1)) {
+				// No intersection, the whole rectangle is outside
+				action.apply(x0, y0, x1 - x0, y1 - y0);
+				continue;
+			}
+			// Up to four parts: top, bottom, and left and right between them
+			int my0 = Math.max(y0, y), my1 = Math.min(y1, ey);
+			if((y0 < y))  action.apply(x0, y0, x1 - x0, y - y0);
+			if((ey < y1)) action.apply(x0, ey, x1 - x0, y1 - ey);
+			if((x0 < x))  action.apply(x0, my0, x - x0, my1 - my0);
+			if((ex < x1)) action.apply(ex, my0, x1 - ex, my1 - my0);
+		}
+	}
+	
+	public final void clear() {
+		count = 0;
+	}
+	
+	public final boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Gets the bounding rectangle of {@code this} region as (x, y, width, height),
+	 * or {@code null}, if the region is empty.*/
+	public final int[] getBounds() {
+		if((count == 0)) return null;
+		int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+		int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+		for(int i = 0, k = 0; i < count; ++i, k += 4) {
+			x0 = Math.min(x0, rects[k]);
+			y0 = Math.min(y0, rects[k + 1]);
+			x1 = Math.max(x1, rects[k + 2]);
+			y1 = Math.max(y1, rects[k + 3]);
+		}
+		return new int[] { x0, y0, x1 - x0, y1 - y0 };
+	}
+	
+	@FunctionalInterface
+	public static interface RectangleAction {
+		void apply(int x, int y, int width, int height);
+	}
+	
+	@Override
+	public String toString() {
+		return "DirtyRegion" + Arrays.toString(Arrays.copyOf(rects, count * 4));
+	}
+}
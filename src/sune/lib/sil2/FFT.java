@@ -0,0 +1,102 @@
+package sune.lib.sil2;
+
+/**
+ * Radix-2 fast Fourier transform of square blocks of complex numbers.
+ * An instance contains only precomputed tables, therefore it can be
+ * shared by multiple threads.*/
+final class FFT {
+	
+	private final int size;
+	private final float[] cos;
+	private final float[] sin;
+	private final int[] reversed;
+	
+	/**
+	 * Creates a new instance for blocks of the given size.
+	 * @param size The size, must be a power of two*/
+	public FFT(int size) {
+		if((size <= 0 || (size & (size - 1)) != 0))
+			throw new IllegalArgumentException("Size must be a power of two");
+		this.size = size;
+		int half = size / 2;
+		cos = new float[half];
+		sin = new float[half];
+		for(int i = 0; i < half; ++i) {
+			double angle = 2.0 * Math.PI * i / size;
+			cos[i] = (float) Math.cos(angle);
+			sin[i] = (float) Math.sin(angle);
+		}
+		int bits = Integer.numberOfTrailingZeros(size);
+		reversed = new int[size];
+		for(int i = 0; i < size; ++i)
+			reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+	}
+	
+	/**
+	 * Gets the smallest power of two that is greater than or equal
+	 * to the given value.
+	 * @param value The value
+	 * @return The power of two*/
+	public static final int ceilPow2(int value) {
+		return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+	
+	// Transforms size elements starting at the given offset with the given step, in place
+	private final void transform(float[] re, float[] im, int offset, int step, boolean inverse) {
+		int n = size;
+		for(int i = 0, j, a, b; i < n; ++i) {
+			if((i < (j = reversed[i]))) {
+				a = offset + i * step;
+				b = offset + j * step;
+				float tr = re[a]; re[a] = re[b]; re[b] = tr;
+				float ti = im[a]; im[a] = im[b]; im[b] = ti;
+			}
+		}
+		float sign = inverse ? 1.0f : -1.0f;
+		for(int len = 2; len <= n; len <<= 1) {
+			int half = len >> 1, tstep = n / len;
+			for(int i = 0; i < n; i += len) {
+				for(int k = 0, t = 0; k < half; ++k, t += tstep) {
+					float wr = cos[t], wi = sin[t] * sign;
+					int a = offset + (i + k) * step;
+					int b = a + half * step;
+					float tr = re[b] * wr - im[b] * wi;
+					float ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Transforms the given block, given by its real and imaginary parts, in place.
+	 * The inverse transform is scaled, so that the inverse of the forward transform
+	 * gives the original block.
+	 * @param re The real parts, in row-major order
+	 * @param im The imaginary parts, in row-major order
+	 * @param inverse If {@code true}, does the inverse transform*/
+	public final void transform2d(float[] re, float[] im, boolean inverse) {
+		int n = size;
+		for(int r = 0; r < n; ++r)
+			transform(re, im, r * n, 1, inverse);
+		for(int c = 0; c < n; ++c)
+			transform(re, im, c, n, inverse);
+		if((inverse)) {
+			float scale = 1.0f / ((float) n * n);
+			for(int i = 0, l = n * n; i < l; ++i) {
+				re[i] *= scale;
+				im[i] *= scale;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the size of blocks.
+	 * @return The size*/
+	public final int getSize() {
+		return size;
+	}
+}
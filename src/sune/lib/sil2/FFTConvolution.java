@@ -0,0 +1,184 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Convolution with large kernels done in the frequency domain. The area is split
+ * to square blocks that, together with the neighborhood needed by the kernel,
+ * fit into a power-of-two FFT block (overlap-save), so the memory used does not
+ * depend on the size of the image. Two channels are transformed at once as the real
+ * and the imaginary part of a single complex block, which works since the kernel
+ * is real.
+ * <br><br>
+ * The pixels closer to the edges of the area than the radius of the kernel are convoluted
+ * spatially, since their neighborhood is extended differently for each of them.*/
+final class FFTConvolution {
+	
+	// The minimum size of an FFT block
+	private static final int MIN_BLOCK_SIZE = 64;
+	
+	// Forbid anyone to create an instance of this class
+	private FFTConvolution() {
+	}
+	
+	private static final int clamp02(int val) {
+		if((val <= 0x00)) return 0x00;
+		if((val >= 0xff)) return 0xff;
+		return val;
+	}
+	
+	/**
+	 * Gets the size of FFT blocks used for a kernel of the given size.
+	 * @param size The size of the kernel
+	 * @return The size of FFT blocks*/
+	public static final int blockSize(int size) {
+		return FFT.ceilPow2(Math.max(MIN_BLOCK_SIZE, 4 * (size - 1)));
+	}
+	
+	/**
+	 * Convolutes the given area of the input with the given square kernel and stores
+	 * the result to the output. Pixels outside of the area are extended the same way as
+	 * in the spatial convolution, i.e. a pixel outside of the area is replaced by the pixel
+	 * in the same row, or column, as the convoluted pixel.
+	 * @param kernel The kernel, in row-major order
+	 * @param size The size of the kernel, must be odd
+	 * @param input The input
+	 * @param output The output
+	 * @param format The pixel format of both the input and the output
+	 * @param x The x-coordinate of the area
+	 * @param y The y-coordinate of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @param stride The stride of both the input and the output, in pixels
+	 * @param alphaChannel If {@code true}, also convolute the alpha channel
+	 * @param scheduler The scheduler used for processing the blocks*/
+	public static final <T extends Buffer> void convolute(float[] kernel, int size, T input, T output,
+			ImagePixelFormat<T> format, int x, int y, int width, int height, int stride,
+			boolean alphaChannel, TileScheduler scheduler) {
+		int h = size / 2;
+		int n = blockSize(size);
+		FFT fft = new FFT(n);
+		// The kernel is flipped, so that the result is the same as of the spatial convolution
+		float[] kre = new float[n * n];
+		float[] kim = new float[n * n];
+		for(int dy = -h; dy <= h; ++dy) {
+			for(int dx = -h; dx <= h; ++dx) {
+				kre[((n - dy) % n) * n + (n - dx) % n] = kernel[(dy + h) * size + (dx + h)];
+			}
+		}
+		fft.transform2d(kre, kim, false);
+		scheduler.execute(x, y, width, height, (tx, ty, tw, th) -> {
+			convolute(fft, kre, kim, h, input, output, format, x, y, width, height, stride,
+			          alphaChannel, tx, ty, tw, th);
+			convoluteEdges(kernel, h, input, output, format, x, y, width, height, stride,
+			               alphaChannel, tx, ty, tw, th);
+		});
+	}
+	
+	private static final <T extends Buffer> void convolute(FFT fft, float[] kre, float[] kim, int h,
+			T input, T output, ImagePixelFormat<T> format, int x, int y, int width, int height, int stride,
+			boolean alphaChannel, int tx, int ty, int tw, int th) {
+		int n = fft.getSize(), b = n - 2 * h;
+		int epp = format.getElementsPerPixel();
+		int ex = x + width, ey = y + height;
+		float[] re0 = new float[n * n], im0 = new float[n * n]; // red and green
+		float[] re1 = new float[n * n], im1 = new float[n * n]; // blue and alpha
+		int[] line = new int[n];
+		for(int by = ty, bye = ty + th; by < bye; by += b) {
+			for(int bx = tx, bxe = tx + tw; bx < bxe; bx += b) {
+				int bw = Math.min(b, bxe - bx), lw = bw + 2 * h;
+				int bh = Math.min(b, bye - by), lh = bh + 2 * h;
+				// The columns of a line that are in the area, the rest is extended
+				int lx = Math.max(x, bx - h), lxe = Math.min(ex, bx + bw + h);
+				int pl = lx - (bx - h), pr = pl + (lxe - lx);
+				// Fill the block with the input pixels and their neighborhood. Elements of the
+				// block outside of these do not affect the result, so they are not cleared.
+				// The neighborhood outside of the area affects only the pixels near the edges,
+				// which are convoluted again afterwards, so the nearest pixels are used.
+				for(int j = 0, o = 0, clr; j < lh; ++j, o += n) {
+					int r = Math.min(Math.max(by - h + j, y), ey - 1);
+					format.getARGB(input, (r * stride + lx) * epp, line, pl, lxe - lx);
+					for(int i = 0;  i < pl; ++i) line[i] = line[pl];
+					for(int i = pr; i < lw; ++i) line[i] = line[pr - 1];
+					for(int i = 0, q = o; i < lw; ++i, ++q) {
+						clr = line[i];
+						re0[q] = (clr >> 16) & 0xff;
+						im0[q] = (clr >>  8) & 0xff;
+						re1[q] = (clr)       & 0xff;
+						im1[q] = (clr >> 24) & 0xff;
+					}
+				}
+				multiply(fft, re0, im0, kre, kim);
+				multiply(fft, re1, im1, kre, kim);
+				for(int j = 0, o = h * n + h; j < bh; ++j, o += n) {
+					for(int i = 0, q = o; i < bw; ++i, ++q) {
+						line[i] = (clamp02(alphaChannel ? (int) im1[q] : 0xff) << 24) |
+						          (clamp02((int) re0[q]) << 16) |
+						          (clamp02((int) im0[q]) <<  8) |
+						          (clamp02((int) re1[q]));
+					}
+					format.setARGB(output, ((by + j) * stride + bx) * epp, line, 0, bw);
+				}
+			}
+		}
+	}
+	
+	// Convolutes the pixels of the given tile that are closer to the edges of the area than
+	// the radius of the kernel spatially, the same way as BufferImage's convolution of the edges,
+	// so that the result does not depend on whether the FFT is used.
+	private static final <T extends Buffer> void convoluteEdges(float[] kernel, int h, T input, T output,
+			ImagePixelFormat<T> format, int x, int y, int width, int height, int stride,
+			boolean alphaChannel, int tx, int ty, int tw, int th) {
+		float pxa, pxr, pxg, pxb, mul;
+		int epp = format.getElementsPerPixel();
+		int ex = x + width, ey = y + height;
+		int ix = x + h, iex = ex - h;
+		for(int py = ty, pye = ty + th; py < pye; ++py) {
+			boolean inner = py >= y + h && py < ey - h;
+			for(int px = tx, pxe = tx + tw, clr; px < pxe; ++px) {
+				if((inner && px >= ix && px < iex)) {
+					px = iex - 1; // Skip the pixels convoluted by the FFT
+					continue;
+				}
+				pxa = 0.0f;
+				pxr = 0.0f;
+				pxg = 0.0f;
+				pxb = 0.0f;
+				for(int dy = -h, k = 0; dy <= h; ++dy) {
+					int ky = py + dy;
+					if((ky < y || ky >= ey)) ky = py;
+					for(int dx = -h; dx <= h; ++dx, ++k) {
+						int kx = px + dx;
+						if((kx < x || kx >= ex)) kx = px;
+						mul  = kernel[k];
+						clr  = format.getARGB(input, (ky * stride + kx) * epp);
+						pxa += ((clr >> 24) & 0xff) * mul;
+						pxr += ((clr >> 16) & 0xff) * mul;
+						pxg += ((clr >>  8) & 0xff) * mul;
+						pxb += ((clr)       & 0xff) * mul;
+					}
+				}
+				if(!alphaChannel) pxa = 0xff;
+				format.setPixel(output, (py * stride + px) * epp,
+				                clamp02((int) pxr),
+				                clamp02((int) pxg),
+				                clamp02((int) pxb),
+				                clamp02((int) pxa));
+			}
+		}
+	}
+	
+	// Convolutes the given block with the kernel, given by its spectrum, in place
+	private static final void multiply(FFT fft, float[] re, float[] im, float[] kre, float[] kim) {
+		fft.transform2d(re, im, false);
+		for(int i = 0, l = re.length; i < l; ++i) {
+			float r = re[i] * kre[i] - im[i] * kim[i];
+			float m = re[i] * kim[i] + im[i] * kre[i];
+			re[i] = r;
+			im[i] = m;
+		}
+		fft.transform2d(re, im, true);
+	}
+}
@@ -1,11 +1,13 @@
 package sune.lib.sil2;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.Buffer;
 
 import javafx.application.Platform;
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 
 final class FXInternalUtils {
 	
@@ -57,6 +59,10 @@ final class FXInternalUtils {
 			return (Buffer) field_buffer.get(image);
 		}
 		
+		public void setBuffer(Buffer buffer) throws Exception {
+			field_buffer.set(image, buffer);
+		}
+		
 		public Buffer bufferRewind() {
 			try {
 				return buffer().rewind();
@@ -72,6 +78,8 @@ final class FXInternalUtils {
 	
 	private static Method method_getPlatformImage;
 	private static Method method_pixelsDirty;
+	private static Method method_bufferDirty;
+	private static Constructor<?> constructor_rectangle;
 	private static boolean inited;
 	
 	private static final void initFields() throws Exception {
@@ -80,6 +88,16 @@ final class FXInternalUtils {
 		method_pixelsDirty      = Image.class.getDeclaredMethod("pixelsDirty");
 		Reflection.setAccessible(method_getPlatformImage, true);
 		Reflection.setAccessible(method_pixelsDirty,      true);
+		try {
+			// Used by PixelBuffer to update only a region of the image, since JavaFX 13
+			Class<?> clazz_rectangle = Class.forName("com.sun.javafx.geom.Rectangle");
+			method_bufferDirty    = WritableImage.class.getDeclaredMethod("bufferDirty", clazz_rectangle);
+			constructor_rectangle = clazz_rectangle.getConstructor(int.class, int.class, int.class, int.class);
+			Reflection.setAccessible(method_bufferDirty,    true);
+			Reflection.setAccessible(constructor_rectangle, true);
+		} catch(ClassNotFoundException | NoSuchMethodException ex) {
+			// Not supported, the whole image is always updated
+		}
 		inited = true;
 	}
 	
@@ -93,6 +111,12 @@ final class FXInternalUtils {
 		method_pixelsDirty.invoke(image);
 	}
 	
+	private static final void _updateImage(WritableImage image, int x, int y, int width, int height)
+			throws Exception {
+		initFields();
+		method_bufferDirty.invoke(image, constructor_rectangle.newInstance(x, y, width, height));
+	}
+	
 	public static final PlatformImageWrapper getPlatformImageWrapper(Image image) {
 		try {
 			Object platformImage = _getPlatformImage(image);
@@ -121,4 +145,25 @@ final class FXInternalUtils {
 	public static final void updateImageSafe(Image image) {
 		Platform.runLater(() -> updateImage(image));
 	}
+	
+	public static final boolean isRegionUpdateSupported() {
+		try {
+			initFields();
+		} catch(Exception ex) {
+			return false;
+		}
+		return method_bufferDirty != null;
+	}
+	
+	public static final void updateImage(WritableImage image, int x, int y, int width, int height) {
+		try {
+			_updateImage(image, x, y, width, height);
+		} catch(Exception ex) {
+			throw new IllegalStateException("Unable to update FX image: " + image);
+		}
+	}
+	
+	public static final void updateImageSafe(WritableImage image, int x, int y, int width, int height) {
+		Platform.runLater(() -> updateImage(image, x, y, width, height));
+	}
 }
\ No newline at end of file
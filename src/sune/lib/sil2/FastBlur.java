@@ -1,6 +1,9 @@
 package sune.lib.sil2;
 
 import java.nio.Buffer;
+import java.util.Arrays;
+
+import sune.lib.sil2.format.ImagePixelFormat;
 
 /**
  * Provides fast blurring of image pixels. It offers two most used blurs:
@@ -16,75 +19,243 @@ import java.nio.Buffer;
  */
 public final class FastBlur {
 	
+	// The maximum length of an array that can be allocated
+	private static final int MAX_PLANE_LENGTH = Integer.MAX_VALUE - 8;
+	
 	// Forbid anyone to create an instance of this class
 	private FastBlur() {
 	}
 	
 	public static final <T extends Buffer> void boxBlur(T input, T output, int x, int y, int w, int h, int r, int s,
 			InternalChannels<T> channels, boolean premultiply) {
-		final CounterLock lock   = new CounterLock(4);
-		final int         length = input.capacity();
-		final byte[] dstR = new byte[length];
-		final byte[] dstG = new byte[length];
-		final byte[] dstB = new byte[length];
-		final byte[] dstA = new byte[length];
-		final byte[] srcR = new byte[length];
-		final byte[] srcG = new byte[length];
-		final byte[] srcB = new byte[length];
-		final byte[] srcA = new byte[length];
-		channels.separate(input, srcR, srcG, srcB, srcA, x, y, w, h, s, false);
-		Threads.execute(() -> {
-			boxBlur(srcR, dstR, x, y, w, h, r, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			boxBlur(srcG, dstG, x, y, w, h, r, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			boxBlur(srcB, dstB, x, y, w, h, r, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			boxBlur(srcA, dstA, x, y, w, h, r, s);
-			lock.decrement();
-		});
-		lock.await();
-		channels.join(dstR, dstG, dstB, dstA, output, x, y, w, h, s, premultiply);
+		boxBlur(input, output, x, y, w, h, r, s, channels.getFormat(), TileScheduler.getDefault(), premultiply);
 	}
 	
 	public static final <T extends Buffer> void gaussianBlur(T input, T output, int x, int y, int w, int h, int r, int s,
 			InternalChannels<T> channels, boolean premultiply) {
-		final CounterLock lock   = new CounterLock(4);
-		final int         length = input.capacity();
-		final float[]     boxes  = generateBoxes(r, 3);
-		final byte[] dstR = new byte[length];
-		final byte[] dstG = new byte[length];
-		final byte[] dstB = new byte[length];
-		final byte[] dstA = new byte[length];
-		final byte[] srcR = new byte[length];
-		final byte[] srcG = new byte[length];
-		final byte[] srcB = new byte[length];
-		final byte[] srcA = new byte[length];
-		channels.separate(input, srcR, srcG, srcB, srcA, x, y, w, h, s, false);
-		Threads.execute(() -> {
-			gaussianBlur(srcR, dstR, x, y, w, h, boxes, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			gaussianBlur(srcG, dstG, x, y, w, h, boxes, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			gaussianBlur(srcB, dstB, x, y, w, h, boxes, s);
-			lock.decrement();
-		});
-		Threads.execute(() -> {
-			gaussianBlur(srcA, dstA, x, y, w, h, boxes, s);
-			lock.decrement();
-		});
-		lock.await();
-		channels.join(dstR, dstG, dstB, dstA, output, x, y, w, h, s, premultiply);
+		gaussianBlur(input, output, x, y, w, h, r, s, channels.getFormat(), TileScheduler.getDefault(), premultiply);
+	}
+	
+	/**
+	 * Applies box blur of the given radius to the given region of the input and stores
+	 * the result to the output. The pixels are processed interleaved, in tiles executed
+	 * by the given scheduler.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param r The radius
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler
+	 * @param premultiply If {@code true}, the pixels are premultiplied while blurred*/
+	public static final <T extends Buffer> void boxBlur(T input, T output, int x, int y, int w, int h, int r, int s,
+			ImagePixelFormat<T> format, TileScheduler scheduler, boolean premultiply) {
+		blur(input, output, x, y, w, h, s, new int[] { r }, format, scheduler, premultiply);
+	}
+	
+	/**
+	 * Applies an approximation of gaussian blur of the given radius, done by three box blurs,
+	 * to the given region of the input and stores the result to the output. The pixels are
+	 * processed interleaved, in tiles executed by the given scheduler.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param r The radius
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler
+	 * @param premultiply If {@code true}, the pixels are premultiplied while blurred*/
+	public static final <T extends Buffer> void gaussianBlur(T input, T output, int x, int y, int w, int h, int r, int s,
+			ImagePixelFormat<T> format, TileScheduler scheduler, boolean premultiply) {
+		float[] boxes = generateBoxes(r, 3);
+		int[] radii = new int[boxes.length];
+		for(int i = 0; i < boxes.length; ++i)
+			radii[i] = (int) ((boxes[i] - 1.0f) * 0.5f);
+		blur(input, output, x, y, w, h, s, radii, format, scheduler, premultiply);
+	}
+	
+	/**
+	 * Applies gaussian blur of the given standard deviation to the given region of the input
+	 * and stores the result to the output. The blur is computed by the recursive filter of
+	 * Young and van Vliet, therefore the number of operations per pixel does not depend
+	 * on the standard deviation. The edges are extended. The horizontally filtered region
+	 * is kept as floats, i.e. 16 bytes per pixel, therefore the region can have at most
+	 * {@code (Integer.MAX_VALUE - 8) / 4} pixels.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sigma The standard deviation, values less than {@code 0.5} are treated as {@code 0.5}
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler
+	 * @param premultiply If {@code true}, the pixels are premultiplied while blurred
+	 * @see
+	 * <a href="https://doi.org/10.1016/0165-1684(95)00020-E">
+	 * 	Recursive implementation of the Gaussian filter
+	 * </a>
+	 * @throws IllegalArgumentException If the region has too many pixels*/
+	public static final <T extends Buffer> void recursiveGaussianBlur(T input, T output, int x, int y, int w, int h,
+			float sigma, int s, ImagePixelFormat<T> format, TileScheduler scheduler, boolean premultiply) {
+		if((w <= 0 || h <= 0)) return;
+		long length = 4L * w * h;
+		if((length > MAX_PLANE_LENGTH))
+			throw new IllegalArgumentException("Region is too large: " + w + "x" + h);
+		final float[] coeffs = recursiveCoefficients(sigma);
+		final PlanePool pool = PlanePool.getDefault();
+		// Large planes are allocated with the exact length, not rounded up
+		final float[] plane = pool.acquireFloats((int) length);
+		try {
+			// Horizontal pass, each row at once
+			scheduler.executeRows(0, 0, w, h, (tx, ty, tw, th) -> {
+				int[] line = new int[w];
+				float[] row = new float[w * 4];
+				for(int j = ty, je = ty + th; j < je; ++j) {
+					read(input, ((y + j) * s + x), line, w, format, premultiply);
+					for(int i = 0, q = 0, clr; i < w; ++i, q += 4) {
+						clr        = line[i];
+						row[q]     = (clr >>> 24);
+						row[q + 1] = (clr >> 16) & 0xff;
+						row[q + 2] = (clr >>  8) & 0xff;
+						row[q + 3] = (clr)       & 0xff;
+					}
+					recursiveFilter(row, 0, 4, w, coeffs);
+					System.arraycopy(row, 0, plane, j * w * 4, w * 4);
+				}
+			});
+			// Vertical pass, in strips of whole columns, row by row
+			scheduler.executeColumns(0, 0, w, h, (tx, ty, tw, th) -> {
+				recursiveFilterColumns(plane, w, h, tx, tw, coeffs, (j, line) -> {
+					write(output, ((y + j) * s + x + tx), line, tw, format, premultiply);
+				});
+			});
+		} finally {
+			pool.release(plane);
+		}
+	}
+	
+	// Returns the coefficients B, b1/b0, b2/b0 and b3/b0 of the recursive filter,
+	// followed by the 3x3 matrix of the boundary conditions of the backward pass
+	private static final float[] recursiveCoefficients(float sigma) {
+		double sg = Math.max(sigma, 0.5f);
+		double q  = sg >= 2.5 ? 0.98711 * sg - 0.96330 : 3.97156 - 4.14554 * Math.sqrt(1.0 - 0.26891 * sg);
+		double q2 = q * q, q3 = q2 * q;
+		double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+		double b1 = 2.44413 * q + 2.85619 * q2 + 1.26661 * q3;
+		double b2 = -(1.4281 * q2 + 1.26661 * q3);
+		double b3 = 0.422205 * q3;
+		double B = 1.0 - (b1 + b2 + b3) / b0, c1 = b1 / b0, c2 = b2 / b0, c3 = b3 / b0;
+		float[] coeffs = { (float) B, (float) c1, (float) c2, (float) c3, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+		/* Boundary conditions of Triggs and Sdika: the input is extended by the last value,
+		 * so the forward pass continues past the end and the backward pass starts from
+		 * the infinity. Both are linear in the differences of the last three forward values
+		 * from the last input value, so the backward initial values are given by a matrix.
+		 * The matrix is found by running the filter for each unit difference long enough,
+		 * so that its response decays.*/
+		int length = (int) Math.ceil(20.0 * sg) + 64;
+		double[] fw = new double[length];
+		for(int j = 0; j < 3; ++j) {
+			double w1 = j == 0 ? 1.0 : 0.0, w2 = j == 1 ? 1.0 : 0.0, w3 = j == 2 ? 1.0 : 0.0, v;
+			for(int n = 0; n < length; ++n) {
+				v = c1 * w1 + c2 * w2 + c3 * w3;
+				fw[n] = v;
+				w3 = w2; w2 = w1; w1 = v;
+			}
+			w3 = w2 = w1 = 0.0;
+			for(int n = length - 1; n >= 0; --n) {
+				v = B * fw[n] + c1 * w1 + c2 * w2 + c3 * w3;
+				w3 = w2; w2 = w1; w1 = v;
+			}
+			// The backward values right after the end, in the order of the history
+			coeffs[4 + j]     = (float) w1;
+			coeffs[4 + j + 3] = (float) w2;
+			coeffs[4 + j + 6] = (float) w3;
+		}
+		return coeffs;
+	}
+	
+	// Filters length values, each of 4 channels, starting at the given offset with the given step
+	// forward and then backward, in place. The values outside are the edge values.
+	private static final void recursiveFilter(float[] data, int offset, int step, int length, float[] coeffs) {
+		float B = coeffs[0], c1 = coeffs[1], c2 = coeffs[2], c3 = coeffs[3];
+		for(int ch = 0; ch < 4; ++ch) {
+			int first = offset + ch, last = first + (length - 1) * step;
+			float edge = data[last];
+			// Forward
+			float w1, w2, w3 = w2 = w1 = data[first], v;
+			for(int i = first; i <= last; i += step) {
+				v = B * data[i] + c1 * w1 + c2 * w2 + c3 * w3;
+				data[i] = v;
+				w3 = w2; w2 = w1; w1 = v;
+			}
+			// Backward
+			float d1 = w1 - edge, d2 = w2 - edge, d3 = w3 - edge;
+			w1 = edge + coeffs[4]  * d1 + coeffs[5]  * d2 + coeffs[6]  * d3;
+			w2 = edge + coeffs[7]  * d1 + coeffs[8]  * d2 + coeffs[9]  * d3;
+			w3 = edge + coeffs[10] * d1 + coeffs[11] * d2 + coeffs[12] * d3;
+			for(int i = last; i >= first; i -= step) {
+				v = B * data[i] + c1 * w1 + c2 * w2 + c3 * w3;
+				data[i] = v;
+				w3 = w2; w2 = w1; w1 = v;
+			}
+		}
+	}
+	
+	private static final int clamp02(float val) {
+		int v = FastMath.round(val);
+		return v <= 0x00 ? 0x00 : v >= 0xff ? 0xff : v;
+	}
+	
+	// Filters the columns [tx, tx+tw) of the given plane of packed 4-channel values vertically,
+	// the forward pass is done in place, the backward pass writes the final rows bottom-up.
+	private static final void recursiveFilterColumns(float[] plane, int w, int h, int tx, int tw,
+			float[] coeffs, RowWriter writer) {
+		float B = coeffs[0], c1 = coeffs[1], c2 = coeffs[2], c3 = coeffs[3];
+		int n = tw * 4, rs = w * 4, o = tx * 4;
+		float[] w1 = new float[n], w2 = new float[n], w3 = new float[n];
+		int[] line = new int[tw];
+		float v;
+		int kl = (h - 1) * rs + o;
+		float[] edge = Arrays.copyOfRange(plane, kl, kl + n);
+		// Forward
+		System.arraycopy(plane, o, w1, 0, n);
+		System.arraycopy(plane, o, w2, 0, n);
+		System.arraycopy(plane, o, w3, 0, n);
+		for(int j = 0, k = o; j < h; ++j, k += rs) {
+			for(int c = 0; c < n; ++c) {
+				v = B * plane[k + c] + c1 * w1[c] + c2 * w2[c] + c3 * w3[c];
+				plane[k + c] = v;
+				w3[c] = w2[c]; w2[c] = w1[c]; w1[c] = v;
+			}
+		}
+		// Backward
+		for(int c = 0; c < n; ++c) {
+			float d1 = w1[c] - edge[c], d2 = w2[c] - edge[c], d3 = w3[c] - edge[c];
+			w1[c] = edge[c] + coeffs[4]  * d1 + coeffs[5]  * d2 + coeffs[6]  * d3;
+			w2[c] = edge[c] + coeffs[7]  * d1 + coeffs[8]  * d2 + coeffs[9]  * d3;
+			w3[c] = edge[c] + coeffs[10] * d1 + coeffs[11] * d2 + coeffs[12] * d3;
+		}
+		for(int j = h - 1, k = kl; j >= 0; --j, k -= rs) {
+			for(int c = 0; c < n; ++c) {
+				v = B * plane[k + c] + c1 * w1[c] + c2 * w2[c] + c3 * w3[c];
+				w3[c] = w2[c]; w2[c] = w1[c]; w1[c] = v;
+			}
+			for(int i = 0, q = 0; i < tw; ++i, q += 4) {
+				line[i] = (clamp02(w1[q])     << 24) |
+				          (clamp02(w1[q + 1]) << 16) |
+				          (clamp02(w1[q + 2]) <<  8) |
+				          (clamp02(w1[q + 3]));
+			}
+			writer.write(j, line);
+		}
 	}
 	
 	private static final float[] generateBoxes(int sigma, int amount) {
@@ -99,48 +270,138 @@ public final class FastBlur {
 		return sizes;
 	}
 	
-	private static final void gaussianBlur(byte[] input, byte[] output, int x, int y, int w, int h,
-			float[] boxes, int s) {
-		boxBlur(input, output, x, y, w, h, (int) ((boxes[0] - 1.0f) * 0.5f), s);
-		boxBlur(output, input, x, y, w, h, (int) ((boxes[1] - 1.0f) * 0.5f), s);
-		boxBlur(input, output, x, y, w, h, (int) ((boxes[2] - 1.0f) * 0.5f), s);
+	// Applies box blurs of the given radii. Each box blur is a horizontal and a vertical pass,
+	// both of them split to tiles. The first pass reads the input and the last pass writes
+	// the output, in between the passes exchange two planes of packed ARGB colors.
+	private static final <T extends Buffer> void blur(T input, T output, int x, int y, int w, int h, int s,
+			int[] radii, ImagePixelFormat<T> format, TileScheduler scheduler, boolean premultiply) {
+		if((w <= 0 || h <= 0)) return;
+		PlanePool pool = PlanePool.getDefault();
+		int[] planeA = pool.acquireInts(w * h);
+		int[] planeB = null;
+		try {
+			planeB = pool.acquireInts(w * h);
+			final int[] a = planeA, b = planeB;
+			for(int i = 0, l = radii.length; i < l; ++i) {
+				final int r = Math.max(radii[i], 0);
+				final boolean first = i == 0, last = i == l - 1;
+				scheduler.execute(0, 0, w, h, (tx, ty, tw, th) -> {
+					int[] line = new int[Math.min(w, tw + 2 * r + 1)];
+					int lx = Math.max(0, tx - r - 1), lw = Math.min(w, tx + tw + r) - lx;
+					for(int j = ty, je = ty + th; j < je; ++j) {
+						if((first)) read(input, ((y + j) * s + x + lx), line, lw, format, premultiply);
+						else        System.arraycopy(a, j * w + lx, line, 0, lw);
+						blurHorizontal(line, lx, w, tx, tw, r, b, j * w + tx);
+					}
+				});
+				scheduler.execute(0, 0, w, h, (tx, ty, tw, th) -> {
+					int[] line = new int[tw];
+					int[] acc = new int[tw * 4];
+					blurVertical(b, w, h, tx, tw, ty, th, r, line, acc, (j, row) -> {
+						if((last)) write(output, ((y + j) * s + x + tx), row, tw, format, premultiply);
+						else       System.arraycopy(row, 0, a, j * w + tx, tw);
+					});
+				});
+			}
+		} finally {
+			pool.release(planeA);
+			if((planeB != null)) pool.release(planeB);
+		}
+	}
+	
+	private static final <T extends Buffer> void read(T input, int k, int[] line, int length,
+			ImagePixelFormat<T> format, boolean premultiply) {
+		int epp = format.getElementsPerPixel();
+		if((premultiply)) {
+			for(int i = 0, e = k * epp; i < length; ++i, e += epp)
+				line[i] = format.getARGBPre(input, e);
+		} else {
+			format.getARGB(input, k * epp, line, 0, length);
+		}
+	}
+	
+	private static final <T extends Buffer> void write(T output, int k, int[] line, int length,
+			ImagePixelFormat<T> format, boolean premultiply) {
+		int epp = format.getElementsPerPixel();
+		if((premultiply)) {
+			for(int i = 0, e = k * epp; i < length; ++i, e += epp)
+				format.setARGBPre(output, e, line[i]);
+		} else {
+			format.setARGB(output, k * epp, line, 0, length);
+		}
+	}
+	
+	private static final int clamp(int val, int min, int max) {
+		return val < min ? min : val > max ? max : val;
 	}
 	
-	private static final void boxBlur(byte[] input, byte[] output, int x, int y, int w, int h, int r, int s) {
-		Pixels.copy(input, x, y, s, output, x, y, s, w, h, 1);
-		boxBlurHorizontal(output, input,  x, y, w, h, r, s);
-		boxBlurVertical  (input,  output, x, y, w, h, r, s);
+	private static final int pack(int a, int r, int g, int b, float iarr) {
+		return (FastMath.round(a * iarr) << 24) |
+		       (FastMath.round(r * iarr) << 16) |
+		       (FastMath.round(g * iarr) <<  8) |
+		       (FastMath.round(b * iarr));
 	}
 	
-	private static final void boxBlurHorizontal(byte[] input, byte[] output, int x, int y, int w, int h, int r, int s) {
+	// Blurs the columns [tx, tx+tw) of a row of the given width, whose columns starting
+	// at lx are in the line. The edges are extended.
+	private static final void blurHorizontal(int[] line, int lx, int w, int tx, int tw, int r,
+			int[] output, int k) {
 		float iarr = 1.0f / (r+r+1);
-		for(int i = 0, k = y * s; i < h; ++i, k+=s) {
-			int ti = k+x, li = ti, ri = ti+r, fv = input[ti] & 0xff,
-				lv = input[ti+w-1] & 0xff, val = (r+1) * fv;
-			for(int j = ti, e = ti+r; j < e; ++j)
-				val += input[j] & 0xff;
-			for(int j = 0; j <= r; ++j, ++ri, ++ti)
-				output[ti] = (byte) FastMath.round((val += (input[ri] & 0xff) - fv) * iarr);
-			for(int j = r+1, e = w-r; j < e; ++j, ++ri, ++li, ++ti)
-				output[ti] = (byte) FastMath.round((val += (input[ri] & 0xff) - (input[li] & 0xff)) * iarr);
-			for(int j = 0; j < r; ++j, ++li, ++ti)
-				output[ti] = (byte) FastMath.round((val += lv - (input[li] & 0xff)) * iarr);
+		int va = 0, vr = 0, vg = 0, vb = 0, add, sub;
+		// The sum of the window around the column before the first one
+		for(int j = tx - 1 - r, e = tx + r; j < e; ++j) {
+			add = line[clamp(j, 0, w - 1) - lx];
+			va += (add >>> 24);
+			vr += (add >> 16) & 0xff;
+			vg += (add >>  8) & 0xff;
+			vb += (add)       & 0xff;
 		}
+		for(int t = tx, e = tx + tw, m = w - 1; t < e; ++t, ++k) {
+			add = line[Math.min(t + r, m) - lx];
+			sub = line[Math.max(t - r - 1, 0) - lx];
+			va += (add >>> 24)        - (sub >>> 24);
+			vr += ((add >> 16) & 0xff) - ((sub >> 16) & 0xff);
+			vg += ((add >>  8) & 0xff) - ((sub >>  8) & 0xff);
+			vb += ((add)       & 0xff) - ((sub)       & 0xff);
+			output[k] = pack(va, vr, vg, vb, iarr);
+		}
+	}
+	
+	@FunctionalInterface
+	private static interface RowWriter {
+		void write(int row, int[] line);
 	}
 	
-	private static final void boxBlurVertical(byte[] input, byte[] output, int x, int y, int w, int h, int r, int s) {
+	// Blurs the columns [tx, tx+tw) of the rows [ty, ty+th) of the given plane vertically,
+	// row by row, so that the plane is accessed sequentially. The edges are extended.
+	private static final void blurVertical(int[] input, int w, int h, int tx, int tw, int ty, int th, int r,
+			int[] line, int[] acc, RowWriter writer) {
 		float iarr = 1.0f / (r+r+1);
-		for(int i = 0, f = x + y * s, l = r * s, c = s * (h-1); i < w; ++i) {
-			int ti = i+f, li = ti, ri = ti+l, fv = input[ti] & 0xff,
-				lv = input[ti+c] & 0xff, val = (r+1) * fv;
-			for(int j = ti, e = ti+r*s; j < e; j+=s)
-				val += input[j] & 0xff;
-			for(int j = 0; j <= r; ++j, ri+=s, ti+=s)
-				output[ti] = (byte) FastMath.round((val += (input[ri] & 0xff) - fv) * iarr);
-			for(int j = r+1, e = h-r; j < e; ++j, li+=s, ri+=s, ti+=s)
-				output[ti] = (byte) FastMath.round((val += (input[ri] & 0xff) - (input[li] & 0xff)) * iarr);
-			for(int j = 0; j < r; ++j, li+=s, ti+=s)
-				output[ti] = (byte) FastMath.round((val += lv - (input[li] & 0xff)) * iarr);
+		int add, sub;
+		Arrays.fill(acc, 0);
+		// The sums of the windows around the row before the first one
+		for(int j = ty - 1 - r, e = ty + r; j < e; ++j) {
+			for(int c = 0, k = clamp(j, 0, h - 1) * w + tx, q = 0; c < tw; ++c, ++k, q += 4) {
+				add = input[k];
+				acc[q]     += (add >>> 24);
+				acc[q + 1] += (add >> 16) & 0xff;
+				acc[q + 2] += (add >>  8) & 0xff;
+				acc[q + 3] += (add)       & 0xff;
+			}
+		}
+		for(int t = ty, e = ty + th, m = h - 1; t < e; ++t) {
+			int ka = Math.min(t + r, m) * w + tx;
+			int ks = Math.max(t - r - 1, 0) * w + tx;
+			for(int c = 0, q = 0; c < tw; ++c, q += 4) {
+				add = input[ka + c];
+				sub = input[ks + c];
+				acc[q]     += (add >>> 24)        - (sub >>> 24);
+				acc[q + 1] += ((add >> 16) & 0xff) - ((sub >> 16) & 0xff);
+				acc[q + 2] += ((add >>  8) & 0xff) - ((sub >>  8) & 0xff);
+				acc[q + 3] += ((add)       & 0xff) - ((sub)       & 0xff);
+				line[c] = pack(acc[q], acc[q + 1], acc[q + 2], acc[q + 3], iarr);
+			}
+			writer.write(t, line);
 		}
 	}
-}
\ No newline at end of file
+}
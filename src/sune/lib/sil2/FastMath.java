@@ -119,6 +119,9 @@ public final class FastMath {
 	private static final float BIG_ENOUGH_FLOOR = BIG_ENOUGH_INT;
 	private static final float BIG_ENOUGH_ROUND = BIG_ENOUGH_INT + 0.5f;
 	
+	// Function: divAlpha, indexed by (alpha << 8) | value
+	private static final byte[] DIV_ALPHA = new byte[256 * 256];
+	
 	private static final void initAtan2() {
 		for(int i = 0; i <= SIZE; ++i) {
     		float f = (float) i / SIZE;
@@ -146,9 +149,18 @@ public final class FastMath {
 		}
 	}
 	
+	private static final void initAlpha() {
+		for(int a = 0, i = 0; a < 256; ++a) {
+			for(int v = 0; v < 256; ++v, ++i) {
+				DIV_ALPHA[i] = (byte) (a == 0 ? 0 : Math.min(mul255(v) / a, 255));
+			}
+		}
+	}
+	
 	static {
 		initAtan2();
 		initTrig();
+		initAlpha();
 	}
 	
 	// Forbid anyone to create an instance of this class
@@ -388,6 +400,28 @@ public final class FastMath {
 		return ((val + 1) + (val >> 8)) >> 8;
 	}
 	
+	/**
+	 * Divides the given color component by the given alpha, i.e. un-premultiplies it.
+	 * The result is the same as of {@code mul255(val) / alpha}, but a lookup table is used,
+	 * so no division is performed. The result is clamped to {@code 255} and is {@code 0}
+	 * for zero alpha.
+	 * @param val the color component in range {@code <0, 255>}
+	 * @param alpha the alpha in range {@code <0, 255>}
+	 * @return {@code val * 255 / alpha}*/
+	public static final int divAlpha(int val, int alpha) {
+		return DIV_ALPHA[(alpha << 8) | val] & 0xff;
+	}
+	
+	/**
+	 * Divides both 16-bit halves of the given number by {@code 255}
+	 * at once, the same way as {@linkplain #div255(int)} does.
+	 * No overflow and range checks are performed.
+	 * @param val the number with both halves in range {@code <0, 65025>}
+	 * @return {@code val / 255} for both halves*/
+	public static final int div255x2(int val) {
+		return ((val + 0x00010001 + ((val >>> 8) & 0x00ff00ff)) >>> 8) & 0x00ff00ff;
+	}
+	
 	/**
      * Returns the unbiased exponent used in the representation of a
      * {@code float}.  Special cases:
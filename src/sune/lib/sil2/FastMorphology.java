@@ -0,0 +1,305 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+import java.util.function.IntBinaryOperator;
+
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Provides grayscale morphology by a rectangular structuring element, i.e. maximum
+ * (dilation) and minimum (erosion) filters and the operations built on them. Each of
+ * the red, green and blue channels is filtered separately, the alpha channel is kept.
+ * <br><br>
+ * The filters are separable and computed by the van Herk/Gil-Werman algorithm, therefore
+ * the number of operations per pixel does not depend on the size of the structuring
+ * element. The windows are clipped to the region, which is the same as extending the edges.
+ * @since 2.1
+ * @author Sune
+ * @see
+ * <a href="https://doi.org/10.1016/0167-8655(92)90069-C">
+ * 	M. van Herk, A fast algorithm for local minimum and maximum filters on rectangular
+ * 	and octagonal kernels
+ * </a>*/
+public final class FastMorphology {
+	
+	private static final int RGB_MASK = 0x00ffffff;
+	
+	private static final IntBinaryOperator MAX = FastMorphology::max;
+	private static final IntBinaryOperator MIN = FastMorphology::min;
+	
+	// Forbid anyone to create an instance of this class
+	private FastMorphology() {
+	}
+	
+	private static final int max(int a, int b) {
+		return Math.max(a & 0xff0000, b & 0xff0000)
+		     | Math.max(a & 0x00ff00, b & 0x00ff00)
+		     | Math.max(a & 0x0000ff, b & 0x0000ff);
+	}
+	
+	private static final int min(int a, int b) {
+		return Math.min(a & 0xff0000, b & 0xff0000)
+		     | Math.min(a & 0x00ff00, b & 0x00ff00)
+		     | Math.min(a & 0x0000ff, b & 0x0000ff);
+	}
+	
+	// The value that does not change the result of the given operation
+	private static final int identity(IntBinaryOperator op) {
+		return op == MAX ? 0 : RGB_MASK;
+	}
+	
+	private static final void checkSize(int sizeX, int sizeY) {
+		if((sizeX <= 0 || sizeY <= 0 || (sizeX & 1) == 0 || (sizeY & 1) == 0))
+			throw new IllegalArgumentException("Size must be odd");
+	}
+	
+	/**
+	 * Dilates the given region of the input, i.e. replaces each pixel by the maximum
+	 * of its neighborhood, and stores the result to the output.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void dilate(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MAX, scheduler);
+			return c;
+		});
+	}
+	
+	/**
+	 * Erodes the given region of the input, i.e. replaces each pixel by the minimum
+	 * of its neighborhood, and stores the result to the output.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void erode(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MIN, scheduler);
+			return c;
+		});
+	}
+	
+	/**
+	 * Opens the given region of the input, i.e. erodes and then dilates it, and stores
+	 * the result to the output. Opening removes bright details smaller than
+	 * the structuring element.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void open(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MIN, scheduler);
+			filter(c, b, c, w, h, sizeX, sizeY, MAX, scheduler);
+			return c;
+		});
+	}
+	
+	/**
+	 * Closes the given region of the input, i.e. dilates and then erodes it, and stores
+	 * the result to the output. Closing removes dark details smaller than
+	 * the structuring element.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void close(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MAX, scheduler);
+			filter(c, b, c, w, h, sizeX, sizeY, MIN, scheduler);
+			return c;
+		});
+	}
+	
+	/**
+	 * Applies the (white) top-hat transform to the given region of the input, i.e. subtracts
+	 * its opening from it, and stores the result to the output. The result contains
+	 * the bright details smaller than the structuring element, it is commonly used
+	 * to remove uneven background.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void topHat(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MIN, scheduler);
+			filter(c, b, c, w, h, sizeX, sizeY, MAX, scheduler);
+			subtract(a, c, c, w * h);
+			return c;
+		});
+	}
+	
+	/**
+	 * Computes the morphological gradient of the given region of the input, i.e. the difference
+	 * of its dilation and erosion, and stores the result to the output. The result
+	 * highlights the edges.
+	 * @param input The input
+	 * @param output The output
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param w The width of the region
+	 * @param h The height of the region
+	 * @param sizeX The width of the structuring element, must be odd
+	 * @param sizeY The height of the structuring element, must be odd
+	 * @param s The stride of both the input and the output, in pixels
+	 * @param format The pixel format of both the input and the output
+	 * @param scheduler The scheduler*/
+	public static final <T extends Buffer> void gradient(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler) {
+		apply(input, output, x, y, w, h, sizeX, sizeY, s, format, scheduler, (a, b, c, d) -> {
+			filter(a, b, c, w, h, sizeX, sizeY, MAX, scheduler);
+			filter(a, b, d, w, h, sizeX, sizeY, MIN, scheduler);
+			subtract(c, d, c, w * h);
+			return c;
+		});
+	}
+	
+	// Reads the region to a plane, computes the result in planes and writes the plane returned
+	// by the computation to the output, with the alpha channel of the input
+	private static final <T extends Buffer> void apply(T input, T output, int x, int y, int w, int h,
+			int sizeX, int sizeY, int s, ImagePixelFormat<T> format, TileScheduler scheduler,
+			PlaneComputation computation) {
+		checkSize(sizeX, sizeY);
+		if((w <= 0 || h <= 0)) return;
+		PlanePool pool = PlanePool.getDefault();
+		int epp = format.getElementsPerPixel();
+		int[] a = pool.acquireInts(w * h), b = null, c = null, d = null;
+		try {
+			b = pool.acquireInts(w * h);
+			c = pool.acquireInts(w * h);
+			d = pool.acquireInts(w * h);
+			for(int j = 0; j < h; ++j)
+				format.getARGB(input, ((y + j) * s + x) * epp, a, j * w, w);
+			int[] result = computation.compute(a, b, c, d);
+			for(int i = 0, l = w * h; i < l; ++i)
+				result[i] = (a[i] & ~RGB_MASK) | (result[i] & RGB_MASK);
+			for(int j = 0; j < h; ++j)
+				format.setARGB(output, ((y + j) * s + x) * epp, result, j * w, w);
+		} finally {
+			pool.release(a);
+			if((b != null)) pool.release(b);
+			if((c != null)) pool.release(c);
+			if((d != null)) pool.release(d);
+		}
+	}
+	
+	// Subtracts the channels of b from the channels of a, the channels of b must not be greater
+	private static final void subtract(int[] a, int[] b, int[] out, int length) {
+		for(int i = 0; i < length; ++i)
+			out[i] = ((a[i] & RGB_MASK) - (b[i] & RGB_MASK)) & RGB_MASK;
+	}
+	
+	// Filters the src plane to the dst plane, using the tmp plane for the rows. The dst plane
+	// can be the same as the src plane.
+	private static final void filter(int[] src, int[] tmp, int[] dst, int w, int h, int sizeX, int sizeY,
+			IntBinaryOperator op, TileScheduler scheduler) {
+		int rx = sizeX / 2, ry = sizeY / 2;
+		scheduler.execute(0, 0, w, h, (tx, ty, tw, th) -> {
+			int[] g = new int[tw + 2 * rx];
+			int[] f = new int[tw + 2 * rx];
+			for(int j = ty, je = ty + th; j < je; ++j)
+				filterRow(src, j * w, w, tx, tx + tw, rx, g, f, tmp, j * w + tx, op);
+		});
+		scheduler.execute(0, 0, w, h, (tx, ty, tw, th) -> {
+			int[] g = new int[(th + 2 * ry) * tw];
+			int[] f = new int[(th + 2 * ry) * tw];
+			filterColumns(tmp, w, h, tx, tw, ty, ty + th, ry, g, f, dst, op);
+		});
+	}
+	
+	// Filters the pixels [from, to) of the row of the given length starting at the offset.
+	// The g and f arrays must have the length of at least (to - from + 2 * r).
+	private static final void filterRow(int[] src, int off, int n, int from, int to, int r,
+			int[] g, int[] f, int[] dst, int dstOff, IntBinaryOperator op) {
+		int k = 2 * r + 1, len = to - from + 2 * r, id = identity(op);
+		// The pixel p of the padded row is the pixel (from - r + p) of the row, g holds
+		// the prefix and f the suffix results of the blocks of size k
+		for(int p = 0, i = from - r, b = 0; p < len; ++p, ++i) {
+			int v = i >= 0 && i < n ? src[off + i] : id;
+			f[p] = v;
+			g[p] = b == 0 ? v : op.applyAsInt(g[p - 1], v);
+			if((++b == k)) b = 0;
+		}
+		for(int p = len - 2, b = (len - 1) % k; p >= 0; --p) {
+			if((b-- != 0)) f[p] = op.applyAsInt(f[p], f[p + 1]);
+			else           b = k - 1;
+		}
+		for(int q = 0, e = to - from; q < e; ++q)
+			dst[dstOff + q] = op.applyAsInt(f[q], g[q + k - 1]);
+	}
+	
+	// Filters the rows [from, to) of the columns [tx, tx + tw) of the plane, the same way
+	// as filterRow, but the blocks are of whole rows of the columns
+	private static final void filterColumns(int[] src, int w, int h, int tx, int tw, int from, int to, int r,
+			int[] g, int[] f, int[] dst, IntBinaryOperator op) {
+		int k = 2 * r + 1, len = to - from + 2 * r, id = identity(op);
+		for(int p = 0, i = from - r, b = 0; p < len; ++p, ++i) {
+			int o = p * tw, s = i * w + tx;
+			boolean inside = i >= 0 && i < h;
+			for(int c = 0; c < tw; ++c) {
+				int v = inside ? src[s + c] : id;
+				f[o + c] = v;
+				g[o + c] = b == 0 ? v : op.applyAsInt(g[o - tw + c], v);
+			}
+			if((++b == k)) b = 0;
+		}
+		for(int p = len - 2, b = (len - 1) % k; p >= 0; --p) {
+			if((b-- == 0)) { b = k - 1; continue; }
+			for(int c = 0, o = p * tw; c < tw; ++c)
+				f[o + c] = op.applyAsInt(f[o + c], f[o + tw + c]);
+		}
+		for(int q = 0, e = to - from; q < e; ++q) {
+			int o = q * tw, t = (q + k - 1) * tw, d = (from + q) * w + tx;
+			for(int c = 0; c < tw; ++c)
+				dst[d + c] = op.applyAsInt(f[o + c], g[t + c]);
+		}
+	}
+	
+	@FunctionalInterface
+	private static interface PlaneComputation {
+		
+		int[] compute(int[] a, int[] b, int[] c, int[] d);
+	}
+}
@@ -3,11 +3,11 @@ package sune.lib.sil2;
 import java.nio.Buffer;
 import java.util.function.Function;
 
-import sune.lib.sil2.IImage.ActionFloat;
-import sune.lib.sil2.IImage.ActionINT;
-import sune.lib.sil2.IImage.ActionRGB;
-import sune.lib.sil2.IImage.Job1D;
-import sune.lib.sil2.IImage.Job2D;
+import sune.lib.sil2.BufferImage.ActionFloat;
+import sune.lib.sil2.BufferImage.ActionINT;
+import sune.lib.sil2.BufferImage.ActionRGB;
+import sune.lib.sil2.BufferImage.Job1D;
+import sune.lib.sil2.BufferImage.Job2D;
 import sune.lib.sil2.format.ImagePixelFormat;
 
 public interface IImageContext<T extends Buffer> {
@@ -18,8 +18,12 @@ public interface IImageContext<T extends Buffer> {
 	void applyActionRGB(ActionRGB<T> action);
 	void applyActionHSL(ActionFloat<T> action);
 	void applyActionHCL(ActionFloat<T> action);
+	void applyLookupTable(LookupTable table);
+	void applyLookupTable(LookupTable3D table);
+	ImagePipeline<T> pipeline();
 	
 	void convolute2d(float[] kernel, int iterations, boolean alphaChannel);
+	void convolute2d(float[] kernelX, float[] kernelY, int iterations, boolean alphaChannel);
 	void applyAreaJob(int x, int y, int width, int height, T input, T output, Job2D<T> job);
 	void applyLineHJob(int x, int y, int width, T input, T output, Job1D<T> job);
 	void applyLineVJob(int x, int y, int height, T input, T output, Job1D<T> job);
@@ -31,6 +35,8 @@ public interface IImageContext<T extends Buffer> {
 	T opRemove();
 	void opOr();
 	void opAnd();
+	void opOr(T buffer);
+	void opAnd(T buffer);
 	void opNot();
 	int[] opIntegral(Function<Integer, Integer> function);
 	
@@ -39,9 +45,19 @@ public interface IImageContext<T extends Buffer> {
 	void setPixels(T pixels);
 	int getPixel(int x, int y);
 	int getPixel(int index);
+	void getPixels(int x, int y, int width, int height, int[] argb, int offset, int scanlineStride);
+	void setPixels(int x, int y, int width, int height, int[] argb, int offset, int scanlineStride);
+	void fillPixels(int x, int y, int width, int height, int argb);
+	void fillSpan(int x, int y, int length, int argb);
+	void getScanline(int x, int y, int length, int[] argb, int offset);
+	void setScanline(int x, int y, int length, int[] argb, int offset);
+	PixelCursor<T> cursor();
+	PixelCursor<T> cursor(int x, int y, int width, int height);
 	
 	ImagePixelFormat<T> getPixelFormat();
 	InternalChannels<T> getChannels();
+	TileScheduler getScheduler();
+	BufferPool getBufferPool();
 	T getPixels();
 	T getBuffer();
 	int getX();
@@ -0,0 +1,36 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+
+import sune.lib.sil2.BufferImage.ActionRGB;
+
+/**
+ * Image operation that computes a new value of each pixel only from the value
+ * of that pixel. Point operations can be chained in an {@linkplain ImagePipeline},
+ * so that the image is processed only once for all of them.*/
+public interface IPointOperation<T extends Buffer> extends IImageOperation<T, Void> {
+	
+	/**
+	 * Gets the action that alters a single pixel for the given context.
+	 * The action must read and write only the given {@code rgb} array.
+	 * @param context The context
+	 * @return The action*/
+	ActionRGB<T> pointAction(IImageContext<T> context);
+	
+	/**
+	 * Gets the lookup table equivalent to {@code this} operation for the given context,
+	 * if the operation can be expressed as a lookup table.
+	 * @param context The context
+	 * @return The lookup table, or {@code null}, if there is none*/
+	default LookupTable lookupTable(IImageContext<T> context) {
+		return null;
+	}
+	
+	@Override
+	default Void execute(IImageContext<T> context) {
+		LookupTable table = lookupTable(context);
+		if((table != null)) context.applyLookupTable(table);
+		else                context.applyActionRGB(pointAction(context));
+		return null;
+	}
+}
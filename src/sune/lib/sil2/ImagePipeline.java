@@ -0,0 +1,157 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import sune.lib.sil2.BufferImage.ActionINT;
+import sune.lib.sil2.BufferImage.ActionRGB;
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Chain of per-pixel operations that are executed in a single pass over an image.
+ * Instead of every operation reading and writing the whole image, each pixel goes
+ * through all the stages at once, so that {@code N} operations cost only one pass.
+ * Consecutive operations that have a lookup table are collapsed into a single table.
+ * <br><br>
+ * All stages must be point-wise, i.e. the value of a pixel must depend only on
+ * the value of that pixel. Actions of type {@linkplain ActionINT} are given the
+ * output buffer as both the input and the output, with the current value of
+ * the pixel stored at the given index.
+ * @author Sune*/
+public final class ImagePipeline<T extends Buffer> {
+	
+	private final IImageContext<T> context;
+	// Either actions or lookup tables, consecutive lookup tables are composed
+	private final List<Object> stages = new ArrayList<>();
+	
+	/**
+	 * Creates a new empty pipeline for the given context.
+	 * @param context The context*/
+	public ImagePipeline(IImageContext<T> context) {
+		if((context == null))
+			throw new IllegalArgumentException("Context cannot be null");
+		this.context = context;
+	}
+	
+	private static final int clamp02(int val) {
+		if((val <= 0x00)) return 0x00;
+		if((val >= 0xff)) return 0xff;
+		return val;
+	}
+	
+	/**
+	 * Adds the given point operation as the next stage.
+	 * @param operation The operation
+	 * @return {@code this} pipeline*/
+	public final ImagePipeline<T> then(IPointOperation<T> operation) {
+		if((operation == null))
+			throw new IllegalArgumentException("Operation cannot be null");
+		LookupTable table = operation.lookupTable(context);
+		if((table != null)) {
+			return then(table);
+		}
+		stages.add(operation.pointAction(context));
+		return this;
+	}
+	
+	/**
+	 * Adds the given lookup table as the next stage.
+	 * @param table The lookup table
+	 * @return {@code this} pipeline*/
+	public final ImagePipeline<T> then(LookupTable table) {
+		if((table == null))
+			throw new IllegalArgumentException("Lookup table cannot be null");
+		int last = stages.size() - 1;
+		if((last >= 0 && stages.get(last) instanceof LookupTable)) {
+			stages.set(last, ((LookupTable) stages.get(last)).then(table));
+		} else {
+			stages.add(table);
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds the given action as the next stage.
+	 * @param action The action
+	 * @return {@code this} pipeline*/
+	public final ImagePipeline<T> thenRGB(ActionRGB<T> action) {
+		if((action == null))
+			throw new IllegalArgumentException("Action cannot be null");
+		stages.add(action);
+		return this;
+	}
+	
+	/**
+	 * Adds the given action as the next stage.
+	 * @param action The action
+	 * @return {@code this} pipeline*/
+	public final ImagePipeline<T> thenINT(ActionINT<T> action) {
+		if((action == null))
+			throw new IllegalArgumentException("Action cannot be null");
+		ImagePixelFormat<T> format = context.getPixelFormat();
+		ActionRGB<T> stage = (rgb, input, output, index, varStore) -> {
+			format.setARGB(output, index, (clamp02(rgb[3]) << 24) |
+			                              (clamp02(rgb[0]) << 16) |
+			                              (clamp02(rgb[1]) <<  8) |
+			                              (clamp02(rgb[2])));
+			action.action(output, output, index, varStore);
+			int argb = format.getARGB(output, index);
+			rgb[0] = (argb >> 16) & 0xff;
+			rgb[1] = (argb >>  8) & 0xff;
+			rgb[2] = (argb)       & 0xff;
+			rgb[3] = (argb >> 24) & 0xff;
+		};
+		stages.add(stage);
+		return this;
+	}
+	
+	/**
+	 * Composes all the stages to a single action. The values are clamped between
+	 * the stages, the same way as they would be if the stages were executed separately.
+	 * @return The composed action*/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public final ActionRGB<T> compose() {
+		ActionRGB<T>[] actions = new ActionRGB[stages.size()];
+		for(int i = 0, l = actions.length; i < l; ++i) {
+			Object stage = stages.get(i);
+			actions[i] = stage instanceof LookupTable
+							? ((LookupTable) stage).action()
+							: (ActionRGB<T>) stage;
+		}
+		switch(actions.length) {
+			case 0: return (rgb, input, output, index, varStore) -> {};
+			case 1: return actions[0];
+		}
+		return (rgb, input, output, index, varStore) -> {
+			actions[0].action(rgb, input, output, index, varStore);
+			for(int i = 1, l = actions.length; i < l; ++i) {
+				rgb[0] = clamp02(rgb[0]);
+				rgb[1] = clamp02(rgb[1]);
+				rgb[2] = clamp02(rgb[2]);
+				rgb[3] = clamp02(rgb[3]);
+				actions[i].action(rgb, input, output, index, varStore);
+			}
+		};
+	}
+	
+	/**
+	 * Executes all the stages in a single pass over the image.*/
+	public final void execute() {
+		if((stages.isEmpty()))
+			return; // Nothing to do
+		if((stages.size() == 1 && stages.get(0) instanceof LookupTable)) {
+			// Only table lookups, no need to unpack the pixels
+			context.applyLookupTable((LookupTable) stages.get(0));
+			return;
+		}
+		context.applyActionRGB(compose());
+	}
+	
+	/**
+	 * Gets the number of stages.
+	 * @return The number of stages*/
+	public final int size() {
+		return stages.size();
+	}
+}
@@ -11,6 +11,9 @@ import sune.lib.sil2.format.ImagePixelFormats;
  * Contains static methods used for image manipulation.*/
 public final class ImageUtils {
 	
+	// The number of pixels processed at once when combining images
+	private static final int COMBINE_ROW_LENGTH = 4096;
+	
 	/**
 	 * Helper class for holding information about an image data, particularly
 	 * that is the pixel array and its width and height.*/
@@ -164,6 +167,12 @@ public final class ImageUtils {
 			throw new IllegalArgumentException("Invalid source coordinates");
 		if((dsti >= dst.capacity()))
 			throw new IllegalArgumentException("Invalid destination coordinates");
+		if(!src.hasArray() || !dst.hasArray()) {
+			for(int iy = 0; iy < height; ++iy, srci += srcStride, dsti += dstStride) {
+				BufferUtils.buffercopy(src, srci, dst, dsti, width);
+			}
+			return;
+		}
 		Object asrc = src.array(), adst = dst.array();
 		for(int iy = 0; iy < height; ++iy, srci += srcStride, dsti += dstStride) {
 			// Copy whole rows instead of the individual pixels
@@ -915,11 +924,18 @@ public final class ImageUtils {
 		if((background.capacity() != result.capacity()))
 			throw new IllegalArgumentException("Invalid result array size");
 		int epp = format.getElementsPerPixel();
-		for(int i = 0, l = foreground.capacity(); i < l; i += epp) {
+		int len = Math.min(COMBINE_ROW_LENGTH, foreground.capacity() / epp);
+		int[] fg = new int[len];
+		int[] bg = new int[len];
+		for(int i = 0, l = foreground.capacity() / epp, n; i < l; i += n) {
+			n = Math.min(len, l - i);
+			format.getARGB(foreground, i * epp, fg, 0, n);
+			format.getARGB(background, i * epp, bg, 0, n);
 			// Always blend both colors, no conditions should be here,
 			// internal checks are done in the blend method itself.
-			format.setARGB(result, i, Colors.blend(format.getARGB(foreground, i),
-			                                       format.getARGB(background, i)));
+			for(int k = 0; k < n; ++k)
+				fg[k] = Colors.blend(fg[k], bg[k]);
+			format.setARGB(result, i * epp, fg, 0, n);
 		}
 	}
 	
@@ -10,6 +10,9 @@ final class InternalChannels<T extends Buffer> {
 	
 	// TODO: Update JavaDoc
 	
+	// The number of pixels read or written at once
+	private static final int ROW_LENGTH = 4096;
+	
 	private final ImagePixelFormat<T> format;
 	
 	private final int shiftB;
@@ -116,8 +119,17 @@ final class InternalChannels<T extends Buffer> {
 	 * @param alpha The output for alpha channel*/
 	public final void separate(T input, byte[] red, byte[] green, byte[] blue, byte[] alpha) {
 		int epp = format.getElementsPerPixel();
-		for(int i = 0, k = 0, l = input.capacity(), color; i < l; i+=epp, ++k) {
-			color    = format.getARGB(input, i);
+		int[] row = new int[Math.min(ROW_LENGTH, input.capacity() / epp)];
+		for(int k = 0, l = input.capacity() / epp, n; k < l; k += n) {
+			n = Math.min(row.length, l - k);
+			format.getARGB(input, k * epp, row, 0, n);
+			unpack(row, n, red, green, blue, alpha, k);
+		}
+	}
+	
+	private final void unpack(int[] row, int length, byte[] red, byte[] green, byte[] blue, byte[] alpha, int k) {
+		for(int j = 0, color; j < length; ++j, ++k) {
+			color    = row[j];
 			red  [k] = (byte) ((color >> shiftR) & 0xff);
 			green[k] = (byte) ((color >> shiftG) & 0xff);
 			blue [k] = (byte) ((color >> shiftB) & 0xff);
@@ -125,6 +137,15 @@ final class InternalChannels<T extends Buffer> {
 		}
 	}
 	
+	private final void pack(byte[] red, byte[] green, byte[] blue, byte[] alpha, int k, int[] row, int length) {
+		for(int j = 0; j < length; ++j, ++k) {
+			row[j] = ((alpha[k] & 0xff) << shiftA) |
+			         ((red  [k] & 0xff) << shiftR) |
+			         ((green[k] & 0xff) << shiftG) |
+			         ((blue [k] & 0xff) << shiftB);
+		}
+	}
+	
 	/**
 	 * Separates red, green, blue and alpha channels from all values in the {@code input}
 	 * array and stores the result in equivalent output array.
@@ -160,20 +181,11 @@ final class InternalChannels<T extends Buffer> {
 	
 	public final void separate(T input, byte[] red, byte[] green, byte[] blue, byte[] alpha,
 			int x, int y, int width, int height, int stride) {
-		int epp = format.getElementsPerPixel(), sk = stride - width, si = sk * epp;
-		for(int r = height, c = width, k = y * stride + x, i = k * epp, color;; i+=epp, ++k) {
-			color    = format.getARGB(input, i);
-			red  [k] = (byte) ((color >> shiftR) & 0xff);
-			green[k] = (byte) ((color >> shiftG) & 0xff);
-			blue [k] = (byte) ((color >> shiftB) & 0xff);
-			alpha[k] = (byte) ((color >> shiftA) & 0xff);
-			if((--c == 0)) {
-				c  = width;
-				k += sk;
-				i += si;
-				if((--r == 0))
-					break;
-			}
+		int epp = format.getElementsPerPixel();
+		int[] row = new int[width];
+		for(int r = height, k = y * stride + x; r-- != 0; k += stride) {
+			format.getARGB(input, k * epp, row, 0, width);
+			unpack(row, width, red, green, blue, alpha, k);
 		}
 	}
 	
@@ -381,11 +393,11 @@ final class InternalChannels<T extends Buffer> {
 	 * @param output The output*/
 	public final void join(byte[] red, byte[] green, byte[] blue, byte[] alpha, T output) {
 		int epp = format.getElementsPerPixel();
-		for(int i = 0, k = 0, l = output.capacity(); i < l; i+=epp, ++k) {
-			format.setARGB(output, i, ((alpha[k] & 0xff) << shiftA) |
-			                          ((red  [k] & 0xff) << shiftR) |
-			                          ((green[k] & 0xff) << shiftG) |
-			                          ((blue [k] & 0xff) << shiftB));
+		int[] row = new int[Math.min(ROW_LENGTH, output.capacity() / epp)];
+		for(int k = 0, l = output.capacity() / epp, n; k < l; k += n) {
+			n = Math.min(row.length, l - k);
+			pack(red, green, blue, alpha, k, row, n);
+			format.setARGB(output, k * epp, row, 0, n);
 		}
 	}
 	
@@ -427,20 +439,12 @@ final class InternalChannels<T extends Buffer> {
 	
 	public final void join(byte[] red, byte[] green, byte[] blue, byte[] alpha, T output,
 			int x, int y, int width, int height, int stride) {
-		int epp = format.getElementsPerPixel(), sk = stride - width, si = sk * epp;
-  		for(int r = height, c = width, k = y * stride + x, i = k * epp;; i+=epp, ++k) {
-  			format.setARGB(output, i, ((alpha[k] & 0xff) << shiftA) |
-  			                          ((red  [k] & 0xff) << shiftR) |
-  			                          ((green[k] & 0xff) << shiftG) |
-  			                          ((blue [k] & 0xff) << shiftB));
-  			if((--c == 0)) {
-  				c  = width;
-  				k += sk;
-  				i += si;
-  				if((--r == 0))
-  					break;
-  			}
-  		}
+		int epp = format.getElementsPerPixel();
+		int[] row = new int[width];
+		for(int r = height, k = y * stride + x; r-- != 0; k += stride) {
+			pack(red, green, blue, alpha, k, row, width);
+			format.setARGB(output, k * epp, row, 0, width);
+		}
 	}
 	
 	public final void joinPre(byte[] red, byte[] green, byte[] blue, byte[] alpha, T output,
@@ -0,0 +1,213 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+import java.util.function.IntUnaryOperator;
+
+import sune.lib.sil2.BufferImage.ActionRGB;
+
+/**
+ * Per-channel lookup table of 8-bit values. The value of each output channel
+ * is looked up in the table of that channel using the value of its source channel,
+ * which is usually the same channel. Lookup tables are closed under composition,
+ * therefore any chain of them can be collapsed into a single table.
+ * <br><br>
+ * Instances are immutable.
+ * @author Sune*/
+public final class LookupTable {
+	
+	/**
+	 * The index of the red channel.*/
+	public static final int RED = 0;
+	/**
+	 * The index of the green channel.*/
+	public static final int GREEN = 1;
+	/**
+	 * The index of the blue channel.*/
+	public static final int BLUE = 2;
+	/**
+	 * The index of the alpha channel.*/
+	public static final int ALPHA = 3;
+	
+	// The shifts of the channels in an ARGB int color
+	private static final int[] SHIFTS = { 16, 8, 0, 24 };
+	
+	private static LookupTable identity;
+	
+	// Values of the channels, each table of 256 values is followed by the one of the next channel
+	private final int[] values;
+	// Tables of the channels with values already shifted to their positions in an ARGB int color
+	private final int[] shifted;
+	private final int[] sources;
+	
+	private LookupTable(int[] values, int[] sources) {
+		this.values = values;
+		this.sources = sources;
+		this.shifted = new int[values.length];
+		for(int c = 0, i = 0; c < 4; ++c) {
+			for(int v = 0; v < 256; ++v, ++i)
+				shifted[i] = values[i] << SHIFTS[c];
+		}
+	}
+	
+	private static final int clamp02(int val) {
+		if((val <= 0x00)) return 0x00;
+		if((val >= 0xff)) return 0xff;
+		return val;
+	}
+	
+	private static final int checkChannel(int channel) {
+		if((channel < RED || channel > ALPHA))
+			throw new IllegalArgumentException("Invalid channel: " + channel);
+		return channel;
+	}
+	
+	/**
+	 * Gets the lookup table that does not change any value.
+	 * @return The identity lookup table*/
+	public static final LookupTable identity() {
+		return identity == null
+					? identity = of(null, null, null, null)
+					: identity;
+	}
+	
+	/**
+	 * Creates a new lookup table from the given functions of each channel.
+	 * The results of the functions are clamped to the range {@code [0, 255]}.
+	 * @param red The function of the red channel, {@code null} for the identity
+	 * @param green The function of the green channel, {@code null} for the identity
+	 * @param blue The function of the blue channel, {@code null} for the identity
+	 * @param alpha The function of the alpha channel, {@code null} for the identity
+	 * @return The lookup table*/
+	public static final LookupTable of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue,
+			IntUnaryOperator alpha) {
+		return of(red, green, blue, alpha, RED, GREEN, BLUE, ALPHA);
+	}
+	
+	/**
+	 * Creates a new lookup table from the given functions of each channel, where the value
+	 * of each channel is computed from the value of the given source channel.
+	 * The results of the functions are clamped to the range {@code [0, 255]}.
+	 * @param red The function of the red channel, {@code null} for the identity
+	 * @param green The function of the green channel, {@code null} for the identity
+	 * @param blue The function of the blue channel, {@code null} for the identity
+	 * @param alpha The function of the alpha channel, {@code null} for the identity
+	 * @param sourceRed The source channel of the red channel
+	 * @param sourceGreen The source channel of the green channel
+	 * @param sourceBlue The source channel of the blue channel
+	 * @param sourceAlpha The source channel of the alpha channel
+	 * @return The lookup table*/
+	public static final LookupTable of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue,
+			IntUnaryOperator alpha, int sourceRed, int sourceGreen, int sourceBlue, int sourceAlpha) {
+		IntUnaryOperator[] functions = { red, green, blue, alpha };
+		int[] values = new int[4 * 256];
+		for(int c = 0, i = 0; c < 4; ++c) {
+			IntUnaryOperator function = functions[c];
+			for(int v = 0; v < 256; ++v, ++i)
+				values[i] = function == null ? v : clamp02(function.applyAsInt(v));
+		}
+		return new LookupTable(values, new int[] {
+			checkChannel(sourceRed), checkChannel(sourceGreen),
+			checkChannel(sourceBlue), checkChannel(sourceAlpha)
+		});
+	}
+	
+	/**
+	 * Creates a new lookup table that applies the given function to the red,
+	 * green and blue channel and does not change the alpha channel.
+	 * @param function The function
+	 * @return The lookup table*/
+	public static final LookupTable rgb(IntUnaryOperator function) {
+		return of(function, function, function, null);
+	}
+	
+	/**
+	 * Creates a new lookup table that applies the given function to the alpha
+	 * channel and does not change the other channels.
+	 * @param function The function
+	 * @return The lookup table*/
+	public static final LookupTable alpha(IntUnaryOperator function) {
+		return of(null, null, null, function);
+	}
+	
+	/**
+	 * Composes {@code this} lookup table with the given one, so that the result
+	 * is the same as applying {@code this} lookup table and then the given one.
+	 * @param next The lookup table to apply after {@code this} one
+	 * @return The composed lookup table*/
+	public final LookupTable then(LookupTable next) {
+		if((next == null))
+			throw new IllegalArgumentException("Lookup table cannot be null");
+		int[] values = new int[4 * 256];
+		int[] srcs = new int[4];
+		for(int c = 0, i = 0; c < 4; ++c) {
+			int src = next.sources[c];
+			srcs[c] = sources[src];
+			for(int v = 0; v < 256; ++v, ++i)
+				values[i] = next.values[(c << 8) + this.values[(src << 8) + v]];
+		}
+		return new LookupTable(values, srcs);
+	}
+	
+	/**
+	 * Applies {@code this} lookup table to the given ARGB color.
+	 * @param argb The color
+	 * @return The new color*/
+	public final int apply(int argb) {
+		return shifted[      ((argb >>> SHIFTS[sources[0]]) & 0xff)] |
+		       shifted[256 + ((argb >>> SHIFTS[sources[1]]) & 0xff)] |
+		       shifted[512 + ((argb >>> SHIFTS[sources[2]]) & 0xff)] |
+		       shifted[768 + ((argb >>> SHIFTS[sources[3]]) & 0xff)];
+	}
+	
+	/**
+	 * Applies {@code this} lookup table to the given ARGB colors in place.
+	 * @param argb The colors
+	 * @param offset The index of the first color
+	 * @param length The number of colors*/
+	public final void apply(int[] argb, int offset, int length) {
+		final int[] tab = shifted;
+		final int sr = SHIFTS[sources[0]], sg = SHIFTS[sources[1]];
+		final int sb = SHIFTS[sources[2]], sa = SHIFTS[sources[3]];
+		for(int i = offset, l = offset + length, c; i < l; ++i) {
+			c = argb[i];
+			argb[i] = tab[      ((c >>> sr) & 0xff)] |
+			          tab[256 + ((c >>> sg) & 0xff)] |
+			          tab[512 + ((c >>> sb) & 0xff)] |
+			          tab[768 + ((c >>> sa) & 0xff)];
+		}
+	}
+	
+	/**
+	 * Creates an action that applies {@code this} lookup table to the values
+	 * of the {@code rgb} array, which must be in the range {@code [0, 255]}.
+	 * @return The action*/
+	public final <T extends Buffer> ActionRGB<T> action() {
+		final int[] vals = values;
+		final int sr = sources[0], sg = sources[1];
+		final int sb = sources[2], sa = sources[3];
+		return (rgb, input, output, index, varStore) -> {
+			int r = rgb[sr], g = rgb[sg], b = rgb[sb], a = rgb[sa];
+			rgb[0] = vals[      r];
+			rgb[1] = vals[256 + g];
+			rgb[2] = vals[512 + b];
+			rgb[3] = vals[768 + a];
+		};
+	}
+	
+	/**
+	 * Gets the value of the given channel for the given value of its source channel.
+	 * @param channel The channel
+	 * @param value The value of the source channel
+	 * @return The value*/
+	public final int get(int channel, int value) {
+		return values[(checkChannel(channel) << 8) + (value & 0xff)];
+	}
+	
+	/**
+	 * Gets the source channel of the given channel.
+	 * @param channel The channel
+	 * @return The source channel*/
+	public final int getSource(int channel) {
+		return sources[checkChannel(channel)];
+	}
+}
@@ -0,0 +1,354 @@
+package sune.lib.sil2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import sune.lib.sil2.BufferImage.ActionFloat;
+
+/**
+ * Three-dimensional color lookup table, i.e. a cube of output colors sampled
+ * on a regular grid of input colors. Colors between the grid points are computed
+ * using tetrahedral interpolation. Any color transformation that depends only
+ * on the red, green and blue channel of a pixel can be baked into a lookup table
+ * once and then applied to each pixel for the price of a few multiplications.
+ * The alpha channel is not changed.
+ * <br><br>
+ * Lookup tables can be read from and written to files in the {@code .cube} format.
+ * <br><br>
+ * Instances are immutable.
+ * @author Sune*/
+public final class LookupTable3D {
+	
+	/**
+	 * The default number of grid points per axis.*/
+	public static final int DEFAULT_SIZE = 65;
+	/**
+	 * The maximum number of grid points per axis.*/
+	public static final int MAX_SIZE = 256;
+	
+	private static final float F2I = 255.0f;
+	private static final float I2F = 1.0f / 255.0f;
+	
+	// The number of fractional bits of the output colors and of the interpolation weights
+	private static final int VALUE_BITS  = 4;
+	private static final int WEIGHT_BITS = 12;
+	private static final int WEIGHT_ONE  = 1 << WEIGHT_BITS;
+	private static final int ROUND_SHIFT = VALUE_BITS + WEIGHT_BITS;
+	private static final int ROUND_HALF  = 1 << (ROUND_SHIFT - 1);
+	
+	private final int size;
+	// Output colors in range 0 - 255, red index changes fastest, then green, then blue
+	private final float[] data;
+	// Output colors in fixed point, clamped to range 0 - 255
+	private final int[] values;
+	// The offsets in the values array of the lower grid points and the interpolation weights
+	// of the upper grid points for each input value of each channel
+	private final int[] indexes;
+	private final int[] weights;
+	// The domain of the input colors, in range 0 - 1
+	private final float[] domainMin;
+	private final float[] domainMax;
+	
+	private LookupTable3D(int size, float[] data, float[] domainMin, float[] domainMax) {
+		this.size = size;
+		this.data = data;
+		this.domainMin = domainMin;
+		this.domainMax = domainMax;
+		this.values = new int[data.length];
+		for(int i = 0, l = data.length; i < l; ++i)
+			values[i] = FastMath.round(Math.max(0.0f, Math.min(F2I, data[i])) * (1 << VALUE_BITS));
+		this.indexes = new int[3 * 256];
+		this.weights = new int[3 * 256];
+		int[] strides = { 3, 3 * size, 3 * size * size };
+		for(int c = 0, i = 0; c < 3; ++c) {
+			float range = domainMax[c] - domainMin[c];
+			for(int v = 0; v < 256; ++v, ++i) {
+				// The position in the grid, colors outside of the domain are clamped to the domain
+				float pos = (v * I2F - domainMin[c]) / range * (size - 1);
+				pos = Math.max(0.0f, Math.min(size - 1, pos));
+				int lower = Math.min((int) pos, size - 2);
+				indexes[i] = lower * strides[c];
+				weights[i] = FastMath.round((pos - lower) * WEIGHT_ONE);
+			}
+		}
+	}
+	
+	/**
+	 * Function that alters a color given by its red, green and blue component.*/
+	@FunctionalInterface
+	public static interface ColorFunction {
+	
+		/**
+		 * Alters the given color in place.
+		 * @param rgb The red, green and blue component of the color,
+		 * each in range {@code 0} - {@code 1}*/
+		void apply(float[] rgb);
+	}
+	
+	private static final int checkSize(int size) {
+		if((size < 2 || size > MAX_SIZE))
+			throw new IllegalArgumentException("Size must be between 2 and " + MAX_SIZE);
+		return size;
+	}
+	
+	private static final int clamp02(int val) {
+		if((val <= 0x00)) return 0x00;
+		if((val >= 0xff)) return 0xff;
+		return val;
+	}
+	
+	/**
+	 * Bakes the given function into a new lookup table.
+	 * @param size The number of grid points per axis
+	 * @param function The function
+	 * @return The lookup table*/
+	public static final LookupTable3D bake(int size, ColorFunction function) {
+		if((function == null))
+			throw new IllegalArgumentException("Function cannot be null");
+		checkSize(size);
+		float[] data = new float[size * size * size * 3];
+		float[] rgb = new float[3];
+		float step = 1.0f / (size - 1);
+		for(int b = 0, i = 0; b < size; ++b) {
+			for(int g = 0; g < size; ++g) {
+				for(int r = 0; r < size; ++r, i += 3) {
+					rgb[0] = r * step;
+					rgb[1] = g * step;
+					rgb[2] = b * step;
+					function.apply(rgb);
+					data[i]     = rgb[0] * F2I;
+					data[i + 1] = rgb[1] * F2I;
+					data[i + 2] = rgb[2] * F2I;
+				}
+			}
+		}
+		return new LookupTable3D(size, data, new float[] { 0.0f, 0.0f, 0.0f }, new float[] { 1.0f, 1.0f, 1.0f });
+	}
+	
+	private static final <T extends Buffer> ColorFunction floatFunction(ActionFloat<T> action,
+			BufferImage.ConversionAction<int[], float[]> convForward,
+			BufferImage.ConversionAction<float[], int[]> convInverse) {
+		if((action == null))
+			throw new IllegalArgumentException("Action cannot be null");
+		final int[]   irgb = new int[3];
+		final float[] arr  = new float[4];
+		return (rgb) -> {
+			irgb[0] = FastMath.round(rgb[0] * F2I);
+			irgb[1] = FastMath.round(rgb[1] * F2I);
+			irgb[2] = FastMath.round(rgb[2] * F2I);
+			convForward.convert(irgb, arr);
+			arr[3] = 1.0f;
+			action.action(arr, null, null, -1, null);
+			convInverse.convert(arr, irgb);
+			rgb[0] = clamp02(irgb[0]) * I2F;
+			rgb[1] = clamp02(irgb[1]) * I2F;
+			rgb[2] = clamp02(irgb[2]) * I2F;
+		};
+	}
+	
+	/**
+	 * Bakes the given action, the same as used in {@linkplain IImageContext#applyActionHSL(ActionFloat)},
+	 * into a new lookup table. The action is given {@code null} buffers, index of {@code -1}
+	 * and {@code null} variable store. Changes of the alpha component are ignored.
+	 * @param size The number of grid points per axis
+	 * @param action The action
+	 * @return The lookup table*/
+	public static final <T extends Buffer> LookupTable3D bakeHSL(int size, ActionFloat<T> action) {
+		return bake(size, floatFunction(action,
+			(rgb, hsl) -> Colors.rgb2hsl(rgb[0], rgb[1], rgb[2], hsl),
+			(hsl, rgb) -> Colors.hsl2rgb(hsl[0], hsl[1], hsl[2], rgb)));
+	}
+	
+	/**
+	 * Bakes the given action, the same as used in {@linkplain IImageContext#applyActionHCL(ActionFloat)},
+	 * into a new lookup table. The action is given {@code null} buffers, index of {@code -1}
+	 * and {@code null} variable store. Changes of the alpha component are ignored.
+	 * @param size The number of grid points per axis
+	 * @param action The action
+	 * @return The lookup table*/
+	public static final <T extends Buffer> LookupTable3D bakeHCL(int size, ActionFloat<T> action) {
+		return bake(size, floatFunction(action,
+			(rgb, hcl) -> Colors.rgb2hcl(rgb[0], rgb[1], rgb[2], hcl),
+			(hcl, rgb) -> Colors.hcl2rgb(hcl[0], hcl[1], hcl[2], rgb)));
+	}
+	
+	/**
+	 * Applies {@code this} lookup table to the given ARGB color.
+	 * @param argb The color
+	 * @return The new color*/
+	public final int apply(int argb) {
+		final int[] d = values;
+		int r = (argb >> 16) & 0xff, g = (argb >> 8) & 0xff, b = argb & 0xff;
+		int dr = weights[r], dg = weights[256 + g], db = weights[512 + b];
+		// Offsets of the neighbor grid points in the values array
+		int sr = 3, sg = 3 * size, sb = 3 * size * size;
+		int c000 = indexes[r] + indexes[256 + g] + indexes[512 + b], c111 = c000 + sr + sg + sb;
+		// Tetrahedral interpolation: the cube is split to six tetrahedra along its main diagonal,
+		// the point is then interpolated from the four vertices of the one it lies in
+		int c1, c2, w0, w1, w2, w3;
+		if((dr > dg)) {
+			if((dg > db)) {
+				c1 = c000 + sr; c2 = c1 + sg; w0 = WEIGHT_ONE - dr; w1 = dr - dg; w2 = dg - db; w3 = db;
+			} else if((dr > db)) {
+				c1 = c000 + sr; c2 = c1 + sb; w0 = WEIGHT_ONE - dr; w1 = dr - db; w2 = db - dg; w3 = dg;
+			} else {
+				c1 = c000 + sb; c2 = c1 + sr; w0 = WEIGHT_ONE - db; w1 = db - dr; w2 = dr - dg; w3 = dg;
+			}
+		} else {
+			if((db > dg)) {
+				c1 = c000 + sb; c2 = c1 + sg; w0 = WEIGHT_ONE - db; w1 = db - dg; w2 = dg - dr; w3 = dr;
+			} else if((db > dr)) {
+				c1 = c000 + sg; c2 = c1 + sb; w0 = WEIGHT_ONE - dg; w1 = dg - db; w2 = db - dr; w3 = dr;
+			} else {
+				c1 = c000 + sg; c2 = c1 + sr; w0 = WEIGHT_ONE - dg; w1 = dg - dr; w2 = dr - db; w3 = db;
+			}
+		}
+		// The weights sum to one and the values are in range, so no clamping is needed
+		r = (w0 * d[c000]     + w1 * d[c1]     + w2 * d[c2]     + w3 * d[c111]     + ROUND_HALF) >> ROUND_SHIFT;
+		g = (w0 * d[c000 + 1] + w1 * d[c1 + 1] + w2 * d[c2 + 1] + w3 * d[c111 + 1] + ROUND_HALF) >> ROUND_SHIFT;
+		b = (w0 * d[c000 + 2] + w1 * d[c1 + 2] + w2 * d[c2 + 2] + w3 * d[c111 + 2] + ROUND_HALF) >> ROUND_SHIFT;
+		return (argb & 0xff000000) | (r << 16) | (g << 8) | b;
+	}
+	
+	/**
+	 * Applies {@code this} lookup table to the given ARGB colors in place.
+	 * @param argb The colors
+	 * @param offset The index of the first color
+	 * @param length The number of colors*/
+	public final void apply(int[] argb, int offset, int length) {
+		for(int i = offset, l = offset + length; i < l; ++i)
+			argb[i] = apply(argb[i]);
+	}
+	
+	/**
+	 * Reads a lookup table from the given file in the {@code .cube} format.
+	 * @param path The path of the file
+	 * @return The lookup table
+	 * @throws IOException If the file cannot be read or is not a valid 3D lookup table*/
+	public static final LookupTable3D read(Path path) throws IOException {
+		try(Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return read(reader);
+		}
+	}
+	
+	/**
+	 * Reads a lookup table in the {@code .cube} format from the given reader.
+	 * @param reader The reader
+	 * @return The lookup table
+	 * @throws IOException If the input cannot be read or is not a valid 3D lookup table*/
+	public static final LookupTable3D read(Reader reader) throws IOException {
+		BufferedReader br = reader instanceof BufferedReader
+								? (BufferedReader) reader
+								: new BufferedReader(reader);
+		int size = 0, count = 0;
+		float[] data = null;
+		float[] domainMin = { 0.0f, 0.0f, 0.0f };
+		float[] domainMax = { 1.0f, 1.0f, 1.0f };
+		for(String line; (line = br.readLine()) != null;) {
+			line = line.trim();
+			if((line.isEmpty() || line.startsWith("#")))
+				continue;
+			String[] parts = line.split("\\s+");
+			String keyword = parts[0];
+			if((keyword.equals("TITLE"))) {
+				continue;
+			} else if((keyword.equals("LUT_1D_SIZE"))) {
+				throw new IOException("1D lookup tables are not supported");
+			} else if((keyword.equals("LUT_3D_SIZE"))) {
+				if((data != null))
+					throw new IOException("Duplicate size of the lookup table");
+				try {
+					size = checkSize(Integer.parseInt(parts[1]));
+				} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+					throw new IOException("Invalid size of the lookup table: " + line, ex);
+				}
+				data = new float[size * size * size * 3];
+			} else if((keyword.equals("DOMAIN_MIN"))) {
+				parseTriple(parts, domainMin, line);
+			} else if((keyword.equals("DOMAIN_MAX"))) {
+				parseTriple(parts, domainMax, line);
+			} else if((Character.isLetter(keyword.charAt(0)))) {
+				continue; // Unknown keyword, ignore it
+			} else {
+				if((data == null))
+					throw new IOException("Data before the size of the lookup table");
+				if((count >= data.length))
+					throw new IOException("Too many data lines");
+				float[] rgb = new float[3];
+				parseTriple(parts, rgb, line);
+				data[count]     = rgb[0] * F2I;
+				data[count + 1] = rgb[1] * F2I;
+				data[count + 2] = rgb[2] * F2I;
+				count += 3;
+			}
+		}
+		if((data == null))
+			throw new IOException("Missing size of the lookup table");
+		if((count != data.length))
+			throw new IOException("Not enough data lines");
+		for(int c = 0; c < 3; ++c) {
+			if((domainMax[c] <= domainMin[c]))
+				throw new IOException("Invalid domain of the lookup table");
+		}
+		return new LookupTable3D(size, data, domainMin, domainMax);
+	}
+	
+	private static final void parseTriple(String[] parts, float[] values, String line) throws IOException {
+		int k = Character.isLetter(parts[0].charAt(0)) ? 1 : 0;
+		if((parts.length - k != 3))
+			throw new IOException("Expected three values: " + line);
+		try {
+			for(int i = 0; i < 3; ++i)
+				values[i] = Float.parseFloat(parts[k + i]);
+		} catch(NumberFormatException ex) {
+			throw new IOException("Invalid value: " + line, ex);
+		}
+	}
+	
+	/**
+	 * Writes {@code this} lookup table to the given file in the {@code .cube} format.
+	 * @param path The path of the file
+	 * @throws IOException If the file cannot be written*/
+	public final void write(Path path) throws IOException {
+		try(Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			write(writer);
+		}
+	}
+	
+	/**
+	 * Writes {@code this} lookup table in the {@code .cube} format to the given writer.
+	 * @param writer The writer
+	 * @throws IOException If the output cannot be written*/
+	public final void write(Writer writer) throws IOException {
+		BufferedWriter bw = writer instanceof BufferedWriter
+								? (BufferedWriter) writer
+								: new BufferedWriter(writer);
+		bw.write("LUT_3D_SIZE " + size);
+		bw.newLine();
+		bw.write(String.format(Locale.ROOT, "DOMAIN_MIN %.6f %.6f %.6f", domainMin[0], domainMin[1], domainMin[2]));
+		bw.newLine();
+		bw.write(String.format(Locale.ROOT, "DOMAIN_MAX %.6f %.6f %.6f", domainMax[0], domainMax[1], domainMax[2]));
+		bw.newLine();
+		for(int i = 0, l = data.length; i < l; i += 3) {
+			bw.write(String.format(Locale.ROOT, "%.6f %.6f %.6f",
+				data[i] * I2F, data[i + 1] * I2F, data[i + 2] * I2F));
+			bw.newLine();
+		}
+		bw.flush();
+	}
+	
+	/**
+	 * Gets the number of grid points per axis.
+	 * @return The number of grid points*/
+	public final int getSize() {
+		return size;
+	}
+}
@@ -1,10 +1,11 @@
 package sune.lib.sil2;
 
 import java.nio.Buffer;
+import java.util.Arrays;
 
 public final class NBufferStrategy<T extends Buffer> implements BufferStrategy<T> {
 	
-	private final T        original;
+	private T              original;
 	private final Buffer[] buffers;
 	
 	public NBufferStrategy(T original, int numOfBuffers) {
@@ -47,4 +48,29 @@ public final class NBufferStrategy<T extends Buffer> implements BufferStrategy<T
 	public int getBuffersCount() {
 		return buffers.length;
 	}
+	
+	@Override
+	public boolean canRotate() {
+		return buffers.length > 1;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void rotate() {
+		if(!canRotate())
+			throw new UnsupportedOperationException("Nothing to rotate");
+		// Move the buffers up the line, i.e. the original takes the last buffer,
+		// and the original becomes the buffer at index 1, the pixels.
+		T _orig = original;
+		original = (T) buffers[buffers.length - 1];
+		for(int i = buffers.length - 1; i > 1; --i)
+			buffers[i] = buffers[i - 1];
+		buffers[1] = _orig;
+	}
+	
+	@Override
+	public void dispose() {
+		// Heap buffers, just let them be garbage collected
+		Arrays.fill(buffers, null);
+	}
 }
\ No newline at end of file
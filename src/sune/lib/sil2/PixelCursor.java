@@ -0,0 +1,118 @@
+package sune.lib.sil2;
+
+import java.nio.Buffer;
+
+import sune.lib.sil2.format.ImagePixelFormat;
+
+/**
+ * Cursor for sequential access to the pixels of a region of an image. The cursor
+ * keeps the index of the current pixel, so moving to the next pixel does not require
+ * any index computation. The pixels are visited from left to right, from top to bottom.
+ * <br><br>
+ * A cursor is not thread-safe, each thread should obtain its own cursor. A cursor is
+ * meant for a single batch of accesses, it is bound to the pixels the image had when
+ * the cursor was created. After an operation is applied to the image or the image is
+ * flushed, a new cursor must be obtained. The whole region of the cursor is marked
+ * as changed on the first write.
+ * @param <T> The type of an underlying buffer
+ * @see IImageContext#cursor(int, int, int, int)
+ * @since 2.1
+ * @author Sune*/
+public final class PixelCursor<T extends Buffer> {
+	
+	private final BufferImage<T> image;
+	private final ImagePixelFormat<T> format;
+	private final T pixels;
+	private final int epp;
+	private final int stride;
+	// The region in the source image
+	private final int sx, sy, ex, ey;
+	
+	private int x;
+	private int y;
+	private int index;
+	private boolean written;
+	
+	PixelCursor(BufferImage<T> image, ImagePixelFormat<T> format, T pixels, int stride,
+			int x, int y, int width, int height) {
+		this.image  = image;
+		this.format = format;
+		this.pixels = pixels;
+		this.epp    = format.getElementsPerPixel();
+		this.stride = stride;
+		this.sx = x;
+		this.sy = y;
+		this.ex = x + width;
+		this.ey = y + height;
+		reset();
+	}
+	
+	/**
+	 * Moves {@code this} cursor to the first pixel of its region.*/
+	public final void reset() {
+		x = sx;
+		y = sy;
+		index = (y * stride + x) * epp;
+	}
+	
+	/**
+	 * Moves {@code this} cursor to the given position.
+	 * @param x The x-coordinate, relative to the region of {@code this} cursor
+	 * @param y The y-coordinate, relative to the region of {@code this} cursor*/
+	public final void moveTo(int x, int y) {
+		if((x < 0 || y < 0 || x >= ex - sx || y >= ey - sy))
+			throw new IllegalArgumentException("Position out of the region");
+		this.x = sx + x;
+		this.y = sy + y;
+		index = (this.y * stride + this.x) * epp;
+	}
+	
+	/**
+	 * Moves {@code this} cursor to the next pixel, wrapping to the next row
+	 * at the end of a row.
+	 * @return {@code true}, if the cursor is at a pixel of its region,
+	 * {@code false}, if it has moved past the last pixel*/
+	public final boolean next() {
+		index += epp;
+		if((++x == ex)) {
+			x = sx;
+			index += (stride - (ex - sx)) * epp;
+			return ++y < ey;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the color of the current pixel.
+	 * @return The color, as an ARGB int*/
+	public final int get() {
+		return format.getARGB(pixels, index);
+	}
+	
+	/**
+	 * Sets the color of the current pixel.
+	 * @param argb The color, as an ARGB int*/
+	public final void set(int argb) {
+		if(!written) {
+			image.markDirty(sx, sy, ex - sx, ey - sy);
+			written = true;
+		}
+		format.setARGB(pixels, index, argb);
+	}
+	
+	/**
+	 * Gets the x-coordinate of the current pixel, relative to the region
+	 * of {@code this} cursor.
+	 * @return The x-coordinate*/
+	public final int getX() {
+		return x - sx;
+	}
+	
+	/**
+	 * Gets the y-coordinate of the current pixel, relative to the region
+	 * of {@code this} cursor.
+	 * @return The y-coordinate*/
+	public final int getY() {
+		return y - sy;
+	}
+}
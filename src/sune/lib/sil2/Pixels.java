@@ -37,6 +37,18 @@ public final class Pixels {
 	 */
 	public static final void copy(Buffer src, int srcx, int srcy, int srcStride, Buffer dst, int dstx,
 			int dsty, int dstStride, int width, int height, int epp) {
+		if(!src.hasArray() || !dst.hasArray()) {
+			// Direct buffers, copy the rows through the buffers themselves
+			for(int isrc = srcy  * srcStride + srcx * epp,
+					idst = dsty  * dstStride + dstx * epp,
+					inum = width * epp;
+					height-- != 0;
+					isrc += srcStride,
+					idst += dstStride) {
+				BufferUtils.buffercopy(src, isrc, dst, idst, inum);
+			}
+			return;
+		}
 		copy(src.array(), srcx, srcy, srcStride, dst.array(), dstx, dsty, dstStride, width, height, epp);
 	}
 	
@@ -0,0 +1,276 @@
+package sune.lib.sil2;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of reusable scratch planes, i.e. arrays of channel values, so that operations
+ * that need temporary planes do not have to allocate them on every call.
+ * The planes are grouped to buckets by their length rounded up to a power of two,
+ * therefore an acquired plane can be longer than requested. Planes longer than
+ * the largest bucket are allocated with exactly the requested length and are not
+ * retained, since rounding them up would waste too much memory. Each bucket retains
+ * only a limited number of released planes and all the buckets together only up to
+ * a memory budget, the rest is left to the garbage collector.
+ * <br><br>
+ * All methods are thread-safe.
+ * @author Sune*/
+public final class PlanePool {
+	
+	/**
+	 * The default maximum number of planes retained in a bucket.*/
+	public static final int MAX_RETAINED_PLANES = 16;
+	
+	/**
+	 * The default maximum number of bytes of planes retained by a pool.*/
+	public static final long MAX_RETAINED_BYTES = 256L << 20;
+	
+	// The length of planes in the smallest bucket is 2^MIN_BUCKET, in the largest one 2^MAX_BUCKET
+	private static final int MIN_BUCKET = 12;
+	private static final int MAX_BUCKET = 22;
+	private static final int NUM_OF_BUCKETS = MAX_BUCKET - MIN_BUCKET + 1;
+	
+	private static final PlanePool DEFAULT_POOL = new PlanePool();
+	
+	private final Bucket<byte[]>[] bytes;
+	private final Bucket<int[]>[] ints;
+	private final Bucket<float[]>[] floats;
+	private final int maxRetainedPlanes;
+	private final long maxRetainedBytes;
+	private final AtomicLong retainedBytes = new AtomicLong();
+	private final LongAdder allocatedBytes = new LongAdder();
+	private final ThreadLocal<long[]> threadAllocatedBytes = ThreadLocal.withInitial(() -> new long[1]);
+	
+	/**
+	 * Creates a new empty pool.*/
+	public PlanePool() {
+		this(MAX_RETAINED_PLANES, MAX_RETAINED_BYTES);
+	}
+	
+	/**
+	 * Creates a new empty pool.
+	 * @param maxRetainedPlanes The maximum number of planes retained in a bucket*/
+	public PlanePool(int maxRetainedPlanes) {
+		this(maxRetainedPlanes, MAX_RETAINED_BYTES);
+	}
+	
+	/**
+	 * Creates a new empty pool.
+	 * @param maxRetainedPlanes The maximum number of planes retained in a bucket
+	 * @param maxRetainedBytes The maximum number of bytes of planes retained in all buckets*/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public PlanePool(int maxRetainedPlanes, long maxRetainedBytes) {
+		if((maxRetainedPlanes < 0))
+			throw new IllegalArgumentException("Maximum number of retained planes must be >= 0");
+		if((maxRetainedBytes < 0L))
+			throw new IllegalArgumentException("Maximum number of retained bytes must be >= 0");
+		this.bytes = new Bucket[NUM_OF_BUCKETS];
+		this.ints = new Bucket[NUM_OF_BUCKETS];
+		this.floats = new Bucket[NUM_OF_BUCKETS];
+		for(int i = 0; i < NUM_OF_BUCKETS; ++i) {
+			bytes [i] = new Bucket<>();
+			ints  [i] = new Bucket<>();
+			floats[i] = new Bucket<>();
+		}
+		this.maxRetainedPlanes = maxRetainedPlanes;
+		this.maxRetainedBytes = maxRetainedBytes;
+	}
+	
+	/**
+	 * Gets the default pool shared by the library.
+	 * @return The default pool*/
+	public static final PlanePool getDefault() {
+		return DEFAULT_POOL;
+	}
+	
+	// Returns the bucket of planes of the given length, or -1, if they are not pooled
+	private static final int bucket(int length) {
+		if((length < 0))
+			throw new IllegalArgumentException("Length must be >= 0");
+		if((length > 1 << MAX_BUCKET))
+			return -1;
+		return Math.max(0, 32 - Integer.numberOfLeadingZeros(Math.max(length - 1, 0)) - MIN_BUCKET);
+	}
+	
+	private static final int bucketLength(int bucket) {
+		return 1 << (bucket + MIN_BUCKET);
+	}
+	
+	private final void allocated(long size) {
+		allocatedBytes.add(size);
+		threadAllocatedBytes.get()[0] += size;
+	}
+	
+	private final <A> A poll(Bucket<A> bucket, long size) {
+		A plane = bucket.poll();
+		if((plane != null))
+			retainedBytes.addAndGet(-size);
+		return plane;
+	}
+	
+	private final <A> void offer(Bucket<A> bucket, A plane, long size) {
+		if((retainedBytes.addAndGet(size) > maxRetainedBytes
+				|| !bucket.offer(plane, maxRetainedPlanes)))
+			retainedBytes.addAndGet(-size); // Over the budget, leave it to the GC
+	}
+	
+	/**
+	 * Acquires a byte plane of at least the given length. The contents of the plane
+	 * are undefined. The plane should be released when it is no longer needed.
+	 * @param length The minimum length of the plane
+	 * @return The plane*/
+	public final byte[] acquireBytes(int length) {
+		int index = bucket(length);
+		byte[] plane = index < 0 ? null : poll(bytes[index], bucketLength(index));
+		if((plane == null)) {
+			plane = new byte[index < 0 ? length : bucketLength(index)];
+			allocated(plane.length);
+		}
+		return plane;
+	}
+	
+	/**
+	 * Acquires an int plane of at least the given length. The contents of the plane
+	 * are undefined. The plane should be released when it is no longer needed.
+	 * @param length The minimum length of the plane
+	 * @return The plane*/
+	public final int[] acquireInts(int length) {
+		int index = bucket(length);
+		int[] plane = index < 0 ? null : poll(ints[index], bucketLength(index) * 4L);
+		if((plane == null)) {
+			plane = new int[index < 0 ? length : bucketLength(index)];
+			allocated(plane.length * 4L);
+		}
+		return plane;
+	}
+	
+	/**
+	 * Acquires a float plane of at least the given length. The contents of the plane
+	 * are undefined. The plane should be released when it is no longer needed.
+	 * @param length The minimum length of the plane
+	 * @return The plane*/
+	public final float[] acquireFloats(int length) {
+		int index = bucket(length);
+		float[] plane = index < 0 ? null : poll(floats[index], bucketLength(index) * 4L);
+		if((plane == null)) {
+			plane = new float[index < 0 ? length : bucketLength(index)];
+			allocated(plane.length * 4L);
+		}
+		return plane;
+	}
+	
+	/**
+	 * Releases the given byte plane, so that it can be acquired again.
+	 * @param plane The plane, previously acquired from {@code this} pool*/
+	public final void release(byte[] plane) {
+		if((plane == null))
+			throw new IllegalArgumentException("Plane cannot be null");
+		int index = bucket(plane.length);
+		if((index >= 0 && plane.length == bucketLength(index)))
+			offer(bytes[index], plane, plane.length);
+	}
+	
+	/**
+	 * Releases the given int plane, so that it can be acquired again.
+	 * @param plane The plane, previously acquired from {@code this} pool*/
+	public final void release(int[] plane) {
+		if((plane == null))
+			throw new IllegalArgumentException("Plane cannot be null");
+		int index = bucket(plane.length);
+		if((index >= 0 && plane.length == bucketLength(index)))
+			offer(ints[index], plane, plane.length * 4L);
+	}
+	
+	/**
+	 * Releases the given float plane, so that it can be acquired again.
+	 * @param plane The plane, previously acquired from {@code this} pool*/
+	public final void release(float[] plane) {
+		if((plane == null))
+			throw new IllegalArgumentException("Plane cannot be null");
+		int index = bucket(plane.length);
+		if((index >= 0 && plane.length == bucketLength(index)))
+			offer(floats[index], plane, plane.length * 4L);
+	}
+	
+	/**
+	 * Releases all retained planes.*/
+	public final void clear() {
+		for(int i = 0; i < NUM_OF_BUCKETS; ++i) {
+			long length = bucketLength(i);
+			retainedBytes.addAndGet(-(bytes [i].clear() * length));
+			retainedBytes.addAndGet(-(ints  [i].clear() * length * 4L));
+			retainedBytes.addAndGet(-(floats[i].clear() * length * 4L));
+		}
+	}
+	
+	/**
+	 * Gets the total number of bytes allocated by {@code this} pool, i.e. the sizes
+	 * of planes that had to be created since no retained plane could be reused.
+	 * @return The number of allocated bytes*/
+	public final long getAllocatedBytes() {
+		return allocatedBytes.sum();
+	}
+	
+	/**
+	 * Gets the number of bytes allocated by {@code this} pool for the calling thread.
+	 * The difference of values before and after an operation is the number of bytes
+	 * the operation allocated.
+	 * @return The number of allocated bytes*/
+	public final long getThreadAllocatedBytes() {
+		return threadAllocatedBytes.get()[0];
+	}
+	
+	/**
+	 * Gets the maximum number of planes retained in a bucket.
+	 * @return The maximum number of planes*/
+	public final int getMaxRetainedPlanes() {
+		return maxRetainedPlanes;
+	}
+	
+	/**
+	 * Gets the number of bytes of the planes currently retained by {@code this} pool.
+	 * @return The number of retained bytes*/
+	public final long getRetainedBytes() {
+		return retainedBytes.get();
+	}
+	
+	/**
+	 * Gets the maximum number of bytes of planes retained by {@code this} pool.
+	 * @return The maximum number of bytes*/
+	public final long getMaxRetainedBytes() {
+		return maxRetainedBytes;
+	}
+	
+	private static final class Bucket<A> {
+		
+		private final ConcurrentLinkedDeque<A> planes = new ConcurrentLinkedDeque<>();
+		private final AtomicInteger size = new AtomicInteger();
+		
+		public final A poll() {
+			// The most recently released plane is most likely in the cache
+			A plane = planes.pollFirst();
+			if((plane != null))
+				size.decrementAndGet();
+			return plane;
+		}
+		
+		public final boolean offer(A plane, int max) {
+			if((size.incrementAndGet() > max)) {
+				size.decrementAndGet();
+				return false; // Too many planes, leave it to the GC
+			}
+			planes.offerFirst(plane);
+			return true;
+		}
+		
+		// Returns the number of the removed planes
+		public final int clear() {
+			int count = 0;
+			for(; planes.pollFirst() != null; ++count)
+				size.decrementAndGet();
+			return count;
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package sune.lib.sil2;
 
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.function.IntPredicate;
 
 public final class StructuresConfiguration {
 	
@@ -13,12 +12,17 @@ public final class StructuresConfiguration {
 	
 	public final int valueTrue;
 	public final int valueFalse;
-	public final BiFunction<Integer, Integer, Boolean> conditionHas;
-	public final Function<Integer, Boolean> conditionCan;
+	/**
+	 * Tests a pixel value (first argument) against a structure value (second argument).
+	 * If it holds for any non-blank structure value, the pixel is set to {@code valueFalse}.*/
+	public final IntBiPredicate conditionHas;
+	/**
+	 * Tests whether a pixel value can be changed at all.*/
+	public final IntPredicate conditionCan;
 	
 	public StructuresConfiguration(int valueTrue, int valueFalse,
-			BiFunction<Integer, Integer, Boolean> conditionHas,
-			Function<Integer, Boolean> conditionCan) {
+			IntBiPredicate conditionHas,
+			IntPredicate conditionCan) {
 		this.valueTrue    = valueTrue;
 		this.valueFalse   = valueFalse;
 		this.conditionHas = conditionHas;
@@ -27,7 +31,17 @@ public final class StructuresConfiguration {
 	
 	public static final StructuresConfiguration getDefault() {
 		return (DEFAULT == null
-					? DEFAULT = new StructuresConfiguration(FOREGROUND, BACKGROUND, (a, b) -> !a.equals(b), (a) -> true)
+					? DEFAULT = new StructuresConfiguration(FOREGROUND, BACKGROUND, (a, b) -> a != b, (a) -> true)
 					: DEFAULT);
 	}
+	
+	/**
+	 * Predicate of two {@code int} values, so that testing the pixels does not box them.
+	 * @since 2.1
+	 * @author Sune*/
+	@FunctionalInterface
+	public static interface IntBiPredicate {
+		
+		boolean test(int a, int b);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package sune.lib.sil2;
+
+import static sune.lib.sil2.StructuresConfiguration.BACKGROUND;
+import static sune.lib.sil2.StructuresConfiguration.BLANK;
+import static sune.lib.sil2.StructuresConfiguration.FOREGROUND;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+
+/**
+ * Thins a binary image by a sequence of 3x3 structures until it no longer changes.
+ * A pass applies the structures in order, each removing, at once, the foreground pixels
+ * whose neighborhood matches it, the same as {@code Morphology.Thin} does. The result is
+ * therefore the same as of repeating the thinning by the structures until nothing changes.
+ * <br><br>
+ * The structures are compiled into lookup tables indexed by the 3x3 neighborhood of a pixel.
+ * The first pass tests all the foreground pixels, the following ones only the pixels next
+ * to the pixels removed since the structure was last applied, since the neighborhood of any
+ * other pixel has not changed. The cost of the later passes is thus proportional to
+ * the number of the removed pixels, not to the size of the image.
+ * <br><br>
+ * Foreground pixels are the pixels with the blue channel of 255, all the other pixels
+ * are background, the image should already be binarized. The pixels outside the image
+ * are treated the same as in {@code Morphology}, i.e. the edge pixels are extended.
+ * @since 2.1
+ * @author Sune*/
+public final class Thinning {
+	
+	private static final int COLOR_FOREGROUND = 0xffffffff;
+	private static final int COLOR_BACKGROUND = 0xff000000;
+	
+	// The bit of the center pixel in a neighborhood
+	private static final int CENTER = 1 << 4;
+	
+	// Forbid anyone to create an instance of this class
+	private Thinning() {
+	}
+	
+	// Compiles the structure into a table of the neighborhoods whose center pixel is removed.
+	// The bit (3 * (dy + 1) + (dx + 1)) of a neighborhood is the pixel at (x + dx, y + dy).
+	private static final boolean[] compile(int[] structure) {
+		if((structure.length != 9))
+			throw new IllegalArgumentException("Structure must be 3x3");
+		int care = 0, value = 0;
+		for(int k = 0; k < 9; ++k) {
+			switch(structure[k]) {
+				case FOREGROUND: care |= 1 << k; value |= 1 << k; break;
+				case BACKGROUND: care |= 1 << k; break;
+				case BLANK: break;
+				default:
+					throw new IllegalArgumentException("Invalid structure value: " + structure[k]);
+			}
+		}
+		boolean[] table = new boolean[512];
+		for(int code = 0; code < 512; ++code)
+			table[code] = (code & CENTER) != 0 && (code & care) == value;
+		return table;
+	}
+	
+	private static final int neighborhood(byte[] plane, int w, int h, int x, int y) {
+		int x0 = x > 0 ? x - 1 : x, x1 = x < w - 1 ? x + 1 : x;
+		int r0 = (y > 0 ? y - 1 : y) * w, r1 = y * w, r2 = (y < h - 1 ? y + 1 : y) * w;
+		return (plane[r0 + x0])      | (plane[r0 + x] << 1) | (plane[r0 + x1] << 2)
+		     | (plane[r1 + x0] << 3) | (plane[r1 + x] << 4) | (plane[r1 + x1] << 5)
+		     | (plane[r2 + x0] << 6) | (plane[r2 + x] << 7) | (plane[r2 + x1] << 8);
+	}
+	
+	/**
+	 * Thins the given image by the given structures until it no longer changes,
+	 * or until the given number of passes is done.
+	 * @param <T> The type of an underlying buffer
+	 * @param image The image
+	 * @param maxPasses The maximum number of passes, or a non-positive number
+	 * for no limit
+	 * @param structures The 3x3 structures, containing only the values {@code FOREGROUND},
+	 * {@code BACKGROUND} and {@code BLANK} of {@link StructuresConfiguration}
+	 * @return The number of the removed pixels*/
+	public static final <T extends Buffer> int thin(IImageContext<T> image, int maxPasses, int[]... structures) {
+		int n = structures.length;
+		boolean[][] tables = new boolean[n][];
+		for(int s = 0; s < n; ++s)
+			tables[s] = compile(structures[s]);
+		int w = image.getWidth(), h = image.getHeight(), l = w * h;
+		PlanePool pool = PlanePool.getDefault();
+		byte[] plane = pool.acquireBytes(l);
+		int[] removed = null, marks = null, candidates = null;
+		try {
+			removed    = pool.acquireInts(l);
+			marks      = pool.acquireInts(l);
+			candidates = pool.acquireInts(l);
+			int[] row = new int[w];
+			for(int y = 0; y < h; ++y) {
+				image.getScanline(0, y, w, row, 0);
+				for(int x = 0, k = y * w; x < w; ++x, ++k)
+					plane[k] = (byte) ((row[x] & 0xff) == FOREGROUND ? 1 : 0);
+			}
+			Arrays.fill(marks, 0, l, 0);
+			// The removed pixels are logged, a structure has to test only the neighbors
+			// of the pixels removed since the position in the log when it was last applied
+			int count = 0, stamp = 0;
+			int[] last = new int[n];
+			for(int pass = 0; maxPasses <= 0 || pass < maxPasses; ++pass) {
+				int before = count;
+				for(int s = 0; s < n; ++s) {
+					boolean[] table = tables[s];
+					int m = 0;
+					if((pass == 0)) {
+						for(int i = 0; i < l; ++i) {
+							if((plane[i] != 0 && table[neighborhood(plane, w, h, i % w, i / w)]))
+								candidates[m++] = i;
+						}
+					} else {
+						++stamp;
+						for(int e = last[s], c = count; e < c; ++e) {
+							int i = removed[e], x = i % w, y = i / w;
+							for(int ny = Math.max(0, y - 1), ey = Math.min(h - 1, y + 1); ny <= ey; ++ny) {
+								for(int nx = Math.max(0, x - 1), ex = Math.min(w - 1, x + 1); nx <= ex; ++nx) {
+									int k = ny * w + nx;
+									if((marks[k] == stamp || plane[k] == 0)) continue;
+									marks[k] = stamp;
+									if((table[neighborhood(plane, w, h, nx, ny)]))
+										candidates[m++] = k;
+								}
+							}
+						}
+					}
+					// The removals of this structure are also new to it the next time
+					last[s] = count;
+					// Remove all the matched pixels at once
+					for(int j = 0; j < m; ++j) {
+						plane[candidates[j]] = 0;
+						removed[count++] = candidates[j];
+					}
+				}
+				if((count == before))
+					break; // Converged
+			}
+			for(int y = 0; y < h; ++y) {
+				for(int x = 0, k = y * w; x < w; ++x, ++k)
+					row[x] = plane[k] != 0 ? COLOR_FOREGROUND : COLOR_BACKGROUND;
+				image.setScanline(0, y, w, row, 0);
+			}
+			return count;
+		} finally {
+			pool.release(plane);
+			if((removed    != null)) pool.release(removed);
+			if((marks      != null)) pool.release(marks);
+			if((candidates != null)) pool.release(candidates);
+		}
+	}
+}
@@ -1,8 +1,8 @@
 package sune.lib.sil2;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * Class used for thread management. Contains methods used for executing
@@ -13,7 +13,7 @@ import java.util.concurrent.ThreadFactory;
  * @author Sune*/
 final class Threads {
 	
-	private static final class DaemonThreadFactory implements ThreadFactory {
+	private static final class DaemonThreadFactory implements ForkJoinWorkerThreadFactory {
 		
 		public static final DaemonThreadFactory INSTANCE = new DaemonThreadFactory();
 		
@@ -21,17 +21,17 @@ final class Threads {
 		}
 		
 		@Override
-		public final Thread newThread(Runnable r) {
-			Thread thread = new Thread(r);
+		public final ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
 			thread.setDaemon(true);
 			return thread;
 		}
 	}
 	
-	private static final ExecutorService THREADS = newDeamonThreadPool();
-	private static final ExecutorService newDeamonThreadPool() {
+	private static final ForkJoinPool THREADS = newDeamonThreadPool();
+	private static final ForkJoinPool newDeamonThreadPool() {
 		int numOfCores = Runtime.getRuntime().availableProcessors();
-		return Executors.newFixedThreadPool(numOfCores, DaemonThreadFactory.INSTANCE);
+		return new ForkJoinPool(numOfCores, DaemonThreadFactory.INSTANCE, null, false);
 	}
 	
 	// Forbid anyone to create an instance of this class
@@ -47,6 +47,13 @@ final class Threads {
 		}
 	}
 	
+	/**
+	 * Gets the work-stealing pool used for executing the tasks.
+	 * @return The pool*/
+	public static final ForkJoinPool pool() {
+		return THREADS;
+	}
+	
 	/**
 	 * Attempts to stop forcibly all running threads.*/
 	public static final void destroy() {
@@ -0,0 +1,233 @@
+package sune.lib.sil2;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes jobs over rectangular areas of an image split into tiles.
+ * The area is recursively split along its longer side until the tiles
+ * are small enough, the tiles are then executed in a work-stealing
+ * {@linkplain ForkJoinPool}. The size of a tile is chosen adaptively based
+ * on the size of the area and the parallelism of the pool, so that small
+ * areas are processed directly in the calling thread and large areas are
+ * split into enough tiles to keep all the threads busy.
+ * <br><br>
+ * The calling thread does not just wait for the work to be done,
+ * it processes the tiles as well.
+ * @author Sune*/
+public final class TileScheduler {
+	
+	/**
+	 * The default minimum number of pixels in a tile.*/
+	public static final int MIN_TILE_AREA = 64 * 64;
+	
+	// The number of tiles per a thread, so that the work can be balanced
+	private static final int TILES_PER_THREAD = 4;
+	
+	// The directions in which an area can be split
+	private static final int SPLIT_BOTH    = 0;
+	private static final int SPLIT_ROWS    = 1;
+	private static final int SPLIT_COLUMNS = 2;
+	
+	private static final TileScheduler DEFAULT_SCHEDULER = new TileScheduler(Threads.pool());
+	
+	private final ForkJoinPool pool;
+	private final int minTileArea;
+	
+	/**
+	 * Creates a new instance that executes the tiles in the given pool.
+	 * @param pool The pool*/
+	public TileScheduler(ForkJoinPool pool) {
+		this(pool, MIN_TILE_AREA);
+	}
+	
+	/**
+	 * Creates a new instance that executes the tiles in the given pool.
+	 * @param pool The pool
+	 * @param minTileArea The minimum number of pixels in a tile*/
+	public TileScheduler(ForkJoinPool pool, int minTileArea) {
+		if((pool == null))
+			throw new IllegalArgumentException("Pool cannot be null");
+		if((minTileArea <= 0))
+			throw new IllegalArgumentException("Minimum tile area must be > 0");
+		this.pool = pool;
+		this.minTileArea = minTileArea;
+	}
+	
+	/**
+	 * Gets the default scheduler that uses the library's shared pool.
+	 * @return The default scheduler*/
+	public static final TileScheduler getDefault() {
+		return DEFAULT_SCHEDULER;
+	}
+	
+	@FunctionalInterface
+	public static interface TileJob {
+		void execute(int x, int y, int width, int height);
+	}
+	
+	private final long tileArea(long area) {
+		return Math.max(minTileArea, area / (pool.getParallelism() * TILES_PER_THREAD));
+	}
+	
+	// Returns whether the given area should be split along the x-axis, or -1 if it cannot be split
+	private static final int splitAxis(int width, int height, int split) {
+		boolean splitWidth = split == SPLIT_BOTH ? width >= height : split == SPLIT_COLUMNS;
+		if((splitWidth ? width : height) <= 1) return -1;
+		return splitWidth ? 1 : 0;
+	}
+	
+	/**
+	 * Executes the given job over the given area. This method returns
+	 * after all the tiles of the area have been processed.
+	 * @param x The x-coordinate of the area
+	 * @param y The y-coordinate of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @param job The job*/
+	public final void execute(int x, int y, int width, int height, TileJob job) {
+		execute(x, y, width, height, job, SPLIT_BOTH);
+	}
+	
+	/**
+	 * Executes the given job over the given area split only to horizontal strips,
+	 * i.e. each tile contains whole rows of the area. This method returns after all
+	 * the tiles of the area have been processed.
+	 * @param x The x-coordinate of the area
+	 * @param y The y-coordinate of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @param job The job*/
+	public final void executeRows(int x, int y, int width, int height, TileJob job) {
+		execute(x, y, width, height, job, SPLIT_ROWS);
+	}
+	
+	/**
+	 * Executes the given job over the given area split only to vertical strips,
+	 * i.e. each tile contains whole columns of the area. This method returns after all
+	 * the tiles of the area have been processed.
+	 * @param x The x-coordinate of the area
+	 * @param y The y-coordinate of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @param job The job*/
+	public final void executeColumns(int x, int y, int width, int height, TileJob job) {
+		execute(x, y, width, height, job, SPLIT_COLUMNS);
+	}
+	
+	private final void execute(int x, int y, int width, int height, TileJob job, int split) {
+		if((width <= 0 || height <= 0))
+			return; // Nothing to do
+		long area = (long) width * height;
+		long tileArea = tileArea(area);
+		// Small areas are not worth the thread hand-off
+		if((area <= tileArea || pool.getParallelism() <= 1 || pool.isShutdown())) {
+			job.execute(x, y, width, height);
+			return;
+		}
+		if((ForkJoinTask.getPool() == pool)) {
+			// Already in the pool, just fork the tiles
+			new TileTask(job, x, y, width, height, tileArea, split).invoke();
+			return;
+		}
+		executeExternal(job, x, y, width, height, tileArea, split);
+	}
+	
+	// Executes the given area from a thread that is not in the pool. The first
+	// half of every split is processed by the calling thread, the second half
+	// is given to the pool. When the calling thread is done, it takes back all
+	// the halves that have not been started yet.
+	private final void executeExternal(TileJob job, int x, int y, int width, int height, long tileArea,
+			int split) {
+		Deque<TileTask> pending = new ArrayDeque<>();
+		for(int axis; (long) width * height > tileArea && (axis = splitAxis(width, height, split)) >= 0;) {
+			TileTask task;
+			if((axis == 1)) {
+				int half = width / 2;
+				task = new TileTask(job, x + half, y, width - half, height, tileArea, split);
+				width = half;
+			} else {
+				int half = height / 2;
+				task = new TileTask(job, x, y + half, width, height - half, tileArea, split);
+				height = half;
+			}
+			pool.execute(task);
+			pending.push(task);
+		}
+		job.execute(x, y, width, height);
+		while(!pending.isEmpty()) {
+			TileTask task = pending.pop();
+			if((task.claim())) {
+				executeExternal(job, task.x, task.y, task.width, task.height, tileArea, split);
+			} else {
+				task.join();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the pool in which the tiles are executed.
+	 * @return The pool*/
+	public final ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	/**
+	 * Gets the minimum number of pixels in a tile.
+	 * @return The minimum number of pixels*/
+	public final int getMinTileArea() {
+		return minTileArea;
+	}
+	
+	private static final class TileTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 8209384207402611493L;
+		
+		private final TileJob job;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+		private final long tileArea;
+		private final int split;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		
+		public TileTask(TileJob job, int x, int y, int width, int height, long tileArea, int split) {
+			this.job = job;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.tileArea = tileArea;
+			this.split = split;
+		}
+		
+		public final boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+		
+		@Override
+		protected final void compute() {
+			// The task could have been already taken by the calling thread
+			if(!claim()) return;
+			int axis;
+			if(((long) width * height <= tileArea || (axis = splitAxis(width, height, split)) < 0)) {
+				job.execute(x, y, width, height);
+				return;
+			}
+			if((axis == 1)) {
+				int half = width / 2;
+				invokeAll(new TileTask(job, x, y, half, height, tileArea, split),
+				          new TileTask(job, x + half, y, width - half, height, tileArea, split));
+			} else {
+				int half = height / 2;
+				invokeAll(new TileTask(job, x, y, width, half, tileArea, split),
+				          new TileTask(job, x, y + half, width, height - half, tileArea, split));
+			}
+		}
+	}
+}
\ No newline at end of file
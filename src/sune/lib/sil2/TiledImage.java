@@ -0,0 +1,444 @@
+package sune.lib.sil2;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Vector;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import sune.lib.sil2.format.ImageFormat;
+import sune.lib.sil2.format.ImagePixelFormat;
+import sune.lib.sil2.format.ImagePixelFormats;
+
+/**
+ * Image that is too large to be held in memory at once. The pixels, as ARGB ints,
+ * are stored in a memory-mapped scratch file and the image is decoded, processed
+ * and encoded by parts, so that the used memory is bounded by the size of a tile,
+ * not by the size of the image. The image size is limited only by the size
+ * of the scratch file.
+ * <br><br>
+ * Operations are applied to each tile separately. Operations whose result for a pixel
+ * depends on its neighborhood, such as convolution or blur, need the tiles to overlap,
+ * the overlap (halo) must be at least the radius of the neighborhood. The result is then
+ * the same as if the operation was applied to the whole image at once. Operations that
+ * depend on the whole image, such as histogram equalization, cannot be applied this way.
+ * <br><br>
+ * Reading an image reads the regions of it one by one, which is efficient for formats
+ * whose readers support it (e.g. tiled TIFF), other readers have to decode the image
+ * up to the region each time. Writing is streamed for writers that request the image
+ * by parts (e.g. PNG, TIFF), others (e.g. JPEG) request the whole image at once.
+ * <br><br>
+ * This class is not thread-safe.
+ * @since 2.1
+ * @author Sune*/
+public final class TiledImage implements AutoCloseable {
+	
+	/**
+	 * The default size of a tile, in pixels.*/
+	public static final int DEFAULT_TILE_SIZE = 1024;
+	
+	// The maximum number of pixels decoded or encoded at once
+	private static final int MAX_BAND_PIXELS = 1 << 24;
+	
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final Path directory;
+	// The current pixels and the pixels an operation writes to
+	private Storage pixels;
+	private Storage buffer;
+	
+	/**
+	 * Creates a new transparent image of the given size, with the scratch files
+	 * in the default temporary directory.
+	 * @param width The width
+	 * @param height The height
+	 * @throws IOException if the scratch file cannot be created*/
+	public TiledImage(int width, int height) throws IOException {
+		this(width, height, DEFAULT_TILE_SIZE, null);
+	}
+	
+	/**
+	 * Creates a new transparent image of the given size.
+	 * @param width The width
+	 * @param height The height
+	 * @param tileSize The size of a tile, in pixels
+	 * @param directory The directory for the scratch files, or {@code null}
+	 * for the default temporary directory
+	 * @throws IOException if the scratch file cannot be created*/
+	public TiledImage(int width, int height, int tileSize, Path directory) throws IOException {
+		if((width <= 0 || height <= 0))
+			throw new IllegalArgumentException("Invalid image size");
+		if((tileSize <= 0))
+			throw new IllegalArgumentException("Tile size must be > 0");
+		this.width     = width;
+		this.height    = height;
+		this.tileSize  = tileSize;
+		this.directory = directory;
+		this.pixels    = new Storage();
+	}
+	
+	/**
+	 * Reads the image from the given file by parts.
+	 * @param file The file
+	 * @return The image
+	 * @throws IOException if an I/O error occurs.*/
+	public static final TiledImage open(Path file) throws IOException {
+		return open(file, DEFAULT_TILE_SIZE, null);
+	}
+	
+	/**
+	 * Reads the image from the given file by parts.
+	 * @param file The file
+	 * @param tileSize The size of a tile, in pixels
+	 * @param directory The directory for the scratch files, or {@code null}
+	 * for the default temporary directory
+	 * @return The image
+	 * @throws IOException if an I/O error occurs.*/
+	public static final TiledImage open(Path file, int tileSize, Path directory) throws IOException {
+		Objects.requireNonNull(file, "File cannot be null");
+		try(ImageInputStream stream = ImageIO.createImageInputStream(file.toFile())) {
+			if((stream == null))
+				throw new IOException("Unable to open file: " + file);
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if(!readers.hasNext())
+				throw new IOException("Unsupported image format: " + file);
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, false, true);
+				TiledImage image = new TiledImage(reader.getWidth(0), reader.getHeight(0), tileSize, directory);
+				try {
+					image.read(reader);
+				} catch(IOException | RuntimeException ex) {
+					image.close();
+					throw ex;
+				}
+				return image;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	private final int bandHeight() {
+		return Math.max(1, Math.min(tileSize, MAX_BAND_PIXELS / width));
+	}
+	
+	private final void read(ImageReader reader) throws IOException {
+		ImageReadParam param = reader.getDefaultReadParam();
+		int rows = bandHeight();
+		int[] argb = new int[rows * width];
+		for(int y = 0; y < height; y += rows) {
+			int h = Math.min(rows, height - y);
+			param.setSourceRegion(new Rectangle(0, y, width, h));
+			BufferedImage part = reader.read(0, param);
+			part.getRGB(0, 0, width, h, argb, 0, width);
+			setPixels(0, y, width, h, argb, 0, width);
+		}
+	}
+	
+	/**
+	 * Writes {@code this} image as the given image format to the given file by parts.
+	 * @param format The image format, must not be an indexed one
+	 * @param file The file
+	 * @return {@code true}, if successfully written, otherwise {@code false}
+	 * @throws IOException if an I/O error occurs.*/
+	public final boolean save(ImageFormat format, Path file) throws IOException {
+		Objects.requireNonNull(format, "Image format cannot be null");
+		Objects.requireNonNull(file,   "File cannot be null");
+		ColorModel model;
+		switch(format.getImageType()) {
+			case BufferedImage.TYPE_INT_ARGB:
+				model = ColorModel.getRGBdefault();
+				break;
+			case BufferedImage.TYPE_INT_RGB:
+				model = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported image format: " + format);
+		}
+		try(StorageImage image = new StorageImage(model)) {
+			return ImageIO.write(image, format.getImageIOName(), file.toFile());
+		}
+	}
+	
+	/**
+	 * Applies the given operation to {@code this} image, tile by tile. The result
+	 * of the operation is ignored.
+	 * @param operation The operation
+	 * @param halo The number of pixels by which the tiles overlap, at least
+	 * the radius of the neighborhood the operation uses
+	 * @throws IOException if an I/O error occurs.*/
+	public final void applyOperation(IImageOperation<IntBuffer, ?> operation, int halo) throws IOException {
+		if((operation == null))
+			throw new IllegalArgumentException("Operation cannot be null");
+		if((halo < 0))
+			throw new IllegalArgumentException("Halo must be >= 0");
+		if((buffer == null))
+			buffer = new Storage();
+		ImagePixelFormat<IntBuffer> format = ImagePixelFormats.getARGBInstance();
+		int size = Math.min(width, tileSize + 2 * halo);
+		IntBuffer tile = format.newBuffer(size * Math.min(height, tileSize + 2 * halo));
+		for(int ty = 0; ty < height; ty += tileSize) {
+			int th = Math.min(tileSize, height - ty);
+			// The input rows of the tiles, including the halo
+			int iy = Math.max(0, ty - halo), ih = Math.min(height, ty + th + halo) - iy;
+			MappedByteBuffer input  = pixels.map(iy, ih);
+			MappedByteBuffer output = buffer.map(ty, th);
+			try {
+				IntBuffer src = view(input);
+				IntBuffer dst = view(output);
+				for(int tx = 0; tx < width; tx += tileSize) {
+					int tw = Math.min(tileSize, width - tx);
+					int ix = Math.max(0, tx - halo), iw = Math.min(width, tx + tw + halo) - ix;
+					for(int r = 0; r < ih; ++r)
+						BufferUtils.buffercopy(src, r * width + ix, tile, r * iw, iw);
+					BufferImage<IntBuffer> image = new BufferImage<>(iw, ih, iw, format, tile);
+					try {
+						image.applyOperation(operation);
+						image.flush();
+					} finally {
+						image.dispose();
+					}
+					// Only the tile itself is valid, the halo is not
+					for(int r = 0, o = ty - iy; r < th; ++r)
+						BufferUtils.buffercopy(tile, (o + r) * iw + (tx - ix), dst, r * width + tx, tw);
+				}
+			} finally {
+				BufferUtils.free(input);
+				BufferUtils.free(output);
+			}
+		}
+		Storage swap = pixels;
+		pixels = buffer;
+		buffer = swap;
+	}
+	
+	/**
+	 * Gets colors of the pixels in the given region.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @param argb The array where to store the colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel of the region
+	 * @param scanlineStride The distance between two rows in the array
+	 * @throws IOException if an I/O error occurs.*/
+	public final void getPixels(int x, int y, int width, int height, int[] argb, int offset,
+			int scanlineStride) throws IOException {
+		checkRegion(x, y, width, height);
+		if((width == 0 || height == 0)) return; // Nothing to get
+		MappedByteBuffer mapped = pixels.map(y, height);
+		try {
+			IntBuffer src = view(mapped);
+			for(int r = 0; r < height; ++r)
+				src.position(r * this.width + x).get(argb, offset + r * scanlineStride, width);
+		} finally {
+			BufferUtils.free(mapped);
+		}
+	}
+	
+	/**
+	 * Sets colors of the pixels in the given region.
+	 * @param x The x-coordinate of the region
+	 * @param y The y-coordinate of the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 * @param argb The colors, as ARGB ints
+	 * @param offset The index in the array of the first pixel of the region
+	 * @param scanlineStride The distance between two rows in the array
+	 * @throws IOException if an I/O error occurs.*/
+	public final void setPixels(int x, int y, int width, int height, int[] argb, int offset,
+			int scanlineStride) throws IOException {
+		checkRegion(x, y, width, height);
+		if((width == 0 || height == 0)) return; // Nothing to set
+		MappedByteBuffer mapped = pixels.map(y, height);
+		try {
+			IntBuffer dst = view(mapped);
+			for(int r = 0; r < height; ++r)
+				dst.position(r * this.width + x).put(argb, offset + r * scanlineStride, width);
+		} finally {
+			BufferUtils.free(mapped);
+		}
+	}
+	
+	private static final IntBuffer view(MappedByteBuffer mapped) {
+		return mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+	
+	private final void checkRegion(int x, int y, int width, int height) {
+		if((x < 0 || y < 0 || width < 0 || height < 0
+				|| width > this.width - x || height > this.height - y))
+			throw new IllegalArgumentException("Region out of bounds");
+	}
+	
+	/**
+	 * Deletes the scratch files of {@code this} image. After calling this method
+	 * the image is unusable.
+	 * @throws IOException if an I/O error occurs.*/
+	@Override
+	public final void close() throws IOException {
+		try {
+			if((pixels != null)) pixels.close();
+		} finally {
+			if((buffer != null)) buffer.close();
+			pixels = null;
+			buffer = null;
+		}
+	}
+	
+	public final int getWidth() {
+		return width;
+	}
+	
+	public final int getHeight() {
+		return height;
+	}
+	
+	public final int getTileSize() {
+		return tileSize;
+	}
+	
+	// Scratch file with the pixels stored as native-ordered ints, row after row
+	private final class Storage implements AutoCloseable {
+		
+		private final Path file;
+		private final RandomAccessFile access;
+		private final FileChannel channel;
+		
+		public Storage() throws IOException {
+			file = directory != null
+						? Files.createTempFile(directory, "sil2-", ".tiles")
+						: Files.createTempFile("sil2-", ".tiles");
+			file.toFile().deleteOnExit();
+			access  = new RandomAccessFile(file.toFile(), "rw");
+			channel = access.getChannel();
+			access.setLength((long) width * height * Integer.BYTES);
+		}
+		
+		// Maps the given rows, the mapping should be freed when no longer needed
+		public final MappedByteBuffer map(int y, int rows) throws IOException {
+			long size = (long) rows * width * Integer.BYTES;
+			if((size > Integer.MAX_VALUE))
+				throw new IllegalStateException("Too many pixels to map at once, use smaller tiles");
+			return channel.map(MapMode.READ_WRITE, (long) y * width * Integer.BYTES, size);
+		}
+		
+		@Override
+		public final void close() throws IOException {
+			try {
+				channel.close();
+				access.close();
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+	
+	// View of the pixels for image writers, the pixels are read when requested
+	private final class StorageImage implements RenderedImage, AutoCloseable {
+		
+		private final ColorModel model;
+		private final int bandHeight;
+		// The currently mapped band of rows
+		private MappedByteBuffer band;
+		private int bandY = -1;
+		
+		public StorageImage(ColorModel model) {
+			this.model      = model;
+			this.bandHeight = bandHeight();
+		}
+		
+		private final IntBuffer band(int y) {
+			int by = y / bandHeight * bandHeight;
+			if((by != bandY)) {
+				close();
+				try {
+					band  = pixels.map(by, Math.min(bandHeight, height - by));
+					bandY = by;
+				} catch(IOException ex) {
+					throw new IllegalStateException("Unable to read pixels", ex);
+				}
+			}
+			return view(band);
+		}
+		
+		@Override
+		public WritableRaster copyData(WritableRaster raster) {
+			if((raster == null))
+				raster = model.createCompatibleWritableRaster(width, height);
+			Rectangle rect = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+			int[] row = new int[rect.width];
+			for(int y = rect.y, ey = rect.y + rect.height; y < ey; ++y) {
+				band(y).position((y - bandY) * width + rect.x).get(row);
+				raster.setDataElements(rect.x, y, rect.width, 1, row);
+			}
+			return raster;
+		}
+		
+		@Override
+		public Raster getData(Rectangle rect) {
+			SampleModel sample = model.createCompatibleSampleModel(rect.width, rect.height);
+			return copyData(Raster.createWritableRaster(sample, new Point(rect.x, rect.y)));
+		}
+		
+		@Override
+		public Raster getData() {
+			return getData(new Rectangle(0, 0, width, height));
+		}
+		
+		@Override
+		public Raster getTile(int tileX, int tileY) {
+			int y = tileY * bandHeight;
+			return getData(new Rectangle(0, y, width, Math.min(bandHeight, height - y)));
+		}
+		
+		@Override public Vector<RenderedImage> getSources() { return null; }
+		@Override public Object getProperty(String name) { return java.awt.Image.UndefinedProperty; }
+		@Override public String[] getPropertyNames() { return null; }
+		@Override public ColorModel getColorModel() { return model; }
+		@Override public SampleModel getSampleModel() { return model.createCompatibleSampleModel(width, bandHeight); }
+		@Override public int getWidth() { return width; }
+		@Override public int getHeight() { return height; }
+		@Override public int getMinX() { return 0; }
+		@Override public int getMinY() { return 0; }
+		@Override public int getNumXTiles() { return 1; }
+		@Override public int getNumYTiles() { return (height + bandHeight - 1) / bandHeight; }
+		@Override public int getMinTileX() { return 0; }
+		@Override public int getMinTileY() { return 0; }
+		@Override public int getTileWidth() { return width; }
+		@Override public int getTileHeight() { return bandHeight; }
+		@Override public int getTileGridXOffset() { return 0; }
+		@Override public int getTileGridYOffset() { return 0; }
+		
+		@Override
+		public void close() {
+			if((band != null)) {
+				BufferUtils.free(band);
+				band  = null;
+				bandY = -1;
+			}
+		}
+	}
+}
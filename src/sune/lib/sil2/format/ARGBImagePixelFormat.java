@@ -37,12 +37,12 @@ public final class ARGBImagePixelFormat implements ImagePixelFormat<IntBuffer> {
 	
 	@Override
 	public WritablePixelFormat<IntBuffer> getReadFormat() {
-		return WritablePixelFormat.getIntArgbInstance();
+		return FXPixelFormats.READ_INT_ARGB;
 	}
 	
 	@Override
 	public PixelFormat<IntBuffer> getWriteFormat() {
-		return PixelFormat.getIntArgbInstance();
+		return FXPixelFormats.WRITE_INT_ARGB;
 	}
 	
 	@Override
@@ -106,6 +106,24 @@ public final class ARGBImagePixelFormat implements ImagePixelFormat<IntBuffer> {
 		return ImagePixelFormatUtils.linear2premult(src.get(i));
 	}
 	
+	@Override
+	public void getARGB(IntBuffer src, int i, int[] dst, int offset, int length) {
+		if((src.hasArray())) {
+			System.arraycopy(src.array(), src.arrayOffset() + i, dst, offset, length);
+		} else {
+			src.duplicate().position(i).get(dst, offset, length);
+		}
+	}
+	
+	@Override
+	public void setARGB(IntBuffer dst, int i, int[] src, int offset, int length) {
+		if((dst.hasArray())) {
+			System.arraycopy(src, offset, dst.array(), dst.arrayOffset() + i, length);
+		} else {
+			dst.duplicate().position(i).put(src, offset, length);
+		}
+	}
+	
 	@Override
 	public int getElementsPerPixel() {
 		return ELEMENTS_PER_PIXEL;
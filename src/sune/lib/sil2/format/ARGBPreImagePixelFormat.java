@@ -37,12 +37,12 @@ public final class ARGBPreImagePixelFormat implements ImagePixelFormat<IntBuffer
 	
 	@Override
 	public WritablePixelFormat<IntBuffer> getReadFormat() {
-		return WritablePixelFormat.getIntArgbPreInstance();
+		return FXPixelFormats.READ_INT_ARGB_PRE;
 	}
 	
 	@Override
 	public PixelFormat<IntBuffer> getWriteFormat() {
-		return PixelFormat.getIntArgbPreInstance();
+		return FXPixelFormats.WRITE_INT_ARGB_PRE;
 	}
 	
 	@Override
@@ -106,6 +106,30 @@ public final class ARGBPreImagePixelFormat implements ImagePixelFormat<IntBuffer
 		return src.get(i);
 	}
 	
+	@Override
+	public void getARGB(IntBuffer src, int i, int[] dst, int offset, int length) {
+		if((src.hasArray())) {
+			int[] array = src.array();
+			for(int k = offset, e = offset + length, p = src.arrayOffset() + i; k < e; ++k, ++p)
+				dst[k] = ImagePixelFormatUtils.premult2linear(array[p]);
+		} else {
+			for(int k = offset, e = offset + length, p = i; k < e; ++k, ++p)
+				dst[k] = ImagePixelFormatUtils.premult2linear(src.get(p));
+		}
+	}
+	
+	@Override
+	public void setARGB(IntBuffer dst, int i, int[] src, int offset, int length) {
+		if((dst.hasArray())) {
+			int[] array = dst.array();
+			for(int k = offset, e = offset + length, p = dst.arrayOffset() + i; k < e; ++k, ++p)
+				array[p] = ImagePixelFormatUtils.linear2premult(src[k]);
+		} else {
+			for(int k = offset, e = offset + length, p = i; k < e; ++k, ++p)
+				dst.put(p, ImagePixelFormatUtils.linear2premult(src[k]));
+		}
+	}
+	
 	@Override
 	public int getElementsPerPixel() {
 		return ELEMENTS_PER_PIXEL;
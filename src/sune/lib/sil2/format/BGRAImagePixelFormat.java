@@ -1,6 +1,7 @@
 package sune.lib.sil2.format;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritablePixelFormat;
@@ -37,12 +38,12 @@ public final class BGRAImagePixelFormat implements ImagePixelFormat<ByteBuffer>
 	
 	@Override
 	public WritablePixelFormat<ByteBuffer> getReadFormat() {
-		return WritablePixelFormat.getByteBgraInstance();
+		return FXPixelFormats.READ_BYTE_BGRA;
 	}
 	
 	@Override
 	public PixelFormat<ByteBuffer> getWriteFormat() {
-		return PixelFormat.getByteBgraInstance();
+		return FXPixelFormats.WRITE_BYTE_BGRA;
 	}
 	
 	@Override
@@ -65,12 +66,7 @@ public final class BGRAImagePixelFormat implements ImagePixelFormat<ByteBuffer>
 	
 	@Override
 	public void setPixelPre(ByteBuffer dst, int i, int r, int g, int b, int a) {
-		int[] out = new int[4];
-		ImagePixelFormatUtils.premult2linear((byte) r, (byte) g, (byte) b, (byte) a, out);
-		dst.put(i,     (byte) out[0]);
-		dst.put(i + 1, (byte) out[1]);
-		dst.put(i + 2, (byte) out[2]);
-		dst.put(i + 3, (byte) out[3]);
+		setARGB(dst, i, ImagePixelFormatUtils.premult2linear(ImagePixelFormatUtils.argb(r, g, b, a)));
 	}
 	
 	@Override
@@ -117,16 +113,47 @@ public final class BGRAImagePixelFormat implements ImagePixelFormat<ByteBuffer>
 	
 	@Override
 	public int getARGBPre(ByteBuffer src, int i) {
-		byte[] out = new byte[4];
-		ImagePixelFormatUtils.linear2premult(src.get(i + 2) & 0xff,
-		                                     src.get(i + 1) & 0xff,
-		                                     src.get(i)     & 0xff,
-		                                     src.get(i + 3) & 0xff,
-		                                     out);
-		return ((out[0] & 0xff)      ) |
-			   ((out[1] & 0xff) <<  8) |
-			   ((out[2] & 0xff) << 16) |
-			   ((out[3] & 0xff) << 24);
+		return ImagePixelFormatUtils.linear2premult(getARGB(src, i));
+	}
+	
+	@Override
+	public void getARGB(ByteBuffer src, int i, int[] dst, int offset, int length) {
+		if((src.hasArray())) {
+			byte[] array = src.array();
+			for(int k = offset, e = offset + length, p = src.arrayOffset() + i; k < e; ++k, p += 4) {
+				dst[k] = ((array[p])     & 0xff)        |
+				         ((array[p + 1]  & 0xff) <<  8) |
+				         ((array[p + 2]  & 0xff) << 16) |
+				         ((array[p + 3]  & 0xff) << 24);
+			}
+		} else {
+			// The bytes B, G, R, A of a pixel form an ARGB int in the little-endian byte order
+			boolean swap = src.order() != ByteOrder.LITTLE_ENDIAN;
+			for(int k = offset, e = offset + length, p = i, argb; k < e; ++k, p += 4) {
+				argb   = src.getInt(p);
+				dst[k] = swap ? Integer.reverseBytes(argb) : argb;
+			}
+		}
+	}
+	
+	@Override
+	public void setARGB(ByteBuffer dst, int i, int[] src, int offset, int length) {
+		if((dst.hasArray())) {
+			byte[] array = dst.array();
+			for(int k = offset, e = offset + length, p = dst.arrayOffset() + i, argb; k < e; ++k, p += 4) {
+				argb = src[k];
+				array[p]     = (byte) (argb);
+				array[p + 1] = (byte) (argb >>  8);
+				array[p + 2] = (byte) (argb >> 16);
+				array[p + 3] = (byte) (argb >> 24);
+			}
+		} else {
+			boolean swap = dst.order() != ByteOrder.LITTLE_ENDIAN;
+			for(int k = offset, e = offset + length, p = i, argb; k < e; ++k, p += 4) {
+				argb = src[k];
+				dst.putInt(p, swap ? Integer.reverseBytes(argb) : argb);
+			}
+		}
 	}
 	
 	@Override
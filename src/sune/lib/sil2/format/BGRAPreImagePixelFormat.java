@@ -1,6 +1,7 @@
 package sune.lib.sil2.format;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritablePixelFormat;
@@ -37,12 +38,12 @@ public final class BGRAPreImagePixelFormat implements ImagePixelFormat<ByteBuffe
 	
 	@Override
 	public WritablePixelFormat<ByteBuffer> getReadFormat() {
-		return WritablePixelFormat.getByteBgraPreInstance();
+		return FXPixelFormats.READ_BYTE_BGRA_PRE;
 	}
 	
 	@Override
 	public PixelFormat<ByteBuffer> getWriteFormat() {
-		return PixelFormat.getByteBgraPreInstance();
+		return FXPixelFormats.WRITE_BYTE_BGRA_PRE;
 	}
 	
 	@Override
@@ -57,12 +58,7 @@ public final class BGRAPreImagePixelFormat implements ImagePixelFormat<ByteBuffe
 	
 	@Override
 	public void setPixel(ByteBuffer dst, int i, int r, int g, int b, int a) {
-		byte[] out = new byte[4];
-		ImagePixelFormatUtils.linear2premult(r, g, b, a, out);
-		dst.put(i,     out[0]);
-		dst.put(i + 1, out[1]);
-		dst.put(i + 2, out[2]);
-		dst.put(i + 3, out[3]);
+		setARGBPre(dst, i, ImagePixelFormatUtils.linear2premult(ImagePixelFormatUtils.argb(r, g, b, a)));
 	}
 	
 	@Override
@@ -109,20 +105,55 @@ public final class BGRAPreImagePixelFormat implements ImagePixelFormat<ByteBuffe
 	
 	@Override
 	public int getARGB(ByteBuffer src, int i) {
-		int[] out = new int[4];
-		ImagePixelFormatUtils.premult2linear(src.get(i + 2), src.get(i + 1), src.get(i), src.get(i + 3), out);
-		return (out[0]      ) |
-			   (out[1] <<  8) |
-			   (out[2] << 16) |
-			   (out[3] << 24);
+		return ImagePixelFormatUtils.premult2linear(getARGBPre(src, i));
 	}
 	
 	@Override
 	public int getARGBPre(ByteBuffer src, int i) {
-		return (src.get(i)          ) |
-			   (src.get(i + 1) <<  8) |
-			   (src.get(i + 2) << 16) |
-			   (src.get(i + 3) << 24);
+		return ((src.get(i))    & 0xff)        |
+			   ((src.get(i + 1) & 0xff) <<  8) |
+			   ((src.get(i + 2) & 0xff) << 16) |
+			   ((src.get(i + 3) & 0xff) << 24);
+	}
+	
+	@Override
+	public void getARGB(ByteBuffer src, int i, int[] dst, int offset, int length) {
+		if((src.hasArray())) {
+			byte[] array = src.array();
+			for(int k = offset, e = offset + length, p = src.arrayOffset() + i; k < e; ++k, p += 4) {
+				dst[k] = ImagePixelFormatUtils.premult2linear(((array[p])     & 0xff)        |
+				                                              ((array[p + 1]  & 0xff) <<  8) |
+				                                              ((array[p + 2]  & 0xff) << 16) |
+				                                              ((array[p + 3]  & 0xff) << 24));
+			}
+		} else {
+			// The bytes B, G, R, A of a pixel form an ARGB int in the little-endian byte order
+			boolean swap = src.order() != ByteOrder.LITTLE_ENDIAN;
+			for(int k = offset, e = offset + length, p = i, argb; k < e; ++k, p += 4) {
+				argb   = src.getInt(p);
+				dst[k] = ImagePixelFormatUtils.premult2linear(swap ? Integer.reverseBytes(argb) : argb);
+			}
+		}
+	}
+	
+	@Override
+	public void setARGB(ByteBuffer dst, int i, int[] src, int offset, int length) {
+		if((dst.hasArray())) {
+			byte[] array = dst.array();
+			for(int k = offset, e = offset + length, p = dst.arrayOffset() + i, argb; k < e; ++k, p += 4) {
+				argb = ImagePixelFormatUtils.linear2premult(src[k]);
+				array[p]     = (byte) (argb);
+				array[p + 1] = (byte) (argb >>  8);
+				array[p + 2] = (byte) (argb >> 16);
+				array[p + 3] = (byte) (argb >> 24);
+			}
+		} else {
+			boolean swap = dst.order() != ByteOrder.LITTLE_ENDIAN;
+			for(int k = offset, e = offset + length, p = i, argb; k < e; ++k, p += 4) {
+				argb = ImagePixelFormatUtils.linear2premult(src[k]);
+				dst.putInt(p, swap ? Integer.reverseBytes(argb) : argb);
+			}
+		}
 	}
 	
 	@Override
@@ -0,0 +1,30 @@
+package sune.lib.sil2.format;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritablePixelFormat;
+
+/**
+ * Holds the JavaFX pixel formats of the image pixel formats. JavaFX is an optional
+ * dependency, therefore the image pixel formats must only access these fields, so that
+ * they can be loaded even without JavaFX. The fields have the exact types of the methods'
+ * return types, otherwise the classes would have to be loaded for the verification.*/
+final class FXPixelFormats {
+	
+	static final WritablePixelFormat<IntBuffer>  READ_INT_ARGB       = WritablePixelFormat.getIntArgbInstance();
+	static final WritablePixelFormat<IntBuffer>  READ_INT_ARGB_PRE   = WritablePixelFormat.getIntArgbPreInstance();
+	static final WritablePixelFormat<ByteBuffer> READ_BYTE_BGRA      = WritablePixelFormat.getByteBgraInstance();
+	static final WritablePixelFormat<ByteBuffer> READ_BYTE_BGRA_PRE  = WritablePixelFormat.getByteBgraPreInstance();
+	
+	static final PixelFormat<IntBuffer>  WRITE_INT_ARGB      = PixelFormat.getIntArgbInstance();
+	static final PixelFormat<IntBuffer>  WRITE_INT_ARGB_PRE  = PixelFormat.getIntArgbPreInstance();
+	static final PixelFormat<ByteBuffer> WRITE_BYTE_BGRA     = PixelFormat.getByteBgraInstance();
+	static final PixelFormat<ByteBuffer> WRITE_BYTE_BGRA_PRE = PixelFormat.getByteBgraPreInstance();
+	static final PixelFormat<ByteBuffer> WRITE_BYTE_RGB      = PixelFormat.getByteRgbInstance();
+	
+	// Forbid anyone to create an instance of this class
+	private FXPixelFormats() {
+	}
+}
@@ -32,6 +32,34 @@ public interface ImagePixelFormat<T extends Buffer> {
 	int getARGB(T src, int i);
 	int getARGBPre(T src, int i);
 	
+	
+	/**
+	 * Gets the given number of consecutive pixels, starting at the given index,
+	 * as ARGB ints. By default, the pixels are got one by one.
+	 * @param src The source
+	 * @param i The index of the first pixel, in elements
+	 * @param dst The destination array
+	 * @param offset The offset in the destination array
+	 * @param length The number of pixels*/
+	default void getARGB(T src, int i, int[] dst, int offset, int length) {
+		for(int k = 0, epp = getElementsPerPixel(); k < length; ++k, i += epp)
+			dst[offset + k] = getARGB(src, i);
+	}
+	
+	/**
+	 * Sets the given number of consecutive pixels, starting at the given index,
+	 * to the given ARGB ints. By default, the pixels are set one by one.
+	 * @param dst The destination
+	 * @param i The index of the first pixel, in elements
+	 * @param src The source array
+	 * @param offset The offset in the source array
+	 * @param length The number of pixels*/
+	default void setARGB(T dst, int i, int[] src, int offset, int length) {
+		for(int k = 0, epp = getElementsPerPixel(); k < length; ++k, i += epp)
+			setARGB(dst, i, src[offset + k]);
+	}
+	
+	
 	int getElementsPerPixel();
 	boolean isPremultiplied();
 }
\ No newline at end of file
@@ -8,43 +8,29 @@ final class ImagePixelFormatUtils {
 	private ImagePixelFormatUtils() {
 	}
 	
-	public static final void linear2premult(int r, int g, int b, int a, byte[] out) {
-		a &= 0xff;
-		out[3] = (byte) a;
-		out[2] = (byte) FastMath.div255((r & 0xff) * a);
-		out[1] = (byte) FastMath.div255((g & 0xff) * a);
-		out[0] = (byte) FastMath.div255((b & 0xff) * a);
+	public static final int argb(int r, int g, int b, int a) {
+		return ((a & 0xff) << 24) |
+			   ((r & 0xff) << 16) |
+			   ((g & 0xff) <<  8) |
+			   ((b & 0xff));
 	}
 	
 	public static final int linear2premult(int argb) {
-		int a = argb >>> 24;
-		int r = FastMath.div255(((argb >> 16) & 0xff) * a);
-		int g = FastMath.div255(((argb >>  8) & 0xff) * a);
-		int b = FastMath.div255(((argb)       & 0xff) * a);
+		int a  = argb >>> 24;
+		// Red and blue are multiplied at once, each in its own 16-bit half
+		int rb = FastMath.div255x2((argb & 0x00ff00ff) * a);
+		int g  = FastMath.div255(((argb >> 8) & 0xff) * a);
 		return (argb & 0xff000000) |
-			   (r << 16)           |
-			   (g <<  8)           |
-			   (b);
-	}
-	
-	public static final void premult2linear(byte r, byte g, byte b, byte a, int[] out) {
-		if((a == 0x0)) {
-			out[0] = out[1] = out[2] = out[3] = 0x0;
-		} else {
-			int ia = a & 0xff;
-			out[3] = ia;
-			out[2] = FastMath.mul255(r & 0xff) / ia;
-			out[1] = FastMath.mul255(g & 0xff) / ia;
-			out[0] = FastMath.mul255(b & 0xff) / ia;
-		}
+			   (rb)                |
+			   (g << 8);
 	}
 	
 	public static final int premult2linear(int argb) {
 		int a = argb >>> 24;
 		if((a == 0x0)) return 0x0;
-		int r = FastMath.mul255((argb >> 16) & 0xff) / a;
-		int g = FastMath.mul255((argb >>  8) & 0xff) / a;
-		int b = FastMath.mul255((argb)       & 0xff) / a;
+		int r = FastMath.divAlpha((argb >> 16) & 0xff, a);
+		int g = FastMath.divAlpha((argb >>  8) & 0xff, a);
+		int b = FastMath.divAlpha((argb)       & 0xff, a);
 		return (argb & 0xff000000) |
 			   (r  << 16)          |
 			   (g  <<  8)          |
@@ -4,6 +4,7 @@ import java.nio.Buffer;
 
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import sune.lib.sil2.FXImage;
 import sune.lib.sil2.ImageUtils;
 import sune.lib.sil2.NativeImage;
@@ -111,7 +112,7 @@ public final class ImagePixelFormats {
 	
 	/**
 	 * Note that Prism allows only premultiplied versions of an image to be created.*/
-	public static final <D extends Buffer> Image convertImage(Image image, ImagePixelFormat<D> dstFormat) {
+	public static final <D extends Buffer> WritableImage convertImage(Image image, ImagePixelFormat<D> dstFormat) {
 		if((image == null || dstFormat == null))
 			throw new IllegalArgumentException();
 		return FXImage.create(dstFormat.getWriteFormat(),
@@ -37,12 +37,12 @@ public final class RGBImagePixelFormat implements ImagePixelFormat<ByteBuffer> {
 	
 	@Override
 	public WritablePixelFormat<ByteBuffer> getReadFormat() {
-		return WritablePixelFormat.getByteBgraInstance();
+		return FXPixelFormats.READ_BYTE_BGRA;
 	}
 	
 	@Override
 	public PixelFormat<ByteBuffer> getWriteFormat() {
-		return PixelFormat.getByteRgbInstance();
+		return FXPixelFormats.WRITE_BYTE_RGB;
 	}
 	
 	@Override
@@ -113,6 +113,38 @@ public final class RGBImagePixelFormat implements ImagePixelFormat<ByteBuffer> {
 		return getARGB(src, i);
 	}
 	
+	@Override
+	public void getARGB(ByteBuffer src, int i, int[] dst, int offset, int length) {
+		if((src.hasArray())) {
+			byte[] array = src.array();
+			for(int k = offset, e = offset + length, p = src.arrayOffset() + i; k < e; ++k, p += 3) {
+				dst[k] = ((array[p + 2]) & 0xff)        |
+				         ((array[p + 1]  & 0xff) <<  8) |
+				         ((array[p]      & 0xff) << 16) |
+				         ((0xff000000));
+			}
+		} else {
+			for(int k = offset, e = offset + length, p = i; k < e; ++k, p += 3)
+				dst[k] = getARGB(src, p);
+		}
+	}
+	
+	@Override
+	public void setARGB(ByteBuffer dst, int i, int[] src, int offset, int length) {
+		if((dst.hasArray())) {
+			byte[] array = dst.array();
+			for(int k = offset, e = offset + length, p = dst.arrayOffset() + i, argb; k < e; ++k, p += 3) {
+				argb = src[k];
+				array[p]     = (byte) (argb >> 16);
+				array[p + 1] = (byte) (argb >>  8);
+				array[p + 2] = (byte) (argb);
+			}
+		} else {
+			for(int k = offset, e = offset + length, p = i; k < e; ++k, p += 3)
+				setARGB(dst, p, src[k]);
+		}
+	}
+	
 	@Override
 	public int getElementsPerPixel() {
 		return ELEMENTS_PER_PIXEL;
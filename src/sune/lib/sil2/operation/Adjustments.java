@@ -1,12 +1,18 @@
 package sune.lib.sil2.operation;
 
 import java.nio.Buffer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 
+import sune.lib.sil2.BufferImage.ActionFloat;
+import sune.lib.sil2.BufferImage.ActionRGB;
 import sune.lib.sil2.Colors;
 import sune.lib.sil2.FastMath;
 import sune.lib.sil2.IImageContext;
 import sune.lib.sil2.IImageOperation;
-import sune.lib.sil2.format.ImagePixelFormat;
+import sune.lib.sil2.IPointOperation;
+import sune.lib.sil2.LookupTable;
+import sune.lib.sil2.LookupTable3D;
 
 public final class Adjustments {
 	
@@ -16,18 +22,36 @@ public final class Adjustments {
 	private Adjustments() {
 	}
 	
+	// Applies the given HCL action either exactly or, if approximate, via a 3D lookup table
+	private static final <T extends Buffer> void applyHCL(IImageContext<T> context, ActionFloat<T> action,
+			boolean approximate) {
+		if((approximate)) {
+			context.applyLookupTable(LookupTable3D.bakeHCL(LookupTable3D.DEFAULT_SIZE, action));
+		} else {
+			context.applyActionHCL(action);
+		}
+	}
+	
+	// Lookup table that sets pixels, whose blue channel matches the given condition,
+	// to white color, otherwise to black color
+	private static final LookupTable threshold(IntPredicate condition) {
+		IntUnaryOperator color = (v) -> condition.test(v) ? 0xff : 0x00;
+		return LookupTable.of(color, color, color, (v) -> 0xff,
+			LookupTable.BLUE, LookupTable.BLUE, LookupTable.BLUE, LookupTable.ALPHA);
+	}
+	
 	/**
 	 * Inverts colors of {@code this} image.*/
-	public static final class Invert<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Invert<T extends Buffer> implements IPointOperation<T> {
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			context.applyActionRGB((rgb, input, output, i, varStore) -> {
-				rgb[0] = 0xff - rgb[0];
-				rgb[1] = 0xff - rgb[1];
-				rgb[2] = 0xff - rgb[2];
-			});
-			return null;
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
+			return LookupTable.rgb((v) -> 0xff - v);
 		}
 	}
 	
@@ -35,24 +59,23 @@ public final class Adjustments {
 	 * Converts {@code this} image to a grayscale version.
 	 * Formula used:<br>
 	 * {@code 0.299 * R + 0.587 * G + 0.114 * B}.*/
-	public static final class Grayscale<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Grayscale<T extends Buffer> implements IPointOperation<T> {
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			context.applyActionRGB((rgb, input, output, i, varStore) -> {
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return (rgb, input, output, i, varStore) -> {
 				int gray = Colors.f2rgba(0.299f * rgb[0] + 0.587f * rgb[1] + 0.114f * rgb[2]);
 				rgb[0] = gray;
 				rgb[1] = gray;
 				rgb[2] = gray;
-			});
-			return null;
+			};
 		}
 	}
 	
 	/**
 	 * Alters the brightness of {@code this} image.
 	 * @param value The value*/
-	public static final class Brightness<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Brightness<T extends Buffer> implements IPointOperation<T> {
 		
 		private final float value;
 		
@@ -61,21 +84,21 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final float fval = IImageUtils.clamp11(value) * IImageUtils.F2I;
-			context.applyActionRGB((rgb, input, output, i, varStore) -> {
-				rgb[0] = Colors.f2rgba(rgb[0] + fval);
-				rgb[1] = Colors.f2rgba(rgb[1] + fval);
-				rgb[2] = Colors.f2rgba(rgb[2] + fval);
-			});
-			return null;
+			return LookupTable.rgb((v) -> Colors.f2rgba(v + fval));
 		}
 	}
 	
 	/**
 	 * Alters the contrast of {@code this} image.
 	 * @param value The value*/
-	public static final class Contrast<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Contrast<T extends Buffer> implements IPointOperation<T> {
 		
 		private final float value;
 		
@@ -84,21 +107,21 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final float fval = IImageUtils.clamp00(value);
-			context.applyActionRGB((rgb, input, output, i, varStore) -> {
-				rgb[0] = Colors.f2rgba(fval * (rgb[0] - 128) + 128);
-				rgb[1] = Colors.f2rgba(fval * (rgb[1] - 128) + 128);
-				rgb[2] = Colors.f2rgba(fval * (rgb[2] - 128) + 128);
-			});
-			return null;
+			return LookupTable.rgb((v) -> Colors.f2rgba(fval * (v - 128) + 128));
 		}
 	}
 	
 	/**
 	 * Alters the gamma of {@code this} image.
 	 * @param value The value*/
-	public static final class Gamma<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Gamma<T extends Buffer> implements IPointOperation<T> {
 		
 		private final float value;
 		
@@ -107,21 +130,21 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final float fval = 1.0f / value;
-			context.applyActionRGB((rgb, input, output, i, varStore) -> {
-				rgb[0] = Colors.f2rgba(FastMath.pow(rgb[0] * IImageUtils.I2F, fval) * IImageUtils.F2I);
-				rgb[1] = Colors.f2rgba(FastMath.pow(rgb[1] * IImageUtils.I2F, fval) * IImageUtils.F2I);
-				rgb[2] = Colors.f2rgba(FastMath.pow(rgb[2] * IImageUtils.I2F, fval) * IImageUtils.F2I);
-			});
-			return null;
+			return LookupTable.rgb((v) -> Colors.f2rgba(FastMath.pow(v * IImageUtils.I2F, fval) * IImageUtils.F2I));
 		}
 	}
 	
 	/**
 	 * Alters the alpha value of {@code this} image.
 	 * @param value The value*/
-	public static final class Alpha<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Alpha<T extends Buffer> implements IPointOperation<T> {
 		
 		private final int value;
 		
@@ -130,20 +153,21 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			final ImagePixelFormat<T> format = context.getPixelFormat();
-			final int fval = value << 24;
-			context.applyActionINT((input, output, i, varStore) -> {
-				format.setARGB(output, i, (format.getARGB(input, i) & 0x00ffffff) | fval);
-			});
-			return null;
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
+			final int fval = value & 0xff;
+			return LookupTable.alpha((v) -> fval);
 		}
 	}
 	
 	/**
 	 * Alters the transparency of {@code this} image.
 	 * @param value The value*/
-	public static final class Transparency<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Transparency<T extends Buffer> implements IPointOperation<T> {
 		
 		private final float value;
 		
@@ -152,14 +176,14 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			final ImagePixelFormat<T> format = context.getPixelFormat();
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final float fval = IImageUtils.clamp01(value);
-			context.applyActionINT((input, output, i, varStore) -> {
-				int alpha = (int) ((format.getARGB(input, i) >>> 24) * fval) << 24;
-				format.setARGB(output, i, (format.getARGB(input, i) & 0x00ffffff) | alpha);
-			});
-			return null;
+			return LookupTable.alpha((v) -> (int) (v * fval));
 		}
 	}
 	
@@ -210,42 +234,58 @@ public final class Adjustments {
 	
 	/**
 	 * Alters the lightness of {@code this} image.
-	 * @param value The value*/
+	 * @param value The value
+	 * @param approximate If {@code true}, the colors are mapped through a 3D lookup
+	 * table, which is faster for large images, but only approximates the exact result*/
 	public static final class Lightness<T extends Buffer> implements IImageOperation<T, Void> {
 		
 		private final float value;
+		private final boolean approximate;
 		
 		public Lightness(float value) {
+			this(value, false);
+		}
+		
+		public Lightness(float value, boolean approximate) {
 			this.value = value;
+			this.approximate = approximate;
 		}
 		
 		@Override
 		public final Void execute(IImageContext<T> context) {
 			final float fval = IImageUtils.clamp00(value);
-			context.applyActionHCL((hcl, input, output, index, varStore) -> {
+			applyHCL(context, (hcl, input, output, index, varStore) -> {
 				hcl[2] *= fval;
-			});
+			}, approximate);
 			return null;
 		}
 	}
 	
 	/**
 	 * Alters the chroma of {@code this} image.
-	 * @param value The value*/
+	 * @param value The value
+	 * @param approximate If {@code true}, the colors are mapped through a 3D lookup
+	 * table, which is faster for large images, but only approximates the exact result*/
 	public static final class Chroma<T extends Buffer> implements IImageOperation<T, Void> {
 		
 		private final float value;
+		private final boolean approximate;
 		
 		public Chroma(float value) {
+			this(value, false);
+		}
+		
+		public Chroma(float value, boolean approximate) {
 			this.value = value;
+			this.approximate = approximate;
 		}
 		
 		@Override
 		public final Void execute(IImageContext<T> context) {
 			final float fval = IImageUtils.clamp00(value);
-			context.applyActionHCL((hcl, input, output, index, varStore) -> {
+			applyHCL(context, (hcl, input, output, index, varStore) -> {
 				hcl[1] *= fval;
-			});
+			}, approximate);
 			return null;
 		}
 	}
@@ -255,7 +295,7 @@ public final class Adjustments {
 	 * the lowest 8-bits greater than or equaled the given value, are set
 	 * to white color, otherwise to black color.
 	 * @param value The value*/
-	public static final class Threshold<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class Threshold<T extends Buffer> implements IPointOperation<T> {
 		
 		private final int value;
 		
@@ -264,9 +304,13 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			new ThresholdGRT<T>(value).execute(context);
-			return null;
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
+			return new ThresholdGRT<T>(value).lookupTable(context);
 		}
 	}
 	
@@ -275,7 +319,7 @@ public final class Adjustments {
 	 * the lowest 8-bits lower than or equaled the given value, are set
 	 * to white color, otherwise to black color.
 	 * @param value The value*/
-	public static final class ThresholdLWR<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class ThresholdLWR<T extends Buffer> implements IPointOperation<T> {
 		
 		private final int value;
 		
@@ -284,13 +328,14 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			final ImagePixelFormat<T> format = context.getPixelFormat();
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final int fval = IImageUtils.clamp02(value);
-			context.applyActionINT((input, output, i, varStore) -> {
-				format.setARGB(output, i, (format.getARGB(input, i) & 0xff) <= fval ? 0xffffffff : 0xff000000);
-			});
-			return null;
+			return threshold((v) -> v <= fval);
 		}
 	}
 	
@@ -299,7 +344,7 @@ public final class Adjustments {
 	 * the lowest 8-bits greater than or equaled the given value, are set
 	 * to white color, otherwise to black color.
 	 * @param value The value*/
-	public static final class ThresholdGRT<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class ThresholdGRT<T extends Buffer> implements IPointOperation<T> {
 		
 		private final int value;
 		
@@ -308,13 +353,14 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			final ImagePixelFormat<T> format = context.getPixelFormat();
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final int fval = IImageUtils.clamp02(value);
-			context.applyActionINT((input, output, i, varStore) -> {
-				format.setARGB(output, i, (format.getARGB(input, i) & 0xff) >= fval ? 0xffffffff : 0xff000000);
-			});
-			return null;
+			return threshold((v) -> v >= fval);
 		}
 	}
 	
@@ -325,7 +371,7 @@ public final class Adjustments {
 	 * otherwise to black color.
 	 * @param min The minimum value
 	 * @param max The maximum value*/
-	public static final class ThresholdBTW<T extends Buffer> implements IImageOperation<T, Void> {
+	public static final class ThresholdBTW<T extends Buffer> implements IPointOperation<T> {
 		
 		private final int min;
 		private final int max;
@@ -336,15 +382,15 @@ public final class Adjustments {
 		}
 		
 		@Override
-		public final Void execute(IImageContext<T> context) {
-			final ImagePixelFormat<T> format = context.getPixelFormat();
+		public final ActionRGB<T> pointAction(IImageContext<T> context) {
+			return lookupTable(context).action();
+		}
+		
+		@Override
+		public final LookupTable lookupTable(IImageContext<T> context) {
 			final int fmin = IImageUtils.clamp02(min);
 			final int fmax = IImageUtils.clamp02(max);
-			context.applyActionINT((input, output, i, varStore) -> {
-				int value = format.getARGB(input, i) & 0xff;
-				format.setARGB(output, i, value >= fmin && value <= fmax ? 0xffffffff : 0xff000000);
-			});
-			return null;
+			return threshold((v) -> v >= fmin && v <= fmax);
 		}
 	}
 	
@@ -370,9 +416,11 @@ public final class Adjustments {
 		
 		@Override
 		public final Void execute(IImageContext<T> context) {
-			new Grayscale<T>().execute(context);
 			// luminance <= 84
-			new ThresholdLWR<T>(84).execute(context);
+			context.pipeline()
+			       .then(new Grayscale<T>())
+			       .then(new ThresholdLWR<T>(84))
+			       .execute();
 			return null;
 		}
 	}
@@ -385,9 +433,11 @@ public final class Adjustments {
 		
 		@Override
 		public final Void execute(IImageContext<T> context) {
-			new Grayscale<T>().execute(context);
 			// 85 <= luminance <= 170
-			new ThresholdBTW<T>(85, 170).execute(context);
+			context.pipeline()
+			       .then(new Grayscale<T>())
+			       .then(new ThresholdBTW<T>(85, 170))
+			       .execute();
 			return null;
 		}
 	}
@@ -399,9 +449,11 @@ public final class Adjustments {
 		
 		@Override
 		public final Void execute(IImageContext<T> context) {
-			new Grayscale<T>().execute(context);
 			// luminance >= 171
-			new ThresholdGRT<T>(171).execute(context);
+			context.pipeline()
+			       .then(new Grayscale<T>())
+			       .then(new ThresholdGRT<T>(171))
+			       .execute();
 			return null;
 		}
 	}
@@ -57,7 +57,7 @@ public final class Filters {
 		public final Void execute(IImageContext<T> context) {
 			FastBlur.boxBlur(context.getPixels(), context.getBuffer(),
 				context.getX(), context.getY(), context.getWidth(), context.getHeight(), value,
-				context.getStride(), context.getChannels(), premultiply);
+				context.getStride(), context.getPixelFormat(), context.getScheduler(), premultiply);
 			context.swapBuffer();
 			return null;
 		}
@@ -85,7 +85,38 @@ public final class Filters {
 		public final Void execute(IImageContext<T> context) {
 			FastBlur.gaussianBlur(context.getPixels(), context.getBuffer(),
   				context.getX(), context.getY(), context.getWidth(), context.getHeight(), value,
-				context.getStride(), context.getChannels(), premultiply);
+				context.getStride(), context.getPixelFormat(), context.getScheduler(), premultiply);
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Applies gaussian blur of the given standard deviation to {@code this} image.
+	 * Unlike {@linkplain GaussianBlur}, the blur is not approximated by box blurs
+	 * and its cost does not depend on the standard deviation, therefore it is suitable
+	 * also for large radii.
+	 * @param sigma The standard deviation
+	 * @param premultiply If {@code true}, the pixels are premultiplied*/
+	public static final class RecursiveGaussianBlur<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final float sigma;
+		private final boolean premultiply;
+		
+		public RecursiveGaussianBlur(float sigma) {
+			this(sigma, false);
+		}
+		
+		public RecursiveGaussianBlur(float sigma, boolean premultiply) {
+			this.sigma = sigma;
+			this.premultiply = premultiply;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastBlur.recursiveGaussianBlur(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sigma,
+				context.getStride(), context.getPixelFormat(), context.getScheduler(), premultiply);
 			context.swapBuffer();
 			return null;
 		}
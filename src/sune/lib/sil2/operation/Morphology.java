@@ -7,9 +7,11 @@ import static sune.lib.sil2.StructuresConfiguration.FOREGROUND;
 import java.nio.Buffer;
 import java.util.Arrays;
 
+import sune.lib.sil2.FastMorphology;
 import sune.lib.sil2.IImageContext;
 import sune.lib.sil2.IImageOperation;
 import sune.lib.sil2.StructuresConfiguration;
+import sune.lib.sil2.Thinning;
 
 public final class Morphology {
 	
@@ -19,6 +21,11 @@ public final class Morphology {
 	private Morphology() {
 	}
 	
+	private static final void checkSize(int sizeX, int sizeY) {
+		if((sizeX <= 0 || sizeY <= 0 || (sizeX & 1) == 0 || (sizeY & 1) == 0))
+			throw new IllegalArgumentException("Size must be odd");
+	}
+	
 	private static final boolean checkStructure(int[] structure) {
 		int sqrt = (int) Math.sqrt(structure.length);
 		return sqrt * sqrt == structure.length;
@@ -93,7 +100,7 @@ public final class Morphology {
 			this.structure = new int[size * size];
 			Arrays.fill(structure, FOREGROUND);
 			config = new StructuresConfiguration(BACKGROUND, FOREGROUND,
-					(a, b) -> a.equals(b), (a) -> a.equals(BACKGROUND));
+					(a, b) -> a == b, (a) -> a == BACKGROUND);
 		}
 		
 		@Override
@@ -115,7 +122,7 @@ public final class Morphology {
 			this.structure = new int[size * size];
 			Arrays.fill(structure, BACKGROUND);
 			config = new StructuresConfiguration(FOREGROUND, BACKGROUND,
-				(a, b) -> a.equals(b), (a) -> a.equals(FOREGROUND));
+				(a, b) -> a == b, (a) -> a == FOREGROUND);
 		}
 		
 		@Override
@@ -125,80 +132,294 @@ public final class Morphology {
 		}
 	}
 	
+	/**
+	 * Dilates {@code this} image by a rectangle, i.e. replaces each pixel by the maximum
+	 * of its neighborhood, for each color channel separately.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class GrayscaleDilation<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public GrayscaleDilation(int size) {
+			this(size, size);
+		}
+		
+		public GrayscaleDilation(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.dilate(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Erodes {@code this} image by a rectangle, i.e. replaces each pixel by the minimum
+	 * of its neighborhood, for each color channel separately.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class GrayscaleErosion<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public GrayscaleErosion(int size) {
+			this(size, size);
+		}
+		
+		public GrayscaleErosion(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.erode(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Opens {@code this} image by a rectangle, i.e. erodes and then dilates it.
+	 * Removes bright details smaller than the rectangle.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class Opening<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public Opening(int size) {
+			this(size, size);
+		}
+		
+		public Opening(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.open(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Closes {@code this} image by a rectangle, i.e. dilates and then erodes it.
+	 * Removes dark details smaller than the rectangle.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class Closing<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public Closing(int size) {
+			this(size, size);
+		}
+		
+		public Closing(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.close(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Applies the top-hat transform to {@code this} image, i.e. subtracts its opening
+	 * from it. Keeps only bright details smaller than the rectangle, e.g. to remove
+	 * uneven background.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class TopHat<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public TopHat(int size) {
+			this(size, size);
+		}
+		
+		public TopHat(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.topHat(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	/**
+	 * Computes the morphological gradient of {@code this} image, i.e. the difference
+	 * of its dilation and erosion.
+	 * The cost per pixel does not depend on the size of the rectangle.
+	 * @since 2.1*/
+	public static final class Gradient<T extends Buffer> implements IImageOperation<T, Void> {
+		
+		private final int sizeX;
+		private final int sizeY;
+		
+		public Gradient(int size) {
+			this(size, size);
+		}
+		
+		public Gradient(int sizeX, int sizeY) {
+			checkSize(sizeX, sizeY);
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+		}
+		
+		@Override
+		public final Void execute(IImageContext<T> context) {
+			FastMorphology.gradient(context.getPixels(), context.getBuffer(),
+				context.getX(), context.getY(), context.getWidth(), context.getHeight(), sizeX, sizeY,
+				context.getStride(), context.getPixelFormat(), context.getScheduler());
+			context.swapBuffer();
+			return null;
+		}
+	}
+	
+	private static final int[][] SKELETONIZE = {
+		{
+			BACKGROUND, BACKGROUND, BACKGROUND,
+			BLANK,      FOREGROUND, BLANK,
+			FOREGROUND, FOREGROUND, FOREGROUND
+		}, {
+			FOREGROUND, FOREGROUND, FOREGROUND,
+			BLANK,      FOREGROUND, BLANK,
+			BACKGROUND, BACKGROUND, BACKGROUND
+		}, {
+			FOREGROUND, BLANK,      BACKGROUND,
+			FOREGROUND, FOREGROUND, BACKGROUND,
+			FOREGROUND, BLANK,      BACKGROUND
+		}, {
+			BACKGROUND, BLANK,      FOREGROUND,
+			BACKGROUND, FOREGROUND, FOREGROUND,
+			BACKGROUND, BLANK,      FOREGROUND
+		}, {
+			BLANK,      BACKGROUND, BACKGROUND,
+			FOREGROUND, FOREGROUND, BACKGROUND,
+			BLANK,      FOREGROUND, BLANK
+		}, {
+			BLANK,      FOREGROUND, BLANK,
+			BACKGROUND, FOREGROUND, FOREGROUND,
+			BACKGROUND, BACKGROUND, BLANK
+		}, {
+			BLANK,      FOREGROUND, BLANK,
+			FOREGROUND, FOREGROUND, BACKGROUND,
+			BLANK,      BACKGROUND, BACKGROUND
+		}, {
+			BACKGROUND, BACKGROUND, BLANK,
+			BACKGROUND, FOREGROUND, FOREGROUND,
+			BLANK,      FOREGROUND, BLANK
+		}
+	};
+	
+	private static final int[][] SKELETONIZE_45DEG = {
+		{
+			BLANK,      BACKGROUND, BACKGROUND,
+			FOREGROUND, FOREGROUND, BACKGROUND,
+			FOREGROUND, FOREGROUND, BLANK
+		}, {
+			FOREGROUND, FOREGROUND, BLANK,
+			FOREGROUND, FOREGROUND, BACKGROUND,
+			BLANK,      BACKGROUND, BACKGROUND
+		}, {
+			BLANK,      FOREGROUND, FOREGROUND,
+			BACKGROUND, FOREGROUND, FOREGROUND,
+			BACKGROUND, BACKGROUND, BLANK
+		}, {
+			BACKGROUND, BACKGROUND, BLANK,
+			BACKGROUND, FOREGROUND, FOREGROUND,
+			BLANK,      FOREGROUND, FOREGROUND
+		}
+	};
+	
+	/**
+	 * Skeletonizes {@code this} binary image, i.e. thins it by eight structures until
+	 * it no longer changes. Only the pixels next to the removed ones are tested again,
+	 * see {@link Thinning}.*/
 	public static final class Skeletonize<T extends Buffer> implements IImageOperation<T, Void> {
 		
+		private final int maxPasses;
+		
+		public Skeletonize() {
+			this(0);
+		}
+		
+		/**
+		 * @param maxPasses The maximum number of passes of all the structures,
+		 * or a non-positive number for no limit
+		 * @since 2.1*/
+		public Skeletonize(int maxPasses) {
+			this.maxPasses = maxPasses;
+		}
+		
 		@Override
 		public final Void execute(IImageContext<T> context) {
-			context.applyOperation(new Thin<>(new int[] {
-       			BACKGROUND, BACKGROUND, BACKGROUND,
-       			BLANK,      FOREGROUND, BLANK,
-       			FOREGROUND, FOREGROUND, FOREGROUND
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			FOREGROUND, FOREGROUND, FOREGROUND,
-       			BLANK,      FOREGROUND, BLANK,
-       			BACKGROUND, BACKGROUND, BACKGROUND
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			FOREGROUND, BLANK,      BACKGROUND,
-       			FOREGROUND, FOREGROUND, BACKGROUND,
-       			FOREGROUND, BLANK,      BACKGROUND
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			BACKGROUND, BLANK,      FOREGROUND,
-       			BACKGROUND, FOREGROUND, FOREGROUND,
-       			BACKGROUND, BLANK,      FOREGROUND
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			BLANK,      BACKGROUND, BACKGROUND,
-       			FOREGROUND, FOREGROUND, BACKGROUND,
-       			BLANK,      FOREGROUND, BLANK
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			BLANK,      FOREGROUND, BLANK,
-       			BACKGROUND, FOREGROUND, FOREGROUND,
-       			BACKGROUND, BACKGROUND, BLANK
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			BLANK,      FOREGROUND, BLANK,
-       			FOREGROUND, FOREGROUND, BACKGROUND,
-       			BLANK,      BACKGROUND, BACKGROUND
-       		}));
-			context.applyOperation(new Thin<>(new int[] {
-       			BACKGROUND, BACKGROUND, BLANK,
-       			BACKGROUND, FOREGROUND, FOREGROUND,
-       			BLANK,      FOREGROUND, BLANK
-       		}));
-    		return null;
-    	}
+			Thinning.thin(context, maxPasses, SKELETONIZE);
+			return null;
+		}
 	}
-
+	
+	/**
+	 * Skeletonizes {@code this} binary image by four diagonal structures, until
+	 * it no longer changes, see {@link Skeletonize}.*/
 	public static final class Skeletonize45deg<T extends Buffer> implements IImageOperation<T, Void> {
 		
+		private final int maxPasses;
+		
+		public Skeletonize45deg() {
+			this(0);
+		}
+		
+		/**
+		 * @param maxPasses The maximum number of passes of all the structures,
+		 * or a non-positive number for no limit
+		 * @since 2.1*/
+		public Skeletonize45deg(int maxPasses) {
+			this.maxPasses = maxPasses;
+		}
+		
 		@Override
 		public final Void execute(IImageContext<T> context) {
-			context.applyOperation(new Thin<>(new int[] {
-     			BLANK,      BACKGROUND, BACKGROUND,
-     			FOREGROUND, FOREGROUND, BACKGROUND,
-     			FOREGROUND, FOREGROUND, BLANK
-     		}));
-     		context.applyOperation(new Thin<>(new int[] {
-     			FOREGROUND, FOREGROUND, BLANK,
-     			FOREGROUND, FOREGROUND, BACKGROUND,
-     			BLANK,      BACKGROUND, BACKGROUND
-     		}));
-     		context.applyOperation(new Thin<>(new int[] {
-     			BLANK,      FOREGROUND, FOREGROUND,
-     			BACKGROUND, FOREGROUND, FOREGROUND,
-     			BACKGROUND, BACKGROUND, BLANK
-     		}));
-     		context.applyOperation(new Thin<>(new int[] {
-     			BACKGROUND, BACKGROUND, BLANK,
-     			BACKGROUND, FOREGROUND, FOREGROUND,
-     			BLANK,      FOREGROUND, FOREGROUND
-     		}));
-     		return null;
-     	}
+			Thinning.thin(context, maxPasses, SKELETONIZE_45DEG);
+			return null;
+		}
 	}
 	
 	public static final class Prune<T extends Buffer> implements IImageOperation<T, Void> {